@@ -21,4 +21,85 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-} 
\ No newline at end of file
+
+    @Bean(name = "cacheRefreshExecutor")
+    public Executor cacheRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("cacheRefresh-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "notificationExecutor")
+    public Executor notificationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("notify-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Подписка и догрузка потоков комментариев (чтение БД): задача на тему или подписку, не на подписчика.
+     * Кадры отправляют собственные циклы доставки CommentStreamService
+     */
+    @Bean(name = "commentStreamExecutor")
+    public Executor commentStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("commentStream-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Фоновые задачи обслуживания БД (проверки целостности): один поток с низким приоритетом
+     */
+    @Bean(name = "maintenanceExecutor")
+    public Executor maintenanceExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("maintenance-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Построение и пополнение поискового индекса в памяти: один поток, задачи выполняются по очереди
+     */
+    @Bean(name = "searchIndexExecutor")
+    public Executor searchIndexExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("searchIndex-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Параллельные разделы общего поиска: пул ограничен, при переполнении очереди раздел
+     * не запускается и ответ помечается неполным
+     */
+    @Bean(name = "searchFanOutExecutor")
+    public Executor searchFanOutExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(12);
+        executor.setMaxPoolSize(12);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("searchFanOut-");
+        executor.initialize();
+        return executor;
+    }
+}
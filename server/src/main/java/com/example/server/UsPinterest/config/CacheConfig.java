@@ -1,12 +1,21 @@
 package com.example.server.UsPinterest.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.example.server.UsPinterest.service.CacheInvalidationBus;
+import com.example.server.UsPinterest.service.SharedCacheStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.http.CacheControl;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -14,6 +23,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import jakarta.persistence.EntityManagerFactory;
 import java.time.Duration;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -30,7 +40,9 @@ public class CacheConfig {
             "comments",
             "notifications",
             "posts",
-            "likes"
+            "likes",
+            "categories",
+            "liked_pins"
     };
 
     public static final CacheControl API_CACHE_CONTROL = CacheControl
@@ -38,35 +50,109 @@ public class CacheConfig {
             .mustRevalidate()
             .cachePrivate();
 
+    // Бюджеты по умолчанию (байты); переопределяются через app.cache.<имя>.max-bytes
+    private static final Map<String, Long> DEFAULT_MAX_BYTES = Map.ofEntries(
+            Map.entry("pins", 32L << 20),
+            Map.entry("users", 8L << 20),
+            Map.entry("boards", 8L << 20),
+            Map.entry("search", 16L << 20),
+            Map.entry("profiles", 4L << 20),
+            Map.entry("comments", 8L << 20),
+            Map.entry("notifications", 4L << 20),
+            Map.entry("posts", 8L << 20),
+            Map.entry("likes", 2L << 20),
+            Map.entry("categories", 1L << 20),
+            Map.entry("liked_pins", 8L << 20),
+            Map.entry("extended_pins", 32L << 20));
+
+    private static final long FALLBACK_MAX_BYTES = 4L << 20;
+
+    private final Environment environment;
+
+    public CacheConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     @Bean
     @Primary
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(MeterRegistry meterRegistry, CacheInvalidationBus invalidationBus,
+                                     SharedCacheStore sharedCacheStore) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager(CACHE_NAMES);
         cacheManager.setCaffeine(caffeineConfig());
         cacheManager.setAllowNullValues(true);
-        return cacheManager;
+        // Каждый кэш строится отдельно: свой бюджет памяти и метрики вытеснения по имени кэша
+        for (String name : CACHE_NAMES) {
+            Caffeine<Object, Object> builder = "pins".equals(name) || "users".equals(name)
+                    ? budgeted(name).expireAfterWrite(30, TimeUnit.MINUTES)
+                    : budgeted(name).expireAfterWrite(10, TimeUnit.MINUTES);
+            cacheManager.registerCustomCache(name, builder
+                    .removalListener(removalMetrics(meterRegistry, name))
+                    .build());
+        }
+        // L1 этого узла + общий L2 и рассылка сбросов другим узлам
+        return new ClusterCacheManager(cacheManager, invalidationBus, sharedCacheStore);
     }
 
     @Bean
     public Caffeine<Object, Object> caffeineConfig() {
         return Caffeine.newBuilder()
                 .expireAfterWrite(10, TimeUnit.MINUTES)
-                .maximumSize(10000);
+                .maximumSize(10000)
+                .recordStats();
+    }
+
+    /**
+     * Бюджет кэша в байтах: из app.cache.<имя>.max-bytes (подчёркивания в имени заменяются дефисами)
+     */
+    public long maxBytes(String cacheName) {
+        String property = "app.cache." + cacheName.replace('_', '-') + ".max-bytes";
+        return environment.getProperty(property, Long.class,
+                DEFAULT_MAX_BYTES.getOrDefault(cacheName, FALLBACK_MAX_BYTES));
+    }
+
+    private Caffeine<Object, Object> budgeted(String cacheName) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxBytes(cacheName))
+                .weigher(new CacheEntryWeigher())
+                .recordStats();
     }
 
     @Bean(name = "extendedPinCacheManager")
-    public CacheManager extendedPinCacheManager() {
+    public CacheManager extendedPinCacheManager(MeterRegistry meterRegistry, CacheInvalidationBus invalidationBus,
+                                                SharedCacheStore sharedCacheStore) {
         CaffeineCacheManager pinCacheManager = new CaffeineCacheManager("extended_pins");
-        pinCacheManager.setCaffeine(
-                Caffeine.newBuilder()
+        pinCacheManager.setAllowNullValues(true);
+        pinCacheManager.registerCustomCache("extended_pins",
+                budgeted("extended_pins")
                         .initialCapacity(200)
-                        .maximumSize(2000)
                         .expireAfterWrite(30, TimeUnit.MINUTES)
                         .expireAfterAccess(15, TimeUnit.MINUTES)
-                        .recordStats()
-        );
-        pinCacheManager.setAllowNullValues(true);
-        return pinCacheManager;
+                        .removalListener(removalMetrics(meterRegistry, "extended_pins"))
+                        .build());
+        return new ClusterCacheManager(pinCacheManager, invalidationBus, sharedCacheStore);
+    }
+
+    /**
+     * Метрики Caffeine для обёрнутых кэшей: actuator знает только CaffeineCache
+     */
+    @Bean
+    public CacheMeterBinderProvider<ClusterCache> clusterCacheMeterBinderProvider() {
+        return new CacheMeterBinderProvider<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public MeterBinder getMeterBinder(ClusterCache cache, Iterable<Tag> tags) {
+                return new CaffeineCacheMetrics<>(
+                        (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache(),
+                        cache.getName(), tags);
+            }
+        };
+    }
+
+    /**
+     * Счётчик cache.removals{cache, cause}: явные сбросы, вытеснение по размеру и по времени
+     */
+    private static RemovalListener<Object, Object> removalMetrics(MeterRegistry registry, String cacheName) {
+        return (key, value, cause) -> registry.counter("cache.removals", "cache", cacheName, "cause", cause.name()).increment();
     }
 
     @Bean
@@ -0,0 +1,142 @@
+package com.example.server.UsPinterest.config;
+
+import com.example.server.UsPinterest.dto.FeedPage;
+import com.example.server.UsPinterest.dto.PinSnapshot;
+import com.example.server.UsPinterest.dto.UserSummary;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.hibernate.Hibernate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Оценка занимаемой памяти записью кэша в байтах. Для снимков считается напрямую,
+ * для прочих значений (DTO, страницы, сущности) обходом полей с ограничением глубины;
+ * неинициализированные ленивые связи Hibernate не обходятся.
+ */
+public class CacheEntryWeigher implements Weigher<Object, Object> {
+
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE = 8;
+    private static final int BOXED = 16;
+    private static final int MAX_DEPTH = 4;
+
+    private static final ClassValue<List<Field>> FIELDS = new ClassValue<>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    } catch (RuntimeException e) {
+                        // поле закрыто модулем: учитываем только ссылку
+                    }
+                }
+            }
+            return fields;
+        }
+    };
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long bytes = estimate(key) + estimate(value);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes));
+    }
+
+    public static long estimate(Object value) {
+        return estimate(value, 0, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private static long estimate(Object value, int depth, Set<Object> seen) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String s) {
+            return string(s);
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum<?>) {
+            return BOXED;
+        }
+        if (value instanceof TemporalAccessor) {
+            return 48;
+        }
+        if (value instanceof PinSnapshot pin) {
+            return pinSnapshot(pin);
+        }
+        if (value instanceof UserSummary user) {
+            return OBJECT_OVERHEAD + 7 * REFERENCE + BOXED + 32
+                    + string(user.getUsername()) + string(user.getEmail()) + string(user.getFirstName())
+                    + string(user.getProfileImageUrl()) + string(user.getBio());
+        }
+        if (value instanceof FeedPage page) {
+            long bytes = OBJECT_OVERHEAD + 6 * REFERENCE + 2 * BOXED;
+            for (PinSnapshot item : page.getItems()) {
+                bytes += REFERENCE + pinSnapshot(item);
+            }
+            return bytes;
+        }
+        if (depth > MAX_DEPTH || !seen.add(value) || !Hibernate.isInitialized(value)) {
+            return REFERENCE;
+        }
+        if (value instanceof Collection<?> collection) {
+            long bytes = OBJECT_OVERHEAD + collection.size() * (long) REFERENCE;
+            for (Object item : collection) {
+                bytes += estimate(item, depth + 1, seen);
+            }
+            return bytes;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long bytes = OBJECT_OVERHEAD + map.size() * (long) (OBJECT_OVERHEAD + 3 * REFERENCE);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                bytes += estimate(entry.getKey(), depth + 1, seen) + estimate(entry.getValue(), depth + 1, seen);
+            }
+            return bytes;
+        }
+        if (value.getClass().isArray()) {
+            return value instanceof Object[] array
+                    ? OBJECT_OVERHEAD + array.length * (long) REFERENCE
+                    : OBJECT_OVERHEAD + java.lang.reflect.Array.getLength(value) * 8L;
+        }
+        long bytes = OBJECT_OVERHEAD;
+        for (Field field : FIELDS.get(value.getClass())) {
+            bytes += REFERENCE;
+            try {
+                bytes += estimate(field.get(value), depth + 1, seen);
+            } catch (IllegalAccessException e) {
+                // недоступное поле учитывается только ссылкой
+            }
+        }
+        return bytes;
+    }
+
+    private static long pinSnapshot(PinSnapshot pin) {
+        long bytes = OBJECT_OVERHEAD + 28 * REFERENCE + 12 * BOXED
+                + string(pin.getTitle()) + string(pin.getDescription())
+                + string(pin.getUsername()) + string(pin.getUserProfileImageUrl())
+                + string(pin.getBoardTitle()) + string(pin.getImageUrl())
+                + string(pin.getFullhdImageUrl()) + string(pin.getThumbnailImageUrl())
+                + string(pin.getAddress()) + string(pin.getPlaceName());
+        for (String tag : pin.getTags()) {
+            bytes += REFERENCE + string(tag);
+        }
+        return bytes;
+    }
+
+    private static long string(String s) {
+        // заголовок String + массив байтов (Latin-1 или UTF-16)
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.server.UsPinterest.config;
+
+import com.example.server.UsPinterest.dto.FeedWindowKey;
+
+/**
+ * Строковое представление ключей кэша для сообщений между узлами и L2.
+ * Поддерживаются ключи, которые реально используются в кэшах; для прочих encode возвращает null.
+ */
+public final class CacheKeyCodec {
+
+    private CacheKeyCodec() {
+    }
+
+    public static String encode(Object key) {
+        if (key instanceof Long l) {
+            return "L:" + l;
+        }
+        if (key instanceof Integer i) {
+            return "I:" + i;
+        }
+        if (key instanceof String s) {
+            return "S:" + s;
+        }
+        if (key instanceof FeedWindowKey w) {
+            return "W:" + (w.getCursorId() != null ? w.getCursorId() : "") + ":" + w.getSize() + ":" + w.isDescending();
+        }
+        return null;
+    }
+
+    public static Object decode(String encoded) {
+        if (encoded == null || encoded.length() < 2) {
+            return null;
+        }
+        String value = encoded.substring(2);
+        switch (encoded.charAt(0)) {
+            case 'L':
+                return Long.valueOf(value);
+            case 'I':
+                return Integer.valueOf(value);
+            case 'S':
+                return value;
+            case 'W':
+                String[] parts = value.split(":");
+                return new FeedWindowKey(parts[0].isEmpty() ? null : Long.valueOf(parts[0]),
+                        Integer.parseInt(parts[1]), Boolean.parseBoolean(parts[2]));
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.server.UsPinterest.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+
+/**
+ * Чтение сериализованных значений кэшей (снимок на диске, общий L2) только через список разрешённых
+ * классов: DTO приложения, их коллекции и скалярные типы. Всё прочее, включая сущности JPA
+ * и классы библиотек, отвергается до создания объекта, так что подложенный поток не исполнит чужой код.
+ */
+public final class CacheSerialization {
+
+    private static final String ALLOWED =
+            "maxdepth=32;maxrefs=2000000;maxarray=1000000;"
+            + "com.example.server.UsPinterest.dto.*;"
+            + "java.lang.String;java.lang.Number;java.lang.Long;java.lang.Integer;java.lang.Short;"
+            + "java.lang.Double;java.lang.Float;java.lang.Boolean;java.lang.Enum;"
+            + "java.time.*;"
+            + "java.util.ArrayList;java.util.HashMap;java.util.LinkedHashMap;java.util.HashSet;java.util.LinkedHashSet;"
+            + "java.util.ImmutableCollections$*;java.util.CollSer;java.util.Collections$*;"
+            // типы элементов внутренних массивов, которые коллекции проверяют фильтром при чтении
+            + "java.lang.Object;java.util.Map$Entry;";
+
+    private static final ObjectInputFilter DEFAULT_FILTER = ObjectInputFilter.Config.createFilter(ALLOWED + "!*");
+
+    private CacheSerialization() {
+    }
+
+    /**
+     * Поток объектов с фильтром; extraClasses — дополнительные разрешённые классы (например, контейнер снимка)
+     */
+    public static ObjectInputStream objectInput(InputStream in, Class<?>... extraClasses) throws IOException {
+        ObjectInputFilter filter = DEFAULT_FILTER;
+        if (extraClasses.length > 0) {
+            StringBuilder pattern = new StringBuilder(ALLOWED);
+            for (Class<?> type : extraClasses) {
+                pattern.append(type.getName()).append(';');
+            }
+            filter = ObjectInputFilter.Config.createFilter(pattern.append("!*").toString());
+        }
+        ObjectInputStream objectInput = new ObjectInputStream(in);
+        objectInput.setObjectInputFilter(filter);
+        return objectInput;
+    }
+}
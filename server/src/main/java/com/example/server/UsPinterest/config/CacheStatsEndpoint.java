@@ -0,0 +1,79 @@
+package com.example.server.UsPinterest.config;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/cachestats: оценка занимаемой памяти, число записей, доля попаданий и вытеснения по каждому кэшу
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+    private final CacheManager cacheManager;
+    private final CacheManager extendedPinCacheManager;
+    private final CacheConfig cacheConfig;
+
+    public CacheStatsEndpoint(CacheManager cacheManager,
+                              @Qualifier("extendedPinCacheManager") CacheManager extendedPinCacheManager,
+                              CacheConfig cacheConfig) {
+        this.cacheManager = cacheManager;
+        this.extendedPinCacheManager = extendedPinCacheManager;
+        this.cacheConfig = cacheConfig;
+    }
+
+    @ReadOperation
+    public Map<String, Object> caches() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long totalBytes = 0;
+        for (CacheManager manager : new CacheManager[]{cacheManager, extendedPinCacheManager}) {
+            for (String name : manager.getCacheNames()) {
+                Map<String, Object> stats = stats(manager, name);
+                if (stats != null) {
+                    totalBytes += (long) stats.get("estimatedBytes");
+                    result.put(name, stats);
+                }
+            }
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("totalEstimatedBytes", totalBytes);
+        response.put("caches", result);
+        return response;
+    }
+
+    @ReadOperation
+    public Map<String, Object> cache(@Selector String name) {
+        Map<String, Object> stats = stats(cacheManager, name);
+        return stats != null ? stats : stats(extendedPinCacheManager, name);
+    }
+
+    private Map<String, Object> stats(CacheManager manager, String name) {
+        if (!manager.getCacheNames().contains(name)
+                || !(manager.getCache(name).getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> cache)) {
+            return null;
+        }
+        CacheStats stats = cache.stats();
+        long weightedSize = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("estimatedBytes", weightedSize);
+        result.put("maxBytes", cacheConfig.maxBytes(name));
+        result.put("entries", cache.estimatedSize());
+        result.put("hitRatio", stats.hitRate());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictedBytes", stats.evictionWeight());
+        return result;
+    }
+}
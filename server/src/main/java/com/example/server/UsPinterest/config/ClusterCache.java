@@ -0,0 +1,247 @@
+package com.example.server.UsPinterest.config;
+
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.example.server.UsPinterest.service.CacheInvalidationBus;
+import com.example.server.UsPinterest.service.SharedCacheStore;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.UnaryOperator;
+
+/**
+ * Двухуровневый кэш: L1 — Caffeine этого узла, L2 — общий SharedCacheStore (для кэшей, где он включён).
+ * Сбросы применяются к обоим уровням и рассылаются другим узлам, которые сбрасывают у себя только L1.
+ * Записи (put) не рассылаются: изменения данных всегда сопровождаются сбросом или смысловым сообщением.
+ */
+public class ClusterCache implements Cache {
+
+    private final Cache local;
+    private final CacheInvalidationBus bus;
+    private final SharedCacheStore sharedStore;
+    private final boolean shared;
+
+    public ClusterCache(Cache local, CacheInvalidationBus bus, SharedCacheStore sharedStore) {
+        this.local = local;
+        this.bus = bus;
+        this.sharedStore = sharedStore;
+        this.shared = sharedStore.supports(local.getName());
+    }
+
+    @Override
+    public String getName() {
+        return local.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = local.get(key);
+        if (wrapper != null || !shared) {
+            return wrapper;
+        }
+        String encoded = CacheKeyCodec.encode(key);
+        Object value = encoded != null ? sharedStore.get(getName(), encoded) : null;
+        if (value == null) {
+            return null;
+        }
+        // подъём из L2 в L1 без повторной записи в L2
+        local.put(key, value);
+        return new SimpleValueWrapper(value);
+    }
+
+    /**
+     * Найденные значения для набора ключей: L1, затем один пакетный запрос к L2 за промахами
+     */
+    public Map<Object, Object> getAllPresent(Collection<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        Map<String, Object> missing = new HashMap<>();
+        for (Object key : keys) {
+            ValueWrapper wrapper = local.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                found.put(key, wrapper.get());
+            } else if (shared) {
+                String encoded = CacheKeyCodec.encode(key);
+                if (encoded != null) {
+                    missing.put(encoded, key);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            sharedStore.getAll(getName(), new ArrayList<>(missing.keySet())).forEach((encoded, value) -> {
+                Object key = missing.get(encoded);
+                local.put(key, value);
+                found.put(key, value);
+            });
+        }
+        return found;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Значение кэша " + getName() + " не типа " + type.getName() + ": " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (!shared) {
+            return local.get(key, valueLoader);
+        }
+        return local.get(key, () -> {
+            String encoded = CacheKeyCodec.encode(key);
+            Object value = encoded != null ? sharedStore.get(getName(), encoded) : null;
+            if (value != null) {
+                return (T) value;
+            }
+            T loaded = valueLoader.call();
+            if (encoded != null && loaded != null) {
+                sharedStore.put(getName(), encoded, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        local.put(key, value);
+        writeShared(key, value);
+    }
+
+    /**
+     * Пакетная запись: L1 по ключу, L2 одним batch-запросом
+     */
+    public void putAll(Map<Object, Object> entries) {
+        Map<String, Object> encodedEntries = new HashMap<>();
+        entries.forEach((key, value) -> {
+            local.put(key, value);
+            String encoded = CacheKeyCodec.encode(key);
+            if (encoded != null && value != null) {
+                encodedEntries.put(encoded, value);
+            }
+        });
+        if (shared && !bus.isRemote() && !encodedEntries.isEmpty()) {
+            sharedStore.putAll(getName(), encodedEntries);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = local.putIfAbsent(key, value);
+        if (existing == null) {
+            writeShared(key, value);
+        }
+        return existing;
+    }
+
+    /**
+     * Атомарная правка значения, уже лежащего в L1: параллельные правки одной записи не затирают друг друга.
+     * L2 не перезаписывается (записи разных потоков могли бы лечь в обратном порядке), а сбрасывается
+     */
+    @SuppressWarnings("unchecked")
+    public Object computeIfPresent(Object key, UnaryOperator<Object> update) {
+        Object updated = ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) local.getNativeCache())
+                .asMap().computeIfPresent(key, (k, value) -> update.apply(value));
+        if (updated != null && shared && !bus.isRemote()) {
+            String encoded = CacheKeyCodec.encode(key);
+            if (encoded != null) {
+                sharedStore.evict(getName(), encoded);
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.evict(key);
+        afterEvict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = local.evictIfPresent(key);
+        // в L2 и на других узлах запись может быть, даже если локально её нет
+        afterEvict(key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        afterClear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean notEmpty = local.invalidate();
+        afterClear();
+        return notEmpty;
+    }
+
+    /**
+     * Сброс по сообщению другого узла: только L1
+     */
+    void evictLocal(Object key) {
+        local.evict(key);
+    }
+
+    void clearLocal() {
+        local.clear();
+    }
+
+    private void writeShared(Object key, Object value) {
+        if (!shared || bus.isRemote() || value == null) {
+            return;
+        }
+        String encoded = CacheKeyCodec.encode(key);
+        if (encoded != null) {
+            sharedStore.put(getName(), encoded, value);
+        }
+    }
+
+    private void afterEvict(Object key) {
+        if (bus.isRemote()) {
+            return;
+        }
+        String encoded = CacheKeyCodec.encode(key);
+        if (shared) {
+            if (encoded != null) {
+                sharedStore.evict(getName(), encoded);
+            } else {
+                sharedStore.clear(getName());
+            }
+        }
+        if (bus.shouldBroadcast()) {
+            // ключ без строкового представления: другие узлы сбрасывают кэш целиком
+            bus.publish(encoded != null
+                    ? CacheInvalidationMessage.evict(getName(), encoded)
+                    : CacheInvalidationMessage.clear(getName()));
+        }
+    }
+
+    private void afterClear() {
+        if (bus.isRemote()) {
+            return;
+        }
+        if (shared) {
+            sharedStore.clear(getName());
+        }
+        if (bus.shouldBroadcast()) {
+            bus.publish(CacheInvalidationMessage.clear(getName()));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.server.UsPinterest.config;
+
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.example.server.UsPinterest.service.CacheInvalidationBus;
+import com.example.server.UsPinterest.service.SharedCacheStore;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оборачивает кэши локального CaffeineCacheManager в ClusterCache и применяет
+ * сообщения EVICT/CLEAR других узлов к своему L1
+ */
+public class ClusterCacheManager implements CacheManager {
+
+    private final CacheManager local;
+    private final CacheInvalidationBus bus;
+    private final SharedCacheStore sharedStore;
+    private final Map<String, ClusterCache> caches = new ConcurrentHashMap<>();
+
+    public ClusterCacheManager(CacheManager local, CacheInvalidationBus bus, SharedCacheStore sharedStore) {
+        this.local = local;
+        this.bus = bus;
+        this.sharedStore = sharedStore;
+        bus.register(CacheInvalidationMessage.Type.EVICT, this::applyEvict);
+        bus.register(CacheInvalidationMessage.Type.CLEAR, this::applyClear);
+        bus.onResync(() -> getCacheNames().forEach(name -> {
+            ClusterCache cache = getCache(name);
+            if (cache != null) {
+                cache.clearLocal();
+            }
+        }));
+    }
+
+    @Override
+    public ClusterCache getCache(String name) {
+        ClusterCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = local.getCache(name);
+        if (target == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new ClusterCache(target, bus, sharedStore));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return local.getCacheNames();
+    }
+
+    private void applyEvict(CacheInvalidationMessage message) {
+        ClusterCache cache = getCache(message.getCacheName());
+        Object key = CacheKeyCodec.decode(message.getKey());
+        if (cache == null) {
+            return;
+        }
+        if (key != null) {
+            cache.evictLocal(key);
+        } else {
+            cache.clearLocal();
+        }
+    }
+
+    private void applyClear(CacheInvalidationMessage message) {
+        ClusterCache cache = getCache(message.getCacheName());
+        if (cache != null) {
+            cache.clearLocal();
+        }
+    }
+}
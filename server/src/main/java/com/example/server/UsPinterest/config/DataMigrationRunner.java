@@ -0,0 +1,114 @@
+package com.example.server.UsPinterest.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Разовые исправления данных: db/data-migration/D1__описание.sql, D2__... по номеру. В отличие
+ * от идемпотентного indices.sql, который выполняется при каждом запуске, каждый скрипт применяется
+ * один раз в своей транзакции и отмечается в data_migrations; узлы, стартующие одновременно, ждут
+ * друг друга на advisory-блокировке. Операторы разделяются «;», в комментариях скриптов её быть не должно.
+ */
+@Component
+@DependsOn("databaseIndexInitializer")
+public class DataMigrationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataMigrationRunner.class);
+
+    private static final String LOCATION = "classpath:db/data-migration/D*__*.sql";
+
+    // Ключ advisory-блокировки миграций данных (общий для всех узлов)
+    private static final long LOCK_KEY = 7_310_001L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public DataMigrationRunner(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void migrate() {
+        Resource[] scripts;
+        try {
+            scripts = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+        } catch (IOException e) {
+            logger.error("Не удалось найти разовые миграции данных", e);
+            return;
+        }
+        if (scripts.length == 0) {
+            return;
+        }
+        Arrays.sort(scripts, Comparator.comparingInt(DataMigrationRunner::number));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS data_migrations "
+                + "(version VARCHAR(128) PRIMARY KEY, applied_at TIMESTAMP NOT NULL)");
+        for (Resource script : scripts) {
+            String version = version(script);
+            try {
+                Boolean applied = transactionTemplate.execute(status -> apply(version, script));
+                if (Boolean.TRUE.equals(applied)) {
+                    logger.info("Миграция данных {} применена", version);
+                }
+            } catch (RuntimeException e) {
+                // следующие скрипты могут зависеть от этого: остальные ждут следующего запуска
+                logger.error("Миграция данных {} не применена, повтор при следующем запуске", version, e);
+                return;
+            }
+        }
+    }
+
+    private boolean apply(String version, Resource script) {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+        Integer done = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM data_migrations WHERE version = ?", Integer.class, version);
+        if (done != null && done > 0) {
+            return false;
+        }
+        for (String statement : statements(script)) {
+            jdbcTemplate.execute(statement);
+        }
+        jdbcTemplate.update("INSERT INTO data_migrations (version, applied_at) VALUES (?, now())", version);
+        return true;
+    }
+
+    private static List<String> statements(Resource script) {
+        try {
+            String sql = script.getContentAsString(StandardCharsets.UTF_8);
+            return Arrays.stream(sql.split(";"))
+                    .map(String::trim)
+                    .filter(statement -> !statement.isEmpty() && !isCommentOnly(statement))
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать " + script.getFilename(), e);
+        }
+    }
+
+    private static boolean isCommentOnly(String statement) {
+        return statement.lines().map(String::trim).allMatch(line -> line.isEmpty() || line.startsWith("--"));
+    }
+
+    private static String version(Resource script) {
+        String name = script.getFilename();
+        return name.substring(0, name.length() - ".sql".length());
+    }
+
+    private static int number(Resource script) {
+        String name = script.getFilename();
+        return Integer.parseInt(name.substring(1, name.indexOf("__")));
+    }
+}
@@ -84,6 +84,31 @@ public class DataSourceConfig {
         return dataSource;
     }
 
+    /**
+     * Отдельный маленький пул для фоновых сверок: тяжёлые запросы не занимают соединения
+     * пользовательских запросов, а короткий lock_timeout не даёт им стоять за горячими строками
+     */
+    @Bean(name = "maintenanceDataSource", destroyMethod = "close")
+    public HikariDataSource maintenanceDataSource(DataSourceProperties properties,
+                                                  @Value("${app.maintenance.datasource.maximum-pool-size:2}") int poolSize,
+                                                  @Value("${app.maintenance.datasource.lock-timeout-ms:2000}") long lockTimeoutMs,
+                                                  @Value("${app.maintenance.datasource.statement-timeout-ms:300000}") long statementTimeoutMs) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("maintenance");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(0);
+        dataSource.setIdleTimeout(idleTimeout);
+        dataSource.setConnectionTimeout(connectionTimeout);
+        dataSource.setMaxLifetime(maxLifetime);
+        dataSource.setAutoCommit(true);
+        dataSource.addDataSourceProperty("ApplicationName", "uspinterest-maintenance");
+        dataSource.addDataSourceProperty("options",
+                "-c lock_timeout=" + lockTimeoutMs + " -c statement_timeout=" + statementTimeoutMs);
+        return dataSource;
+    }
+
     @Bean
     public DataSourceInitializer dataSourceInitializer(final DataSource dataSource) {
         DataSourceInitializer initializer = new DataSourceInitializer();
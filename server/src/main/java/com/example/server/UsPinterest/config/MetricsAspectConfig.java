@@ -4,7 +4,7 @@ import io.micrometer.core.aop.TimedAspect;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import com.example.server.UsPinterest.repository.PinRepository;
+import com.example.server.UsPinterest.service.ContentCountsService;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.DistributionSummary;
@@ -18,8 +18,8 @@ public class MetricsAspectConfig {
     }
 
     @Bean
-    public Gauge pinsCountGauge(MeterRegistry registry, PinRepository pinRepository) {
-        return Gauge.builder("pins_count", pinRepository, PinRepository::count)
+    public Gauge pinsCountGauge(MeterRegistry registry, ContentCountsService contentCountsService) {
+        return Gauge.builder("pins_count", contentCountsService, ContentCountsService::getTotalPins)
                 .description("Total number of pins")
                 .register(registry);
     }
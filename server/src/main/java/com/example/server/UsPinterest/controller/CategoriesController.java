@@ -10,7 +10,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -22,10 +21,7 @@ public class CategoriesController {
 
     @GetMapping
     public ResponseEntity<List<CategoryResponse>> getAllCategories() {
-        List<CategoryResponse> dtos = categoryService.getAllCategories().stream()
-                .map(cat -> new CategoryResponse(cat.getId(), cat.getName()))
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(categoryService.getAllCategories());
     }
 
     @PostMapping
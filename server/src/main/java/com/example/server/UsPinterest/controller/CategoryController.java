@@ -14,7 +14,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequiredArgsConstructor
@@ -34,11 +33,7 @@ public class CategoryController {
         User currentUser = userService.getCurrentUser();
         Pageable pageable = PageRequest.of(0, size, Sort.by("likesCount").descending());
         List<Pin> pins = pinRepository.findByTags_NameIgnoreCase(categoryName, pageable);
-        List<PinResponse> dtos = pins.stream()
-                .map(pin -> pinQueryService.enrichPinResponse(
-                        pinQueryService.convertToPinResponse(pin, currentUser)
-                ))
-                .collect(Collectors.toList());
+        List<PinResponse> dtos = pinQueryService.convertToPinResponses(pins, currentUser);
         return ResponseEntity.ok(dtos);
     }
 } 
\ No newline at end of file
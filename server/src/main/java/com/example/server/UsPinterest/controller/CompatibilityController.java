@@ -46,9 +46,7 @@ public class CompatibilityController {
 
         try {
             User currentUser = userService.getCurrentUser();
-            List<PinResponse> pinResponses = pinRepository.findAll().stream()
-                    .map(pin -> pinService.convertToPinResponse(pin, currentUser))
-                    .collect(Collectors.toList());
+            List<PinResponse> pinResponses = pinService.convertToPinResponses(pinRepository.findAll(), currentUser);
 
             // Возвращаем массив напрямую, без обертки в объект
             return ResponseEntity.ok(pinResponses);
@@ -72,7 +70,7 @@ public class CompatibilityController {
                     userService.getUserWithCollectionsByUsername(authentication.getName()) : null;
 
             // Используем новый метод сервиса для загрузки пина с зависимостями
-            Pin pin = pinService.getPinWithLikesAndComments(id);
+            Pin pin = pinService.getPinEntity(id);
 
             PinResponse pinResponse = pinService.convertToPinResponse(pin, currentUser);
             // Добавляем список FullHD изображений из таблицы Picture
@@ -20,7 +20,7 @@ import com.example.server.UsPinterest.repository.CommentRepository;
 import com.example.server.UsPinterest.repository.LikeRepository;
 import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
-import com.example.server.UsPinterest.repository.TagRepository;
+import com.example.server.UsPinterest.event.PinCreatedEvent;
 import com.example.server.UsPinterest.service.NotificationService;
 import com.example.server.UsPinterest.service.NotificationPublisher;
 import com.example.server.UsPinterest.service.PaginationService;
@@ -28,6 +28,9 @@ import com.example.server.UsPinterest.service.PinCrudService;
 import com.example.server.UsPinterest.service.PinQueryService;
 import com.example.server.UsPinterest.service.FileStorageService;
 import com.example.server.UsPinterest.service.UserService;
+import com.example.server.UsPinterest.service.LikedPinIndex;
+import com.example.server.UsPinterest.dto.UserSummary;
+import com.example.server.UsPinterest.dto.LikerResponse;
 import com.example.server.UsPinterest.util.HateoasUtil;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.ConsumptionProbe;
@@ -40,12 +43,12 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 
 import jakarta.validation.Valid;
 import java.io.IOException;
@@ -53,15 +56,14 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 import java.nio.file.Path;
 import java.util.Set;
-import java.util.HashSet;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
 import com.example.server.UsPinterest.dto.UploadRequest;
 import com.example.server.UsPinterest.model.Picture;
 import com.example.server.UsPinterest.repository.PictureRepository;
@@ -71,6 +73,7 @@ import com.example.server.UsPinterest.service.NotificationSender;
 import com.example.server.UsPinterest.repository.LocationRepository;
 import com.example.server.UsPinterest.model.Location;
 import com.example.server.UsPinterest.service.CommentService;
+import com.example.server.UsPinterest.service.CommentStreamService;
 
 @RestController
 @RequiredArgsConstructor
@@ -92,17 +95,23 @@ public class PinController {
     private final FileStorageService fileStorageService;
     private final UserService userService;
     private final HateoasUtil hateoasUtil;
-    private final TagRepository tagRepository;
     private final PictureRepository pictureRepository;
     private final LocationRepository locationRepository;
     private final NotificationSender notificationSender;
     private final CommentService commentService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LikedPinIndex likedPinIndex;
+    private final CommentStreamService commentStreamService;
+
+    // Верхняя граница размера сетки для liked-status
+    private static final int MAX_LIKED_STATUS_IDS = 200;
 
     @GetMapping({""})
     public ResponseEntity<?> getAllPins(
             @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(defaultValue = "desc") String sortDirection) {
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(defaultValue = "true") boolean includeTotal) {
         // Rate limiting
         ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
         if (!probe.isConsumed()) {
@@ -110,9 +119,8 @@ public class PinController {
                     .body(new MessageResponse("Слишком много запросов"));
         }
         // Получаем результат курсорной пагинации из сервиса
-        CursorPageResponse<PinResponse, String> pageResponse = pinQueryService.getPinsCursor(cursor, size, sortDirection);
-        // Обогащаем каждый PinResponse миниатюрой и данными локации
-        pageResponse.getContent().forEach(pinQueryService::enrichPinResponse);
+        // Миниатюры и локации уже собраны пакетным обогащением страницы
+        CursorPageResponse<PinResponse, String> pageResponse = pinQueryService.getPinsCursor(cursor, size, sortDirection, includeTotal);
         // Формируем HATEOAS-ответ
         HateoasResponse<CursorPageResponse<PinResponse, String>> response =
                 hateoasUtil.buildCursorPageResponse(pageResponse, cursor, size);
@@ -121,13 +129,13 @@ public class PinController {
 
     @GetMapping("/detail/{id}")
     public ResponseEntity<?> getPinById(@PathVariable Long id, Authentication authentication) {
-        // Используем сервис для получения пина с комментариями и лайками
-        Pin pin = pinQueryService.getPinWithLikesAndComments(id);
+        // Пин без коллекций: счётчики и превью лайков/комментариев собираются проекциями
+        Pin pin = pinQueryService.getPinEntity(id);
 
         String username = authentication != null ? authentication.getName() : null;
         User currentUser = username != null ? userRepository.findByUsername(username).orElse(null) : null;
 
-        PinResponse pinResponse = pinQueryService.convertToPinResponse(pin, currentUser);
+        PinResponse pinResponse = pinQueryService.getPinDetail(pin, currentUser);
         // Добавляем список FullHD изображений из таблицы Picture
         pictureRepository.findByPinId(id).ifPresent(pic -> {
             java.util.List<String> fullhdImages = new java.util.ArrayList<>();
@@ -167,57 +175,75 @@ public class PinController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    @PostMapping("/{id}/likes")
+    /**
+     * Состояние лайков для целой сетки карточек одним запросом: id пина -> лайкнут ли текущим пользователем
+     */
+    @GetMapping("/liked-status")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> likePin(@PathVariable Long id, Authentication authentication) {
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
-        if (!probe.isConsumed()) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(new MessageResponse("Слишком много запросов"));
+    public ResponseEntity<?> getLikedStatus(@RequestParam List<Long> ids, Authentication authentication) {
+        if (ids.size() > MAX_LIKED_STATUS_IDS) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse("Не больше " + MAX_LIKED_STATUS_IDS + " id за запрос"));
         }
-
-        Map<String, Object> likeResult = pinCrudService.likePin(id, authentication.getName());
-
-        User user = userRepository.findByUsername(authentication.getName())
+        UserSummary user = userService.findSummaryByUsername(authentication.getName())
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-        Pin pin = pinRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Пин не найден"));
-
-        // Публикуем событие для асинхронной отправки уведомления
-        notificationPublisher.publishLikeNotification(user.getId(), pin.getId());
-        // Отправляем push-уведомление
-        notificationSender.sendNotification(
-                pin.getUser(),
-                "Новый лайк",
-                String.format("%s лайкнул ваш пин '%s'", user.getUsername(), pin.getTitle())
-        );
+        Set<Long> liked = likedPinIndex.likedAmong(user.getId(), ids);
+        Map<Long, Boolean> status = new LinkedHashMap<>();
+        ids.forEach(pinId -> status.put(pinId, liked.contains(pinId)));
+        return ResponseEntity.ok(status);
+    }
 
-        HateoasResponse<Void> response = new HateoasResponse<>(null);
-        response.addSelfLink("/api/pins/" + id + "/like");
+    /**
+     * Лайкнувшие пин постранично (keyset по id лайка)
+     */
+    @GetMapping("/{id}/likes")
+    public ResponseEntity<?> getPinLikers(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CursorPageResponse<LikerResponse, String> pageResponse = pinQueryService.getLikers(id, cursor, size);
+        HateoasResponse<CursorPageResponse<LikerResponse, String>> response = new HateoasResponse<>(pageResponse);
+        response.addSelfLink("/api/pins/" + id + "/likes" + (cursor != null ? "?cursor=" + cursor + "&size=" + size : "?size=" + size));
         response.addLink("pin", "/api/pins/detail/" + id, "GET");
-        response.addLink("unlike", "/api/pins/" + id + "/unlike", "POST");
-        response.getMeta().setMessage("Лайк успешно добавлен");
-
         return ResponseEntity.ok(response);
     }
 
-    @DeleteMapping("/{id}/likes")
+    @PostMapping("/{id}/likes")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> unlikePin(@PathVariable Long id, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<?>> likePin(@PathVariable Long id, Authentication authentication) {
         ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
         if (!probe.isConsumed()) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(new MessageResponse("Слишком много запросов"));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(new MessageResponse("Слишком много запросов")));
         }
 
-        Map<String, Object> unlikeResult = pinCrudService.unlikePin(id, authentication.getName());
+        // Ответ после коммита пачки лайков; уведомление владельцу уходит по PinLikedEvent
+        return pinCrudService.likePin(id, authentication.getName()).<ResponseEntity<?>>thenApply(likeResult -> {
+            HateoasResponse<Void> response = new HateoasResponse<>(null);
+            response.addSelfLink("/api/pins/" + id + "/like");
+            response.addLink("pin", "/api/pins/detail/" + id, "GET");
+            response.addLink("unlike", "/api/pins/" + id + "/unlike", "POST");
+            response.getMeta().setMessage("Лайк успешно добавлен");
+            return ResponseEntity.ok(response);
+        });
+    }
 
-        HateoasResponse<Void> response = new HateoasResponse<>(null);
-        response.addSelfLink("/api/pins/" + id + "/unlike");
-        response.addLink("pin", "/api/pins/detail/" + id, "GET");
-        response.getMeta().setMessage((Boolean) unlikeResult.get("liked") ? "" : "Лайк удалён");
+    @DeleteMapping("/{id}/likes")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<?>> unlikePin(@PathVariable Long id, Authentication authentication) {
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        if (!probe.isConsumed()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(new MessageResponse("Слишком много запросов")));
+        }
 
-        return ResponseEntity.ok(response);
+        return pinCrudService.unlikePin(id, authentication.getName()).<ResponseEntity<?>>thenApply(unlikeResult -> {
+            HateoasResponse<Void> response = new HateoasResponse<>(null);
+            response.addSelfLink("/api/pins/" + id + "/unlike");
+            response.addLink("pin", "/api/pins/detail/" + id, "GET");
+            response.getMeta().setMessage((Boolean) unlikeResult.get("liked") ? "" : "Лайк удалён");
+            return ResponseEntity.ok(response);
+        });
     }
 
     @PostMapping("/{id}/comments")
@@ -233,63 +259,24 @@ public class PinController {
                     .body(null);
         }
 
-        // Загружаем пользователя и пин
         User user = userRepository.findByUsername(authentication.getName())
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-        Pin pin = pinQueryService.getPinWithLikesAndComments(id);
-
-        Comment comment = new Comment();
-        comment.setText(commentRequest.getText());
-        comment.setPin(pin);
-        comment.setUser(user);
-        comment.setCreatedAt(LocalDateTime.now());
-
-        // Обработка тегов в комментарии
-        Set<Tag> commentTags = new HashSet<>();
-        Pattern tagPattern = Pattern.compile("#(\\w+)");
-        Matcher tagMatcher = tagPattern.matcher(comment.getText());
-        while (tagMatcher.find()) {
-            String tagName = tagMatcher.group(1);
-            tagRepository.findByNameIgnoreCase(tagName)
-                    .ifPresentOrElse(commentTags::add,
-                            () -> commentTags.add(tagRepository.save(new Tag(tagName))));
-        }
-        comment.setTags(commentTags);
-
-        // Обработка упоминаний в комментарии
-        Set<User> commentMentions = new HashSet<>();
-        Pattern mentionPattern = Pattern.compile("@(\\w+)");
-        Matcher mentionMatcher = mentionPattern.matcher(comment.getText());
-        while (mentionMatcher.find()) {
-            String usernameMention = mentionMatcher.group(1);
-            userRepository.findByUsername(usernameMention).ifPresent(mentionedUser -> {
-                commentMentions.add(mentionedUser);
-                // уведомление об упоминании
-                notificationService.createMentionNotification(user, comment, mentionedUser);
-            });
-        }
-        comment.setMentions(commentMentions);
-
-        // Сохраняем комментарий и обновляем пин
-        Comment savedComment = commentRepository.save(comment);
-        pin.getComments().add(savedComment);
-        long totalCommentsLong = commentRepository.countByPinId(id);
-        pin.setCommentsCount(Math.toIntExact(totalCommentsLong));
-        pinRepository.save(pin);
+        // Вставка комментария и атомарное увеличение comments_count одной транзакцией
+        Comment savedComment = commentService.addCommentToPin(id, commentRequest.getText(), user);
 
         // Публикуем уведомление (не критично для ответа клиенту)
         try {
-            notificationPublisher.publishCommentNotification(user.getId(), pin.getId(), commentRequest.getText());
+            notificationPublisher.publishCommentNotification(user.getId(), id, commentRequest.getText());
         } catch (Exception ex) {
             logger.warn("Не удалось отправить событие RabbitMQ: {}", ex.getMessage());
         }
-        // Отправляем push-уведомление
+        // Отправляем push-уведомление владельцу (из карточки пина, без загрузки сущности)
         try {
-            notificationSender.sendNotification(
-                    pin.getUser(),
+            pinQueryService.getPinById(id).filter(card -> card.getUserId() != null).ifPresent(card -> notificationSender.sendNotification(
+                    userRepository.getReferenceById(card.getUserId()),
                     "Новый комментарий",
                     String.format("%s прокомментировал ваш пин: %s", user.getUsername(), commentRequest.getText())
-            );
+            ));
         } catch (Exception ex) {
             logger.warn("Не удалось отправить push-уведомление: {}", ex.getMessage());
         }
@@ -330,7 +317,7 @@ public class PinController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         // Загружаем пин
-        Pin pin = pinQueryService.getPinWithLikesAndComments(id);
+        Pin pin = pinQueryService.getPinEntity(id);
         // Создаём pageable
         org.springframework.data.domain.Pageable pageable = paginationService.createPageable(page, size, "createdAt", "desc");
         // Получаем страницу комментариев
@@ -382,16 +369,12 @@ public class PinController {
             @PathVariable Long commentId,
             Authentication authentication) {
         User currentUser = userService.getCurrentUser();
-        commentService.deleteComment(commentId, id, currentUser.getId());
+        commentService.deletePinComment(commentId, id, currentUser.getId());
         return ResponseEntity.noContent().build();
     }
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("hasRole('USER')")
-    @Caching(evict = {
-            @CacheEvict(value = {"pins", "search"}, allEntries = true),
-            @CacheEvict(cacheNames = "extended_pins", cacheManager = "extendedPinCacheManager", allEntries = true)
-    })
     public ResponseEntity<?> uploadImages(
             @Valid @ModelAttribute UploadRequest uploadRequest,
             Authentication authentication) {
@@ -489,6 +472,8 @@ public class PinController {
                 }
             }
             Picture saved = pictureRepository.save(picture);
+            // Счётчики и кэши ленты обновляются по событию, когда картинки уже сохранены
+            eventPublisher.publishEvent(new PinCreatedEvent(savedPin));
 
             PictureResponse resp = new PictureResponse();
             resp.setImage1(saved.getImageUrl1());
@@ -556,8 +541,9 @@ public class PinController {
     public ResponseEntity<?> getPinsFullhd(
             @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(defaultValue = "desc") String sortDirection) {
-        CursorPageResponse<PinFullHdResponse, String> page = pinQueryService.getPinsFullhdCursor(cursor, size, sortDirection);
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(defaultValue = "true") boolean includeTotal) {
+        CursorPageResponse<PinFullHdResponse, String> page = pinQueryService.getPinsFullhdCursor(cursor, size, sortDirection, includeTotal);
         HateoasResponse<CursorPageResponse<PinFullHdResponse, String>> response = hateoasUtil.buildCursorPageResponse(page, cursor, size);
         return ResponseEntity.ok(response);
     }
@@ -566,8 +552,9 @@ public class PinController {
     public ResponseEntity<?> getPinsThumbnails(
             @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(defaultValue = "desc") String sortDirection) {
-        CursorPageResponse<PinThumbnailResponse, String> page = pinQueryService.getPinsThumbnailCursor(cursor, size, sortDirection);
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(defaultValue = "true") boolean includeTotal) {
+        CursorPageResponse<PinThumbnailResponse, String> page = pinQueryService.getPinsThumbnailCursor(cursor, size, sortDirection, includeTotal);
         HateoasResponse<CursorPageResponse<PinThumbnailResponse, String>> response = hateoasUtil.buildCursorPageResponse(page, cursor, size);
         return ResponseEntity.ok(response);
     }
@@ -658,9 +645,7 @@ public class PinController {
     @GetMapping("/all")
     public ResponseEntity<List<PinResponse>> getAllPinsWithThumbnail() {
         var currentUser = userService.getCurrentUser();
-        List<PinResponse> dtos = pinRepository.findAll().stream()
-                .map(pin -> pinQueryService.enrichPinResponse(pinQueryService.convertToPinResponse(pin, currentUser)))
-                .collect(Collectors.toList());
+        List<PinResponse> dtos = pinQueryService.convertToPinResponses(pinRepository.findAll(), currentUser);
         return ResponseEntity.ok(dtos);
     }
 
@@ -696,9 +681,7 @@ public class PinController {
         User currentUser = userService.getCurrentUser();
         var page = pinRepository.findAll(org.springframework.data.domain.PageRequest.of(
                 0, size, org.springframework.data.domain.Sort.by("likesCount").descending()));
-        List<PinResponse> dtos = page.getContent().stream()
-                .map(pin -> pinQueryService.enrichPinResponse(pinQueryService.convertToPinResponse(pin, currentUser)))
-                .collect(Collectors.toList());
+        List<PinResponse> dtos = pinQueryService.convertToPinResponses(page.getContent(), currentUser);
         return ResponseEntity.ok(dtos);
     }
 
@@ -709,9 +692,7 @@ public class PinController {
             @RequestParam(defaultValue = "20") int size) {
         com.example.server.UsPinterest.dto.PageResponse<com.example.server.UsPinterest.model.Pin> result =
                 pinQueryService.getPins(query, page, size);
-        List<PinResponse> dtos = result.getContent().stream()
-                .map(pin -> pinQueryService.enrichPinResponse(pinQueryService.convertToPinResponse(pin, null)))
-                .collect(Collectors.toList());
+        List<PinResponse> dtos = pinQueryService.convertToPinResponses(result.getContent(), null);
         com.example.server.UsPinterest.dto.PageResponse<PinResponse> dtoPage =
                 new com.example.server.UsPinterest.dto.PageResponse<>(
                         dtos,
@@ -734,19 +715,31 @@ public class PinController {
                 org.springframework.data.domain.Sort.by("likesCount").descending()
         );
         List<Pin> pins = pinRepository.findByTags_NameIgnoreCase(collectionName, pageable);
-        List<PinResponse> dtos = pins.stream()
-                .map(pin -> pinQueryService.enrichPinResponse(pinQueryService.convertToPinResponse(pin, currentUser)))
-                .collect(Collectors.toList());
+        List<PinResponse> dtos = pinQueryService.convertToPinResponses(pins, currentUser);
         return ResponseEntity.ok(dtos);
     }
 
+    /**
+     * Поток новых комментариев пина (SSE) вместо опроса /comments и /comments/cursor.
+     * after (или Last-Event-ID при переподключении) — id последнего комментария у клиента
+     */
+    @GetMapping(path = "/{id}/comments/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamComments(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long after,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        pinQueryService.getPinById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Пин не найден с id: " + id));
+        return commentStreamService.subscribe(id, lastEventId != null ? lastEventId : after);
+    }
+
     @GetMapping("/{id}/comments/cursor")
     public ResponseEntity<?> getPinCommentsCursor(
             @PathVariable Long id,
             @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size) {
         // Загружаем пин
-        Pin pin = pinQueryService.getPinWithLikesAndComments(id);
+        Pin pin = pinQueryService.getPinEntity(id);
         // Декодируем курсор (id последнего комментария)
         Long cursorId = paginationService.decodeCursor(cursor, Long.class);
         int fetchSize = size > 0 ? size + 1 : 21;
@@ -783,7 +776,7 @@ public class PinController {
         String nextCursor = hasNext ? paginationService.encodeCursor(raw.get(raw.size() - 1).getId()) : null;
         boolean hasPrevious = cursorId != null;
         String prevCursor = hasPrevious ? paginationService.encodeCursor(cursorId) : null;
-        long totalComments = commentRepository.countByPinId(id);
+        long totalComments = pin.getCommentsCount() != null ? pin.getCommentsCount() : 0;
         CursorPageResponse<CommentResponse, String> pageResponse = paginationService.createCursorPageResponse(
                 dtos,
                 nextCursor,
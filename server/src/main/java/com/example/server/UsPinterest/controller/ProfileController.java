@@ -9,19 +9,16 @@ import com.example.server.UsPinterest.exception.ResourceNotFoundException;
 import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.model.Post;
 import com.example.server.UsPinterest.model.User;
-import com.example.server.UsPinterest.model.Picture;
 import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
 import com.example.server.UsPinterest.repository.LikeRepository;
 import com.example.server.UsPinterest.repository.PostRepository;
 import com.example.server.UsPinterest.repository.FollowRepository;
-import com.example.server.UsPinterest.repository.LocationRepository;
-import com.example.server.UsPinterest.model.Location;
 import com.example.server.UsPinterest.service.BoardService;
 import com.example.server.UsPinterest.service.PinService;
 import com.example.server.UsPinterest.service.UserService;
 import com.example.server.UsPinterest.service.PostService;
-import com.example.server.UsPinterest.entity.Like;
+import com.example.server.UsPinterest.service.ContentCountsService;
 import com.example.server.UsPinterest.service.FileStorageService;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.Counter;
@@ -58,12 +55,12 @@ public class ProfileController {
     private final PinService pinService;
     private final UserRepository userRepository;
     private final PinRepository pinRepository;
-    private final LocationRepository locationRepository;
     private final LikeRepository likeRepository;
     private final PostRepository postRepository;
     private final FollowRepository followRepository;
     private final FileStorageService fileStorageService;
     private final PostService postService;
+    private final ContentCountsService contentCountsService;
     private final Counter profileImageUploadCounter;
     private final DistributionSummary fileUploadSizeSummary;
 
@@ -90,10 +87,8 @@ public class ProfileController {
             response.setFirstName(user.getFirstName());
 
 
-            int pinsCount = pinRepository.findByUserOrderByCreatedAtDesc(user).size();
-            response.setPinsCount(pinsCount);
-            int postsCount = postRepository.findByUserOrderByCreatedAtDesc(user).size();
-            response.setPostsCount(postsCount);
+            response.setPinsCount((int) contentCountsService.getUserPinsCount(user.getId()));
+            response.setPostsCount((int) contentCountsService.getUserPostsCount(user.getId()));
 
             response.setFollowersCount(followRepository.countByFollowing(user));
             response.setFollowingCount(followRepository.countByFollower(user));
@@ -145,27 +140,8 @@ public class ProfileController {
             User user = userService.getUserWithCollectionsByUsername(username);
 
 
-            List<Like> likes = likeRepository.findByUserOrderByIdDesc(user);
-            List<PinResponse> pinResponses = likes.stream().map(like -> {
-                Pin pin = like.getPin();
-                PinResponse dto = pinService.convertToPinResponse(pin, user);
-                Picture picture = pin.getPictures();
-                if (picture != null) {
-                    String thumb1 = picture.getThumbnailImageUrl1();
-                    if (thumb1 != null && !thumb1.isEmpty()) {
-                        dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(thumb1));
-                    }
-                }
-                List<Location> locs = locationRepository.findByPinId(pin.getId());
-                if (!locs.isEmpty()) {
-                    Location loc = locs.get(0);
-                    dto.setLatitude(loc.getLatitude());
-                    dto.setLongitude(loc.getLongitude());
-                    dto.setAddress(loc.getAddress());
-                    dto.setPlaceName(loc.getNameplace());
-                }
-                return dto;
-            }).collect(Collectors.toList());
+            List<Pin> likedPins = likeRepository.findLikedPinsByUser(user);
+            List<PinResponse> pinResponses = pinService.convertToPinResponses(likedPins, user);
             return ResponseEntity.ok(pinResponses);
         } catch (Exception e) {
             logger.error("Ошибка при получении лайкнутых пинов", e);
@@ -179,28 +155,8 @@ public class ProfileController {
     public ResponseEntity<List<PinResponse>> getOwnProfileSpots() {
         User currentUser = userService.getCurrentUser();
         List<Pin> userPins = pinRepository.findByUserOrderByCreatedAtDesc(currentUser);
-        List<PinResponse> pinResponses = userPins.stream().map(pin -> {
-            // Базовое преобразование пина в DTO
-            PinResponse dto = pinService.convertToPinResponse(pin, currentUser);
-            // Применяем первую миниатюру из связанной сущности Picture
-            Picture picture = pin.getPictures();
-            if (picture != null) {
-                String thumb1 = picture.getThumbnailImageUrl1();
-                if (thumb1 != null && !thumb1.isEmpty()) {
-                    dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(thumb1));
-                }
-            }
-            // Добавляем локацию из таблицы locations
-            List<Location> locations = locationRepository.findByPinId(pin.getId());
-            if (!locations.isEmpty()) {
-                Location loc = locations.get(0);
-                dto.setLatitude(loc.getLatitude());
-                dto.setLongitude(loc.getLongitude());
-                dto.setAddress(loc.getAddress());
-                dto.setPlaceName(loc.getNameplace());
-            }
-            return dto;
-        }).collect(Collectors.toList());
+        // Миниатюры и локации подтягиваются пакетно для всей страницы
+        List<PinResponse> pinResponses = pinService.convertToPinResponses(userPins, currentUser);
         return ResponseEntity.ok(pinResponses);
     }
 
@@ -219,10 +175,8 @@ public class ProfileController {
             response.setFirstName(targetUser.getFirstName());
 
 
-            int otherPinsCount = pinRepository.findByUserOrderByCreatedAtDesc(targetUser).size();
-            response.setPinsCount(otherPinsCount);
-            int otherPostsCount = postRepository.findByUserOrderByCreatedAtDesc(targetUser).size();
-            response.setPostsCount(otherPostsCount);
+            response.setPinsCount((int) contentCountsService.getUserPinsCount(targetUser.getId()));
+            response.setPostsCount((int) contentCountsService.getUserPostsCount(targetUser.getId()));
 
             response.setFollowersCount(followRepository.countByFollowing(targetUser));
             response.setFollowingCount(followRepository.countByFollower(targetUser));
@@ -243,25 +197,8 @@ public class ProfileController {
     public ResponseEntity<?> getLikedPinsByUser(@PathVariable Long userId) {
         try {
             User targetUser = userService.getUserWithCollections(userId);
-            List<Like> likes = likeRepository.findByUserOrderByIdDesc(targetUser);
-            List<PinResponse> pinResponses = likes.stream().map(like -> {
-                Pin pin = like.getPin();
-                PinResponse dto = pinService.convertToPinResponse(pin, targetUser);
-                Picture picture = pin.getPictures();
-                if (picture != null) {
-                    String thumb1 = picture.getThumbnailImageUrl1();
-                    if (thumb1 != null && !thumb1.isEmpty()) {
-                        dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(thumb1));
-                    }
-                }
-                locationRepository.findByPinId(pin.getId()).stream().findFirst().ifPresent(loc -> {
-                    dto.setLatitude(loc.getLatitude());
-                    dto.setLongitude(loc.getLongitude());
-                    dto.setAddress(loc.getAddress());
-                    dto.setPlaceName(loc.getNameplace());
-                });
-                return dto;
-            }).collect(Collectors.toList());
+            List<Pin> likedPins = likeRepository.findLikedPinsByUser(targetUser);
+            List<PinResponse> pinResponses = pinService.convertToPinResponses(likedPins, targetUser);
             return ResponseEntity.ok(pinResponses);
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Пользователь не найден");
@@ -325,25 +262,7 @@ public class ProfileController {
     public ResponseEntity<List<PinResponse>> getUserPictures(@PathVariable Long userId) {
         User targetUser = userService.getUserWithCollections(userId);
         List<Pin> userPins = pinRepository.findByUserOrderByCreatedAtDesc(targetUser);
-        List<PinResponse> pinResponses = userPins.stream().map(pin -> {
-            PinResponse dto = pinService.convertToPinResponse(pin, targetUser);
-            Picture picture = pin.getPictures();
-            if (picture != null) {
-                String thumb1 = picture.getThumbnailImageUrl1();
-                if (thumb1 != null && !thumb1.isEmpty()) {
-                    dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(thumb1));
-                }
-            }
-            List<Location> locs = locationRepository.findByPinId(pin.getId());
-            if (!locs.isEmpty()) {
-                Location loc = locs.get(0);
-                dto.setLatitude(loc.getLatitude());
-                dto.setLongitude(loc.getLongitude());
-                dto.setAddress(loc.getAddress());
-                dto.setPlaceName(loc.getNameplace());
-            }
-            return dto;
-        }).collect(Collectors.toList());
+        List<PinResponse> pinResponses = pinService.convertToPinResponses(userPins, targetUser);
         return ResponseEntity.ok(pinResponses);
     }
 
@@ -362,27 +281,8 @@ public class ProfileController {
     @Transactional(readOnly = true)
     public ResponseEntity<List<PinResponse>> getUserLikedPictures(@PathVariable Long userId) {
         User targetUser = userService.getUserWithCollections(userId);
-        List<Like> likes = likeRepository.findByUserOrderByIdDesc(targetUser);
-        List<PinResponse> pinResponses = likes.stream().map(like -> {
-            Pin pin = like.getPin();
-            PinResponse dto = pinService.convertToPinResponse(pin, null);
-            Picture picture = pin.getPictures();
-            if (picture != null) {
-                String thumb1 = picture.getThumbnailImageUrl1();
-                if (thumb1 != null && !thumb1.isEmpty()) {
-                    dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(thumb1));
-                }
-            }
-            List<Location> locs = locationRepository.findByPinId(pin.getId());
-            if (!locs.isEmpty()) {
-                Location loc = locs.get(0);
-                dto.setLatitude(loc.getLatitude());
-                dto.setLongitude(loc.getLongitude());
-                dto.setAddress(loc.getAddress());
-                dto.setPlaceName(loc.getNameplace());
-            }
-            return dto;
-        }).collect(Collectors.toList());
+        List<Pin> likedPins = likeRepository.findLikedPinsByUser(targetUser);
+        List<PinResponse> pinResponses = pinService.convertToPinResponses(likedPins, null);
         return ResponseEntity.ok(pinResponses);
     }
 
@@ -391,16 +291,7 @@ public class ProfileController {
     public ResponseEntity<List<PinResponse>> getUserProfileSpots(@PathVariable Long userId) {
         User targetUser = userService.getUserWithCollections(userId);
         List<Pin> userPins = pinRepository.findByUserOrderByCreatedAtDesc(targetUser);
-        List<PinResponse> pinResponses = userPins.stream().map(pin -> {
-            PinResponse dto = pinService.convertToPinResponse(pin, targetUser);
-            locationRepository.findByPinId(pin.getId()).stream().findFirst().ifPresent(loc -> {
-                dto.setLatitude(loc.getLatitude());
-                dto.setLongitude(loc.getLongitude());
-                dto.setAddress(loc.getAddress());
-                dto.setPlaceName(loc.getNameplace());
-            });
-            return dto;
-        }).collect(Collectors.toList());
+        List<PinResponse> pinResponses = pinService.convertToPinResponses(userPins, targetUser);
         return ResponseEntity.ok(pinResponses);
     }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.example.server.UsPinterest.controller;
 
+import com.example.server.UsPinterest.dto.CursorPageResponse;
 import com.example.server.UsPinterest.dto.PageResponse;
 import com.example.server.UsPinterest.dto.PinResponse;
-import com.example.server.UsPinterest.dto.ProfileResponse;
+import com.example.server.UsPinterest.dto.SuggestResponse;
+import com.example.server.UsPinterest.dto.UserSearchResponse;
+import com.example.server.UsPinterest.service.CombinedSearchService;
 import com.example.server.UsPinterest.service.SearchService;
-import com.example.server.UsPinterest.model.Category;
-import com.example.server.UsPinterest.service.CategoryService;
+import com.example.server.UsPinterest.service.SearchSuggestService;
 
 import io.github.bucket4j.Bucket;
 import org.slf4j.Logger;
@@ -15,9 +17,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import lombok.RequiredArgsConstructor;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequiredArgsConstructor
@@ -28,7 +30,8 @@ public class SearchController {
 
     private final SearchService searchService;
     private final Bucket bucket;
-    private final CategoryService categoryService;
+    private final CombinedSearchService combinedSearchService;
+    private final SearchSuggestService searchSuggestService;
 
     @GetMapping("/pins")
     public ResponseEntity<PageResponse<PinResponse>> searchPins(
@@ -36,20 +39,36 @@ public class SearchController {
             @RequestParam(required = false) List<String> tags,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDirection
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortDirection
     ) {
         if (!bucket.tryConsume(1)) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
         }
 
         logger.info("Поиск пинов по запросу: {}, теги: {}, страница: {}, размер: {}", query, tags, page, size);
+        // при запросе выдача по релевантности, sortBy/sortDirection применяются только без него
         PageResponse<PinResponse> result = searchService.searchPins(query, tags, page, size, sortBy, sortDirection);
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/pins/cursor")
+    public ResponseEntity<CursorPageResponse<PinResponse, String>> searchPinsCursor(
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) List<String> tags,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        if (!bucket.tryConsume(1)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+
+        logger.info("Поиск пинов по запросу: {}, теги: {}, курсор: {}, размер: {}", query, tags, cursor, size);
+        return ResponseEntity.ok(searchService.searchPinsCursor(query, tags, cursor, size));
+    }
+
     @GetMapping("/users")
-    public ResponseEntity<PageResponse<ProfileResponse>> searchUsers(
+    public ResponseEntity<PageResponse<UserSearchResponse>> searchUsers(
             @RequestParam(required = false) String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size
@@ -59,34 +78,37 @@ public class SearchController {
         }
 
         logger.info("Поиск пользователей по запросу: {}, страница: {}, размер: {}", query, page, size);
-        PageResponse<ProfileResponse> result = searchService.searchUsers(query, page, size);
+        PageResponse<UserSearchResponse> result = searchService.searchUsers(query, page, size);
         return ResponseEntity.ok(result);
     }
 
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestResponse> suggest(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "5") int limit
+    ) {
+        if (!bucket.tryConsume(1)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(searchSuggestService.suggest(q, limit));
+    }
+
     @GetMapping
     public ResponseEntity<Map<String, Object>> search(
             @RequestParam(required = false) String query,
+            @RequestParam(required = false) List<String> types,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size
     ) {
         if (!bucket.tryConsume(1)) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
         }
+        Set<CombinedSearchService.Section> sections = CombinedSearchService.Section.parse(types);
+        if (sections == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        logger.info("Общий поиск по запросу: {}, страница: {}, размер: {}", query, page, size);
-
-        PageResponse<PinResponse> pinsResult = searchService.searchPins(query, null, page, size, "createdAt", "desc");
-        PageResponse<ProfileResponse> usersResult = searchService.searchUsers(query, page, size);
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("pins", pinsResult);
-        result.put("users", usersResult);
-        List<String> matchingCategories = categoryService.getAllCategories().stream()
-            .map(Category::getName)
-            .filter(cat -> query == null || query.isEmpty() || cat.toLowerCase().contains(query.toLowerCase()))
-            .toList();
-        result.put("categories", matchingCategories);
-
-        return ResponseEntity.ok(result);
+        logger.info("Общий поиск по запросу: {}, разделы: {}, страница: {}, размер: {}", query, sections, page, size);
+        return ResponseEntity.ok(combinedSearchService.search(query, sections, page, size));
     }
-}
\ No newline at end of file
+}
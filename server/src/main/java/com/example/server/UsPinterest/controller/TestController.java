@@ -6,29 +6,25 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.cache.CacheManager;
-import org.springframework.transaction.annotation.Transactional;
 import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 
+import com.example.server.UsPinterest.service.IntegrityCheckService;
 import com.example.server.UsPinterest.service.PinService;
 import com.example.server.UsPinterest.dto.PageResponse;
+import com.example.server.UsPinterest.dto.PinSnapshot;
 import com.example.server.UsPinterest.model.Pin;
-import com.example.server.UsPinterest.entity.Comment;
-import com.example.server.UsPinterest.entity.Like;
-import com.example.server.UsPinterest.repository.CommentRepository;
-import com.example.server.UsPinterest.repository.LikeRepository;
-import com.example.server.UsPinterest.repository.PinRepository;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @Timed(value = "test.controller", description = "Metrics for TestController endpoints")
@@ -40,10 +36,8 @@ public class TestController {
     private static final Logger logger = LoggerFactory.getLogger(TestController.class);
 
     private final PinService pinService;
-    private final PinRepository pinRepository;
     private final CacheManager cacheManager;
-    private final CommentRepository commentRepository;
-    private final LikeRepository likeRepository;
+    private final IntegrityCheckService integrityCheckService;
 
     @GetMapping("/test")
     public ResponseEntity<Map<String, Object>> test() {
@@ -76,9 +70,9 @@ public class TestController {
         logger.info("Тестирование кэша для пина с ID: {}", id);
 
         try {
-            Optional<Pin> firstCall = pinService.getPinById(id);
+            Optional<PinSnapshot> firstCall = pinService.getPinById(id);
 
-            Optional<Pin> secondCall = pinService.getPinById(id);
+            Optional<PinSnapshot> secondCall = pinService.getPinById(id);
 
             Map<String, Object> response = new LinkedHashMap<>();
             response.put("message", "Проверьте логи сервера. Если кэш работает, вы увидите сообщение о загрузке из базы данных только один раз.");
@@ -141,34 +135,40 @@ public class TestController {
         }
     }
 
+    /**
+     * Поиск и удаление строк-сирот; выполняется фоновой задачей, ответ — её статус
+     */
     @GetMapping("/test/fix-database")
-    @Transactional
-    public ResponseEntity<?> fixDatabaseIntegrity() {
-        logger.info("Исправление целостности базы данных");
+    public ResponseEntity<?> fixDatabaseIntegrity(@RequestParam(required = false) List<String> checks,
+                                                  @RequestParam(defaultValue = "false") boolean dryRun) {
+        return startIntegrityJob(checks, dryRun);
+    }
 
+    @PostMapping("/test/integrity/jobs")
+    public ResponseEntity<?> startIntegrityJob(@RequestParam(required = false) List<String> checks,
+                                               @RequestParam(defaultValue = "true") boolean dryRun) {
+        logger.info("Запуск проверки целостности: проверки={}, dryRun={}", checks, dryRun);
         try {
-            List<Comment> invalidComments = commentRepository.findAll().stream()
-                    .filter(comment -> comment.getPin() == null || pinRepository.findById(comment.getPin().getId()).isEmpty())
-                    .collect(Collectors.toList());
-
-            List<Like> invalidLikes = likeRepository.findAll().stream()
-                    .filter(like -> like.getPin() == null || pinRepository.findById(like.getPin().getId()).isEmpty())
-                    .collect(Collectors.toList());
-
-            commentRepository.deleteAll(invalidComments);
-
-            likeRepository.deleteAll(invalidLikes);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(integrityCheckService.startJob(checks, dryRun));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            Map<String, Object> response = new LinkedHashMap<>();
-            response.put("message", "База данных успешно исправлена");
-            response.put("removedComments", invalidComments.size());
-            response.put("removedLikes", invalidLikes.size());
+    @GetMapping("/test/integrity/checks")
+    public ResponseEntity<?> getIntegrityChecks() {
+        return ResponseEntity.ok(integrityCheckService.checkNames());
+    }
 
-            return ResponseEntity.ok(response);
+    @GetMapping("/test/integrity/jobs")
+    public ResponseEntity<?> getIntegrityJobs() {
+        return ResponseEntity.ok(integrityCheckService.getJobs());
+    }
 
-        } catch (Exception e) {
-            logger.error("Ошибка при исправлении базы данных: {}", e.getMessage(), e);
-            return ResponseEntity.status(500).body("Ошибка при исправлении базы данных: " + e.getMessage());
-        }
+    @GetMapping("/test/integrity/jobs/{id}")
+    public ResponseEntity<?> getIntegrityJob(@PathVariable Long id) {
+        return integrityCheckService.getJob(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
-} 
\ No newline at end of file
+}
@@ -39,7 +39,7 @@ public class UserController {
 
     @GetMapping("/{username}")
     public ResponseEntity<?> getUserByUsername(@PathVariable String username) {
-        return userService.findByUsername(username)
+        return userService.findSummaryByUsername(username)
                 .map(user -> {
                     Map<String, Object> response = new HashMap<>();
                     response.put("id", user.getId());
@@ -0,0 +1,127 @@
+package com.example.server.UsPinterest.dto;
+
+/**
+ * Сообщение об инвалидации кэша между узлами. EVICT/CLEAR относятся к одной записи или кэшу целиком,
+ * PIN_* повторяют на других узлах точечную инвалидацию пина (у каждого узла свои окна ленты).
+ */
+public class CacheInvalidationMessage {
+    public enum Type {
+        EVICT, CLEAR, PIN_LIKES, PIN_COMMENTS, PIN_CREATED, PIN_CHANGED
+    }
+
+    private String origin;
+    private Type type;
+    private String cacheName;
+    private String key;
+    private Long pinId;
+    private Integer likesCount;
+    private Integer commentsCount;
+    private Long boardId;
+    private String username;
+
+    public CacheInvalidationMessage() {
+    }
+
+    public static CacheInvalidationMessage evict(String cacheName, String key) {
+        CacheInvalidationMessage message = new CacheInvalidationMessage();
+        message.setType(Type.EVICT);
+        message.setCacheName(cacheName);
+        message.setKey(key);
+        return message;
+    }
+
+    public static CacheInvalidationMessage clear(String cacheName) {
+        CacheInvalidationMessage message = new CacheInvalidationMessage();
+        message.setType(Type.CLEAR);
+        message.setCacheName(cacheName);
+        return message;
+    }
+
+    public static CacheInvalidationMessage pinComments(Long pinId, int commentsCount) {
+        CacheInvalidationMessage message = pin(Type.PIN_COMMENTS, pinId, null, null, null);
+        message.setCommentsCount(commentsCount);
+        return message;
+    }
+
+    public static CacheInvalidationMessage pin(Type type, Long pinId, Integer likesCount, Long boardId, String username) {
+        CacheInvalidationMessage message = new CacheInvalidationMessage();
+        message.setType(type);
+        message.setPinId(pinId);
+        message.setLikesCount(likesCount);
+        message.setBoardId(boardId);
+        message.setUsername(username);
+        return message;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getPinId() {
+        return pinId;
+    }
+
+    public void setPinId(Long pinId) {
+        this.pinId = pinId;
+    }
+
+    public Integer getLikesCount() {
+        return likesCount;
+    }
+
+    public void setLikesCount(Integer likesCount) {
+        this.likesCount = likesCount;
+    }
+
+    public Integer getCommentsCount() {
+        return commentsCount;
+    }
+
+    public void setCommentsCount(Integer commentsCount) {
+        this.commentsCount = commentsCount;
+    }
+
+    public Long getBoardId() {
+        return boardId;
+    }
+
+    public void setBoardId(Long boardId) {
+        this.boardId = boardId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+}
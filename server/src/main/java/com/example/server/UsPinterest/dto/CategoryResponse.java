@@ -1,6 +1,10 @@
 package com.example.server.UsPinterest.dto;
 
-public class CategoryResponse {
+import java.io.Serializable;
+
+public class CategoryResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private Long id;
     private String name;
 
@@ -0,0 +1,49 @@
+package com.example.server.UsPinterest.dto;
+
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Неизменяемое окно ленты: снимки пинов и необработанные значения курсоров
+ */
+@Value
+public class FeedPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    List<PinSnapshot> items;
+    Long nextCursor;
+    Long prevCursor;
+    boolean hasNext;
+    boolean hasPrevious;
+    int pageSize;
+
+    public boolean contains(Long pinId) {
+        return items.stream().anyMatch(item -> item.getId().equals(pinId));
+    }
+
+    /**
+     * Копия окна с обновлённым счётчиком лайков одного пина
+     */
+    public FeedPage withLikesCount(Long pinId, int likesCount) {
+        return withItem(pinId, item -> item.toBuilder().likesCount(likesCount).build());
+    }
+
+    /**
+     * Копия окна с обновлённым счётчиком комментариев одного пина
+     */
+    public FeedPage withCommentsCount(Long pinId, int commentsCount) {
+        return withItem(pinId, item -> item.toBuilder().commentsCount(commentsCount).build());
+    }
+
+    private FeedPage withItem(Long pinId, UnaryOperator<PinSnapshot> update) {
+        List<PinSnapshot> updated = items.stream()
+                .map(item -> item.getId().equals(pinId) ? update.apply(item) : item)
+                .collect(Collectors.toUnmodifiableList());
+        return new FeedPage(updated, nextCursor, prevCursor, hasNext, hasPrevious, pageSize);
+    }
+}
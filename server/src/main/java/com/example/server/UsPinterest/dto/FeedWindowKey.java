@@ -0,0 +1,25 @@
+package com.example.server.UsPinterest.dto;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * Ключ окна ленты в extended_pins
+ */
+@Value
+public class FeedWindowKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    Long cursorId;
+    int size;
+    boolean descending;
+
+    /**
+     * Голова ленты по убыванию: новые пины появляются только здесь
+     */
+    public boolean isHead() {
+        return descending && cursorId == null;
+    }
+}
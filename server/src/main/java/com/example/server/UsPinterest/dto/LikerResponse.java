@@ -0,0 +1,39 @@
+package com.example.server.UsPinterest.dto;
+
+public class LikerResponse {
+    private Long userId;
+    private String username;
+    private String profileImageUrl;
+
+    public LikerResponse() {}
+
+    public LikerResponse(Long userId, String username, String profileImageUrl) {
+        this.userId = userId;
+        this.username = username;
+        this.profileImageUrl = profileImageUrl;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+
+    public void setProfileImageUrl(String profileImageUrl) {
+        this.profileImageUrl = profileImageUrl;
+    }
+}
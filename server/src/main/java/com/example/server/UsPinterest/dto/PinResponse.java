@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 public class PinResponse {
     private Long id;
@@ -40,6 +41,11 @@ public class PinResponse {
     private String placeName;
     // Список FullHD изображений, связанных с пином
     private java.util.List<String> fullhdImages;
+    // Только на странице пина: первые лайкнувшие и последние комментарии, остальное постранично
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<LikerResponse> recentLikers;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<CommentResponse> recentComments;
 
     public Long getId() {
         return id;
@@ -286,4 +292,20 @@ public class PinResponse {
     public void setThumbnailImageUrl(String thumbnailImageUrl) {
         this.thumbnailImageUrl = thumbnailImageUrl;
     }
+
+    public List<LikerResponse> getRecentLikers() {
+        return recentLikers;
+    }
+
+    public void setRecentLikers(List<LikerResponse> recentLikers) {
+        this.recentLikers = recentLikers;
+    }
+
+    public List<CommentResponse> getRecentComments() {
+        return recentComments;
+    }
+
+    public void setRecentComments(List<CommentResponse> recentComments) {
+        this.recentComments = recentComments;
+    }
 }
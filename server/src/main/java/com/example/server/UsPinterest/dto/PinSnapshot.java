@@ -0,0 +1,141 @@
+package com.example.server.UsPinterest.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Неизменяемый снимок карточки пина. Кэшируется страницами ленты;
+ * PinResponse, PinFullHdResponse и PinThumbnailResponse строятся из него как представления.
+ */
+@Value
+@Builder(toBuilder = true)
+public class PinSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    Long id;
+    String title;
+    String description;
+    LocalDateTime createdAt;
+    Long userId;
+    String username;
+    String userProfileImageUrl;
+    Long boardId;
+    String boardTitle;
+    String imageUrl;
+    Integer imageWidth;
+    Integer imageHeight;
+    Double aspectRatio;
+    String fullhdImageUrl;
+    Integer fullhdWidth;
+    Integer fullhdHeight;
+    String thumbnailImageUrl;
+    Integer thumbnailWidth;
+    Integer thumbnailHeight;
+    int likesCount;
+    int commentsCount;
+    Double rating;
+    List<String> tags;
+    int picturesCount;
+    Double latitude;
+    Double longitude;
+    String address;
+    String placeName;
+
+    public static PinSnapshot of(PinResponse dto) {
+        return PinSnapshot.builder()
+                .id(dto.getId())
+                .title(dto.getTitle())
+                .description(dto.getDescription())
+                .createdAt(dto.getCreatedAt())
+                .userId(dto.getUserId())
+                .username(dto.getUsername())
+                .userProfileImageUrl(dto.getUserProfileImageUrl())
+                .boardId(dto.getBoardId())
+                .boardTitle(dto.getBoardTitle())
+                .imageUrl(dto.getImageUrl())
+                .imageWidth(dto.getImageWidth())
+                .imageHeight(dto.getImageHeight())
+                .aspectRatio(dto.getAspectRatio())
+                .fullhdImageUrl(dto.getFullhdImageUrl())
+                .fullhdWidth(dto.getFullhdWidth())
+                .fullhdHeight(dto.getFullhdHeight())
+                .thumbnailImageUrl(dto.getThumbnailImageUrl())
+                .thumbnailWidth(dto.getThumbnailWidth())
+                .thumbnailHeight(dto.getThumbnailHeight())
+                .likesCount(dto.getLikesCount())
+                .commentsCount(dto.getCommentsCount())
+                .rating(dto.getRating())
+                .tags(dto.getTags() != null ? List.copyOf(dto.getTags()) : List.of())
+                .picturesCount(dto.getPicturesCount())
+                .latitude(dto.getLatitude())
+                .longitude(dto.getLongitude())
+                .address(dto.getAddress())
+                .placeName(dto.getPlaceName())
+                .build();
+    }
+
+    public PinResponse toPinResponse() {
+        PinResponse dto = new PinResponse();
+        dto.setId(id);
+        dto.setTitle(title);
+        dto.setDescription(description);
+        dto.setCreatedAt(createdAt);
+        dto.setUserId(userId);
+        dto.setUsername(username);
+        dto.setUserProfileImageUrl(userProfileImageUrl);
+        dto.setBoardId(boardId);
+        dto.setBoardTitle(boardTitle);
+        dto.setImageUrl(imageUrl);
+        dto.setImageWidth(imageWidth);
+        dto.setImageHeight(imageHeight);
+        dto.setAspectRatio(aspectRatio);
+        dto.setFullhdImageUrl(fullhdImageUrl);
+        dto.setFullhdWidth(fullhdWidth);
+        dto.setFullhdHeight(fullhdHeight);
+        dto.setThumbnailImageUrl(thumbnailImageUrl);
+        dto.setThumbnailWidth(thumbnailWidth);
+        dto.setThumbnailHeight(thumbnailHeight);
+        dto.setLikesCount(likesCount);
+        dto.setCommentsCount(commentsCount);
+        dto.setRating(rating);
+        dto.setTags(new ArrayList<>(tags));
+        dto.setPicturesCount(picturesCount);
+        dto.setLatitude(latitude);
+        dto.setLongitude(longitude);
+        dto.setAddress(address);
+        dto.setPlaceName(placeName);
+        return dto;
+    }
+
+    public PinFullHdResponse toFullHdResponse() {
+        PinFullHdResponse dto = new PinFullHdResponse();
+        dto.setId(id);
+        dto.setFullhdImageUrl(fullhdImageUrl);
+        dto.setFullhdWidth(fullhdWidth);
+        dto.setFullhdHeight(fullhdHeight);
+        dto.setUserId(userId);
+        dto.setUsername(username);
+        dto.setUserAvatar(userProfileImageUrl);
+        dto.setAspectRatio(aspectRatio);
+        return dto;
+    }
+
+    public PinThumbnailResponse toThumbnailResponse() {
+        PinThumbnailResponse dto = new PinThumbnailResponse();
+        dto.setId(id);
+        dto.setThumbnailImageUrl(thumbnailImageUrl);
+        dto.setThumbnailWidth(thumbnailWidth);
+        dto.setThumbnailHeight(thumbnailHeight);
+        dto.setUserId(userId);
+        dto.setUsername(username);
+        dto.setUserAvatar(userProfileImageUrl);
+        dto.setAspectRatio(aspectRatio);
+        return dto;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.server.UsPinterest.dto;
+
+import java.util.List;
+
+/**
+ * Подсказки поиска по префиксу: самые популярные совпадения каждого типа
+ */
+public class SuggestResponse {
+    private List<String> tags;
+    private List<String> users;
+    private List<String> categories;
+    private List<String> places;
+
+    public SuggestResponse() {}
+
+    public SuggestResponse(List<String> tags, List<String> users, List<String> categories, List<String> places) {
+        this.tags = tags;
+        this.users = users;
+        this.categories = categories;
+        this.places = places;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public List<String> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<String> users) {
+        this.users = users;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<String> categories) {
+        this.categories = categories;
+    }
+
+    public List<String> getPlaces() {
+        return places;
+    }
+
+    public void setPlaces(List<String> places) {
+        this.places = places;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.server.UsPinterest.dto;
+
+/**
+ * Пользователь в результатах поиска: только поля карточки, score — схожесть имени с запросом
+ */
+public class UserSearchResponse {
+    private Long id;
+    private String username;
+    private String firstName;
+    private String profileImageUrl;
+    private double score;
+
+    public UserSearchResponse() {}
+
+    public UserSearchResponse(Long id, String username, String firstName, String profileImageUrl, double score) {
+        this.id = id;
+        this.username = username;
+        this.firstName = firstName;
+        this.profileImageUrl = profileImageUrl;
+        this.score = score;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+
+    public void setProfileImageUrl(String profileImageUrl) {
+        this.profileImageUrl = profileImageUrl;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.server.UsPinterest.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Неизменяемая сводка пользователя для кэша: только скалярные поля, без ленивых коллекций
+ */
+@Value
+public class UserSummary {
+    Long id;
+    String username;
+    String email;
+    String firstName;
+    String profileImageUrl;
+    String bio;
+    LocalDateTime registrationDate;
+}
@@ -18,4 +18,4 @@ public interface PinFullHdStructMapper {
     @Mapping(target = "userAvatar", source = "pin.user.profileImageUrl")
 
     PinFullHdResponse toDto(Pin pin);
-}
\ No newline at end of file
+}
@@ -7,6 +7,8 @@ import org.mapstruct.ReportingPolicy;
 import com.example.server.UsPinterest.dto.PinResponse;
 import com.example.server.UsPinterest.dto.PinRequest;
 import com.example.server.UsPinterest.model.Pin;
+import com.example.server.UsPinterest.repository.PinCardView;
+import java.util.List;
 
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
 @DecoratedWith(PinStructMapperDecorator.class)
@@ -21,6 +23,11 @@ public interface PinStructMapper {
     @Mapping(target = "tags", ignore = true)
     PinResponse toDto(Pin pin);
 
+    List<PinResponse> toDtoList(List<Pin> pins);
+
+    // Карточка ленты из лёгкой проекции
+    PinResponse toDto(PinCardView card);
+
     @Mapping(target = "tags", ignore = true)
     Pin toEntity(PinRequest request);
 
@@ -18,4 +18,4 @@ public interface PinThumbnailStructMapper {
     @Mapping(target = "userAvatar", source = "pin.user.profileImageUrl")
 
     PinThumbnailResponse toDto(Pin pin);
-}
\ No newline at end of file
+}
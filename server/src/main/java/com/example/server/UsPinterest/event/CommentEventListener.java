@@ -0,0 +1,32 @@
+package com.example.server.UsPinterest.event;
+
+import com.example.server.UsPinterest.service.NotificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+public class CommentEventListener {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    /**
+     * Уведомления об упоминаниях: после коммита комментария и вне потока запроса
+     */
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleMentions(CommentMentionEvent event) {
+        notificationService.createMentionNotifications(event.getCommentId(), event.getMentionedUserIds());
+    }
+
+    /**
+     * Уведомление автору поста о комментарии: тоже после коммита и вне потока запроса
+     */
+    @Async("notificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handlePostComment(PostCommentedEvent event) {
+        notificationService.createPostCommentNotification(event.getCommentId());
+    }
+}
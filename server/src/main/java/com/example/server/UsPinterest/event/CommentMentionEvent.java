@@ -0,0 +1,24 @@
+package com.example.server.UsPinterest.event;
+
+import java.util.Set;
+
+/**
+ * Комментарий с упоминаниями сохранён; уведомления рассылаются после коммита
+ */
+public class CommentMentionEvent {
+    private final Long commentId;
+    private final Set<Long> mentionedUserIds;
+
+    public CommentMentionEvent(Long commentId, Set<Long> mentionedUserIds) {
+        this.commentId = commentId;
+        this.mentionedUserIds = mentionedUserIds;
+    }
+
+    public Long getCommentId() {
+        return commentId;
+    }
+
+    public Set<Long> getMentionedUserIds() {
+        return mentionedUserIds;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.server.UsPinterest.event;
+
+public class PinCommentsChangedEvent {
+    private final Long pinId;
+    private final int commentsCount;
+
+    public PinCommentsChangedEvent(Long pinId, int commentsCount) {
+        this.pinId = pinId;
+        this.commentsCount = commentsCount;
+    }
+
+    public Long getPinId() {
+        return pinId;
+    }
+
+    public int getCommentsCount() {
+        return commentsCount;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.server.UsPinterest.event;
+
+public class PinDeletedEvent {
+    private final Long pinId;
+    private final Long userId;
+    private final String username;
+    private final Long boardId;
+
+    public PinDeletedEvent(Long pinId, Long userId, String username, Long boardId) {
+        this.pinId = pinId;
+        this.userId = userId;
+        this.username = username;
+        this.boardId = boardId;
+    }
+
+    public Long getPinId() {
+        return pinId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Long getBoardId() {
+        return boardId;
+    }
+}
@@ -3,8 +3,15 @@ package com.example.server.UsPinterest.event;
 import com.example.server.UsPinterest.model.Board;
 import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.repository.PinRepository;
+import com.example.server.UsPinterest.repository.UserRepository;
 import com.example.server.UsPinterest.service.BoardService;
+import com.example.server.UsPinterest.service.NotificationPublisher;
+import com.example.server.UsPinterest.service.NotificationSender;
+import com.example.server.UsPinterest.service.PinCacheInvalidator;
+import com.example.server.UsPinterest.service.SnapshotCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
 
@@ -17,6 +24,21 @@ public class PinEventListener {
     @Autowired
     private PinRepository pinRepository;
 
+    @Autowired
+    private PinCacheInvalidator pinCacheInvalidator;
+
+    @Autowired
+    private SnapshotCacheService snapshotCacheService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationPublisher notificationPublisher;
+
+    @Autowired
+    private NotificationSender notificationSender;
+
     @TransactionalEventListener
     public void handlePinCreated(PinCreatedEvent event) {
         Pin pin = event.getPin();
@@ -25,6 +47,25 @@ public class PinEventListener {
             Board highBoard = boardService.getOrCreateByTitle("Высокий рейтинг");
             pin.setBoard(highBoard);
             pinRepository.save(pin);
+            // Уже после коммита: событие здесь не доставится, сбрасываем кэш напрямую
+            pinCacheInvalidator.pinUpdated(pin);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Уведомление владельцу о новом лайке; публикуется писателем лайков уже после коммита
+     */
+    @Async("notificationExecutor")
+    @EventListener
+    public void handlePinLiked(PinLikedEvent event) {
+        snapshotCacheService.getPinCard(event.getPinId()).ifPresent(pin -> {
+            notificationPublisher.publishLikeNotification(event.getUserId(), event.getPinId());
+            if (pin.getUserId() != null) {
+                notificationSender.sendNotification(
+                        userRepository.getReferenceById(pin.getUserId()),
+                        "Новый лайк",
+                        String.format("%s лайкнул ваш пин '%s'", event.getUsername(), pin.getTitle()));
+            }
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.server.UsPinterest.event;
+
+/**
+ * Новый лайк пина зафиксирован в БД (повторный лайк события не порождает)
+ */
+public class PinLikedEvent {
+    private final Long pinId;
+    private final Long userId;
+    private final String username;
+
+    public PinLikedEvent(Long pinId, Long userId, String username) {
+        this.pinId = pinId;
+        this.userId = userId;
+        this.username = username;
+    }
+
+    public Long getPinId() {
+        return pinId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
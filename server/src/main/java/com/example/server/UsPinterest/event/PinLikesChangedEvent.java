@@ -0,0 +1,19 @@
+package com.example.server.UsPinterest.event;
+
+public class PinLikesChangedEvent {
+    private final Long pinId;
+    private final int likesCount;
+
+    public PinLikesChangedEvent(Long pinId, int likesCount) {
+        this.pinId = pinId;
+        this.likesCount = likesCount;
+    }
+
+    public Long getPinId() {
+        return pinId;
+    }
+
+    public int getLikesCount() {
+        return likesCount;
+    }
+}
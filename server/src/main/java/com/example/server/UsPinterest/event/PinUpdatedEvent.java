@@ -0,0 +1,15 @@
+package com.example.server.UsPinterest.event;
+
+import com.example.server.UsPinterest.model.Pin;
+
+public class PinUpdatedEvent {
+    private final Pin pin;
+
+    public PinUpdatedEvent(Pin pin) {
+        this.pin = pin;
+    }
+
+    public Pin getPin() {
+        return pin;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.server.UsPinterest.event;
+
+/**
+ * Комментарий к посту сохранён; уведомление автору поста рассылается после коммита
+ */
+public class PostCommentedEvent {
+    private final Long commentId;
+
+    public PostCommentedEvent(Long commentId) {
+        this.commentId = commentId;
+    }
+
+    public Long getCommentId() {
+        return commentId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.server.UsPinterest.event;
+
+public class PostCreatedEvent {
+    private final Long postId;
+    private final Long userId;
+
+    public PostCreatedEvent(Long postId, Long userId) {
+        this.postId = postId;
+        this.userId = userId;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
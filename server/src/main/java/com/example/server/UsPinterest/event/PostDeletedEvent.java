@@ -0,0 +1,19 @@
+package com.example.server.UsPinterest.event;
+
+public class PostDeletedEvent {
+    private final Long postId;
+    private final Long userId;
+
+    public PostDeletedEvent(Long postId, Long userId) {
+        this.postId = postId;
+        this.userId = userId;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.server.UsPinterest.event;
+
+import java.util.Collection;
+
+/**
+ * Появились новые теги, пользователи, категории или места: подсказки поиска пополняются после коммита
+ */
+public class SuggestTermsAddedEvent {
+
+    public enum Type {
+        TAG, USER, CATEGORY, PLACE
+    }
+
+    private final Type type;
+    private final Collection<String> values;
+
+    public SuggestTermsAddedEvent(Type type, Collection<String> values) {
+        this.type = type;
+        this.values = values;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Collection<String> getValues() {
+        return values;
+    }
+}
@@ -71,10 +71,12 @@ public class Pin {
     @Column(name = "image_height")
     private Integer imageHeight;
 
-    @Column(name = "likes_count")
+    // Пишется только EngagementCounterService (likes_count = likes_count + ?), JPA столбец не обновляет
+    @Column(name = "likes_count", updatable = false)
     private Integer likesCount = 0;
 
-    @Column(name = "comments_count")
+    // Меняется атомарным comments_count = comments_count + ? в CommentService, JPA столбец не обновляет
+    @Column(name = "comments_count", updatable = false)
     private Integer commentsCount = 0;
 
     @Column(name = "rating")
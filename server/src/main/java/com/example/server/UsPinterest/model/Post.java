@@ -21,7 +21,8 @@ public class Post {
     @Column(name = "image_url")
     private String imageUrl;
 
-    @Column(name = "likes_count")
+    // Пишется только EngagementCounterService (likes_count = likes_count + ?), JPA столбец не обновляет
+    @Column(name = "likes_count", updatable = false)
     private int likesCount;
 
     private String geolocation;
@@ -36,7 +37,8 @@ public class Post {
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Comment> comments;
 
-    @Column(name = "comments_count")
+    // Меняется атомарным comments_count = comments_count + ? в CommentService, JPA столбец не обновляет
+    @Column(name = "comments_count", updatable = false)
     private Integer commentsCount = 0;
 
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -11,6 +11,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,9 +20,24 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByUser(User user);
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.pin.id = :pinId")
     long countByPinId(@Param("pinId") Long pinId);
+    // Количество комментариев для набора пинов: [pinId, count]
+    @Query("SELECT c.pin.id, COUNT(c) FROM Comment c WHERE c.pin.id IN :pinIds GROUP BY c.pin.id")
+    List<Object[]> countByPinIds(@Param("pinIds") Collection<Long> pinIds);
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.post.id = :postId")
     long countByPostId(@Param("postId") Long postId);
     Page<Comment> findByPin(com.example.server.UsPinterest.model.Pin pin, Pageable pageable);
+    // Последние комментарии пина лёгкой проекцией (превью на странице пина)
+    @Query("SELECT c.id AS id, c.text AS text, c.createdAt AS createdAt, u.id AS userId, u.username AS username, " +
+           "u.profileImageUrl AS userProfileImageUrl FROM Comment c LEFT JOIN c.user u WHERE c.pin.id = :pinId ORDER BY c.id DESC")
+    List<CommentView> findRecentByPinId(@Param("pinId") Long pinId, Pageable pageable);
+
+    // Комментарии пина новее afterId по возрастанию id (догрузка для потока комментариев)
+    @Query("SELECT c.id AS id, c.text AS text, c.createdAt AS createdAt, u.id AS userId, u.username AS username, " +
+           "u.profileImageUrl AS userProfileImageUrl FROM Comment c LEFT JOIN c.user u WHERE c.pin.id = :pinId AND c.id > :afterId ORDER BY c.id ASC")
+    List<CommentView> findNewerByPinId(@Param("pinId") Long pinId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT MAX(c.id) FROM Comment c WHERE c.pin.id = :pinId")
+    Long findMaxIdByPinId(@Param("pinId") Long pinId);
     
     // Методы для админской панели
     int countByCreatedAtAfter(LocalDateTime date);
@@ -0,0 +1,21 @@
+package com.example.server.UsPinterest.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Проекция комментария для превью на странице пина: без тегов, упоминаний и сущности автора
+ */
+public interface CommentView {
+
+    Long getId();
+
+    String getText();
+
+    LocalDateTime getCreatedAt();
+
+    Long getUserId();
+
+    String getUsername();
+
+    String getUserProfileImageUrl();
+}
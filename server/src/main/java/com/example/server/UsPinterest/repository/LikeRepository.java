@@ -5,6 +5,7 @@ import com.example.server.UsPinterest.model.Photo;
 import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.model.User;
 import com.example.server.UsPinterest.model.Post;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,7 +23,7 @@ public interface LikeRepository extends JpaRepository<Like, Long> {
     boolean existsByUserIdAndPostId(Long userId, Long postId);
 
     @Transactional
-    void deleteByUserIdAndPostId(Long userId, Long postId);
+    long deleteByUserIdAndPostId(Long userId, Long postId);
 
     int countByPostId(Long postId);
 
@@ -32,11 +34,32 @@ public interface LikeRepository extends JpaRepository<Like, Long> {
     @Query("SELECT l FROM Like l WHERE l.user = ?1 ORDER BY l.id DESC")
     List<Like> findByUserOrderByIdDesc(User user);
 
+    // Лайкнутые пользователем пины одним запросом (сначала новые)
+    @Query("SELECT l.pin FROM Like l WHERE l.user = ?1 AND l.pin IS NOT NULL ORDER BY l.id DESC")
+    List<Pin> findLikedPinsByUser(User user);
+
     Optional<Like> findByPinAndUser(Pin pin, User user);
 
     // Подсчёт лайков для пина
     int countByPinId(Long pinId);
 
+    // Какие из переданных пинов лайкнуты пользователем
+    @Query("SELECT l.pin.id FROM Like l WHERE l.user.id = :userId AND l.pin.id IN :pinIds")
+    List<Long> findLikedPinIds(@Param("userId") Long userId, @Param("pinIds") Collection<Long> pinIds);
+
+    // Все лайкнутые пользователем пины по возрастанию id: основа индекса LikedPinIndex
+    @Query("SELECT l.pin.id FROM Like l WHERE l.user.id = :userId AND l.pin IS NOT NULL ORDER BY l.pin.id")
+    List<Long> findLikedPinIdsOrdered(@Param("userId") Long userId);
+
+    // Лайкнувшие пин, новые первыми: первая страница и страницы после курсора (id лайка)
+    @Query("SELECT l.id AS likeId, u.id AS userId, u.username AS username, u.profileImageUrl AS profileImageUrl " +
+           "FROM Like l JOIN l.user u WHERE l.pin.id = :pinId ORDER BY l.id DESC")
+    List<LikerView> findLikers(@Param("pinId") Long pinId, Pageable pageable);
+
+    @Query("SELECT l.id AS likeId, u.id AS userId, u.username AS username, u.profileImageUrl AS profileImageUrl " +
+           "FROM Like l JOIN l.user u WHERE l.pin.id = :pinId AND l.id < :cursorId ORDER BY l.id DESC")
+    List<LikerView> findLikersBefore(@Param("pinId") Long pinId, @Param("cursorId") Long cursorId, Pageable pageable);
+
     // Для совместимости с Photo
     Optional<Like> findByPhotoAndUser(Photo photo, User user);
 
@@ -0,0 +1,15 @@
+package com.example.server.UsPinterest.repository;
+
+/**
+ * Проекция лайкнувшего пин пользователя; likeId служит курсором постраничного вывода
+ */
+public interface LikerView {
+
+    Long getLikeId();
+
+    Long getUserId();
+
+    String getUsername();
+
+    String getProfileImageUrl();
+}
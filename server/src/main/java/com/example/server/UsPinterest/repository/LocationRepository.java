@@ -4,10 +4,14 @@ import com.example.server.UsPinterest.model.Location;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface LocationRepository extends JpaRepository<Location, Long> {
     List<Location> findByPostId(Long postId);
     List<Location> findByPinId(Long pinId);
+
+    // Пакетная загрузка локаций для страницы пинов
+    List<Location> findByPinIdInOrderByIdAsc(Collection<Long> pinIds);
 }
\ No newline at end of file
@@ -4,10 +4,14 @@ import com.example.server.UsPinterest.model.Picture;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PictureRepository extends JpaRepository<Picture, Long> {
     Optional<Picture> findByPinId(Long pinId);
+
+    // Пакетная загрузка картинок для страницы пинов
+    List<Picture> findByPinIdIn(Collection<Long> pinIds);
 } 
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.example.server.UsPinterest.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Лёгкая проекция пина для карточки ленты: только колонки, которые нужны карточке,
+ * без коллекций лайков и комментариев.
+ */
+public interface PinCardView {
+
+    Long getId();
+
+    String getTitle();
+
+    String getDescription();
+
+    LocalDateTime getCreatedAt();
+
+    Long getUserId();
+
+    String getUsername();
+
+    String getUserProfileImageUrl();
+
+    Long getBoardId();
+
+    String getBoardTitle();
+
+    String getImageUrl();
+
+    Integer getImageWidth();
+
+    Integer getImageHeight();
+
+    String getFullhdImageUrl();
+
+    Integer getFullhdWidth();
+
+    Integer getFullhdHeight();
+
+    String getThumbnailImageUrl();
+
+    Integer getThumbnailWidth();
+
+    Integer getThumbnailHeight();
+
+    Integer getLikesCount();
+
+    Integer getCommentsCount();
+
+    Double getRating();
+}
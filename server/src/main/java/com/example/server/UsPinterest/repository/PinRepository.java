@@ -9,10 +9,12 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,38 +32,63 @@ public interface PinRepository extends JpaRepository<Pin, Long> {
     List<Pin> findByRatingBetween(Double minRating, Double maxRating);
     Page<Pin> findByRatingBetween(Double minRating, Double maxRating, Pageable pageable);
 
-    @Override
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
-    Optional<Pin> findById(Long id);
-
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
-    List<Pin> findAll();
-
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
     List<Pin> findByIdLessThanOrderByIdDesc(Long id, Pageable pageable);
 
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
     List<Pin> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
 
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
-    @Query(
-        "select distinct p from Pin p left join p.tags t left join Location l with l.pin = p " +
-        "where (:text is null or lower(p.description) like lower(concat('%', :text, '%')) " +
-        "or lower(p.title) like lower(concat('%', :text, '%')) " +
-        "or lower(l.nameplace) like lower(concat('%', :text, '%'))) " +
-        "or (:tagNames is not null and t.name in :tagNames)"
-    )
-    Page<Pin> searchByDescriptionOrTags(@Param("text") String text,
-                                       @Param("tagNames") java.util.List<String> tagNames,
-                                       Pageable pageable);
+    // Лента: проекция карточки с keyset-пагинацией по id, без графа лайков/комментариев
+    String FEED_CARD_SELECT =
+        "select p.id as id, p.title as title, p.description as description, p.createdAt as createdAt, " +
+        "u.id as userId, u.username as username, u.profileImageUrl as userProfileImageUrl, " +
+        "b.id as boardId, b.title as boardTitle, " +
+        "p.imageUrl as imageUrl, p.imageWidth as imageWidth, p.imageHeight as imageHeight, " +
+        "p.fullhdImageUrl as fullhdImageUrl, p.fullhdWidth as fullhdWidth, p.fullhdHeight as fullhdHeight, " +
+        "p.thumbnailImageUrl as thumbnailImageUrl, p.thumbnailWidth as thumbnailWidth, p.thumbnailHeight as thumbnailHeight, " +
+        "p.likesCount as likesCount, p.commentsCount as commentsCount, p.rating as rating " +
+        "from Pin p join p.user u left join p.board b ";
+
+    @Query(FEED_CARD_SELECT + "order by p.id desc")
+    List<PinCardView> findFeedCardsDesc(Pageable pageable);
+
+    @Query(FEED_CARD_SELECT + "order by p.id asc")
+    List<PinCardView> findFeedCardsAsc(Pageable pageable);
+
+    @Query(FEED_CARD_SELECT + "where p.id < :cursorId order by p.id desc")
+    List<PinCardView> findFeedCardsBefore(@Param("cursorId") Long cursorId, Pageable pageable);
+
+    @Query(FEED_CARD_SELECT + "where p.id > :cursorId order by p.id asc")
+    List<PinCardView> findFeedCardsAfter(@Param("cursorId") Long cursorId, Pageable pageable);
+
+    @Query(FEED_CARD_SELECT + "where p.id in :ids")
+    List<PinCardView> findCardsByIds(@Param("ids") Collection<Long> ids);
+
+    // Сверка восстановленных снимков: [pinId, likesCount, commentsCount, updated_at]
+    @Query(value = "select p.id, p.likes_count, p.comments_count, p.updated_at from pins p where p.id in (:ids)",
+            nativeQuery = true)
+    List<Object[]> findRevisionsByIds(@Param("ids") Collection<Long> ids);
+
+    // Атомарное изменение счётчика комментариев без чтения пина; 0 — пина нет
+    @Modifying
+    @Query("update Pin p set p.commentsCount = greatest(coalesce(p.commentsCount, 0) + :delta, 0) where p.id = :pinId")
+    int addCommentsCount(@Param("pinId") Long pinId, @Param("delta") int delta);
+
+    @Query("select p.commentsCount from Pin p where p.id = :pinId")
+    Optional<Integer> findCommentsCountById(@Param("pinId") Long pinId);
+
+    @Query("select max(p.id) from Pin p")
+    Long findMaxId();
+
+    // Названия тегов для набора пинов: [pinId, tagName]
+    @Query("select p.id, t.name from Pin p join p.tags t where p.id in :pinIds")
+    List<Object[]> findTagNamesByPinIds(@Param("pinIds") Collection<Long> pinIds);
 
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
     List<Pin> findByTags_NameIgnoreCase(String name, Pageable pageable);
     
+    long countByUserId(Long userId);
+
     // Методы для админской панели
     int countByCreatedAtAfter(LocalDateTime date);
     int countByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
 
-    @EntityGraph(attributePaths = {"likes", "comments", "likes.user", "comments.user"})
     Page<Pin> findByDescriptionContainingIgnoreCaseOrTitleContainingIgnoreCase(String description, String title, Pageable pageable);
 }
\ No newline at end of file
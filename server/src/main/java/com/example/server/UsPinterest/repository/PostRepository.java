@@ -6,12 +6,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
@@ -21,6 +23,18 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     List<Post> findByUserOrderByCreatedAtDesc(User user);
     @EntityGraph(attributePaths = {"comments"})
     Page<Post> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
+
+    long countByUserId(Long userId);
+
+    @Query("select p.user.id from Post p where p.id = :postId")
+    Optional<Long> findUserIdById(@Param("postId") Long postId);
+
+    @Modifying
+    @Query("update Post p set p.commentsCount = greatest(coalesce(p.commentsCount, 0) + :delta, 0) where p.id = :postId")
+    int addCommentsCount(@Param("postId") Long postId, @Param("delta") int delta);
+
+    @Query("select p.likesCount from Post p where p.id = :postId")
+    Optional<Integer> findLikesCountById(@Param("postId") Long postId);
     
     // Методы для админской панели
     int countByCreatedAtAfter(LocalDateTime date);
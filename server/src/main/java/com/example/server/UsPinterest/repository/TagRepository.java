@@ -2,11 +2,21 @@ package com.example.server.UsPinterest.repository;
 
 import com.example.server.UsPinterest.model.Tag;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TagRepository extends JpaRepository<Tag, Long> {
     Optional<Tag> findByNameIgnoreCase(String name);
-} 
\ No newline at end of file
+
+    /**
+     * Теги по именам в нижнем регистре; использует индекс idx_tags_lower_name
+     */
+    @Query("SELECT t FROM Tag t WHERE lower(t.name) IN :names")
+    List<Tag> findByLowerNameIn(@Param("names") Collection<String> names);
+}
@@ -1,5 +1,6 @@
 package com.example.server.UsPinterest.repository;
 
+import com.example.server.UsPinterest.dto.UserSummary;
 import com.example.server.UsPinterest.model.User;
 
 import org.springframework.data.domain.Page;
@@ -10,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +19,8 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
+    List<User> findByUsernameIn(Collection<String> usernames);
+
     Optional<User> findByEmail(String email);
 
     Page<User> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
@@ -51,6 +55,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.likes WHERE u.username = :username")
     Optional<User> findByUsernameWithLikes(@Param("username") String username);
 
+    // Сводки для кэша снимков: только скалярные колонки
+    String USER_SUMMARY_SELECT = "SELECT new com.example.server.UsPinterest.dto.UserSummary(" +
+            "u.id, u.username, u.email, u.firstName, u.profileImageUrl, u.bio, u.registrationDate) FROM User u ";
+
+    @Query(USER_SUMMARY_SELECT + "WHERE u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+    @Query(USER_SUMMARY_SELECT + "WHERE u.username = :username")
+    Optional<UserSummary> findSummaryByUsername(@Param("username") String username);
+
     // Проверка существования имени пользователя без учёта регистра
     boolean existsByUsernameIgnoreCase(String username);
     
@@ -2,10 +2,12 @@ package com.example.server.UsPinterest.service;
 
 import com.example.server.UsPinterest.dto.BoardRequest;
 import com.example.server.UsPinterest.dto.BoardResponse;
+import com.example.server.UsPinterest.dto.PinResponse;
 import com.example.server.UsPinterest.dto.mapper.BoardStructMapper;
 import com.example.server.UsPinterest.dto.mapper.PinStructMapper;
 import com.example.server.UsPinterest.exception.ResourceNotFoundException;
 import com.example.server.UsPinterest.model.Board;
+import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.model.User;
 import com.example.server.UsPinterest.repository.BoardRepository;
 
@@ -17,7 +19,9 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -71,9 +75,7 @@ public class BoardService {
 
         BoardResponse dto = boardStructMapper.toDto(board);
         if (includePins) {
-            dto.setPins(board.getPins().stream()
-                    .map(pin -> pinStructMapper.toDto(pin))
-                    .collect(Collectors.toList()));
+            dto.setPins(pinStructMapper.toDtoList(board.getPins()));
         } else {
             dto.setPins(new ArrayList<>());
         }
@@ -91,15 +93,26 @@ public class BoardService {
     @Cacheable(value = "boards", key = "'user_' + #userId + '_' + #includePins")
     public List<BoardResponse> getBoardsByUserId(Long userId, boolean includePins) {
         List<Board> boards = boardRepository.findByUserId(userId);
+        if (!includePins) {
+            return boards.stream().map(board -> {
+                BoardResponse dto = boardStructMapper.toDto(board);
+                dto.setPins(new ArrayList<>());
+                return dto;
+            }).collect(Collectors.toList());
+        }
+        // Обогащаем пины всех досок одним пакетом, затем раскладываем по доскам
+        List<Pin> allPins = boards.stream()
+                .flatMap(board -> board.getPins().stream())
+                .collect(Collectors.toList());
+        Map<Long, PinResponse> pinResponses = new HashMap<>();
+        for (PinResponse pinResponse : pinStructMapper.toDtoList(allPins)) {
+            pinResponses.put(pinResponse.getId(), pinResponse);
+        }
         return boards.stream().map(board -> {
             BoardResponse dto = boardStructMapper.toDto(board);
-            if (includePins) {
-                dto.setPins(board.getPins().stream()
-                        .map(pin -> pinStructMapper.toDto(pin))
-                        .collect(Collectors.toList()));
-            } else {
-                dto.setPins(new ArrayList<>());
-            }
+            dto.setPins(board.getPins().stream()
+                    .map(pin -> pinResponses.get(pin.getId()))
+                    .collect(Collectors.toList()));
             return dto;
         }).collect(Collectors.toList());
     }
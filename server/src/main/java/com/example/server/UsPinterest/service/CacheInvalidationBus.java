@@ -0,0 +1,170 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Шина инвалидации кэшей между узлами. Локальные сбросы рассылаются другим узлам,
+ * полученные сообщения применяются только к L1 этого узла и дальше не рассылаются.
+ * Метрики: cache.cluster.messages{direction, type}.
+ */
+@Service
+public class CacheInvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private enum Mode {
+        /** Обычная операция: L1 + L2 + рассылка */
+        NORMAL,
+        /** Инвалидация, о которой узел сам разошлёт смысловое сообщение: L1 + L2 без рассылки */
+        LOCAL,
+        /** Применение сообщения другого узла: только L1 */
+        REMOTE
+    }
+
+    private static final ThreadLocal<Mode> MODE = ThreadLocal.withInitial(() -> Mode.NORMAL);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final CacheInvalidationTransport transport;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<CacheInvalidationMessage.Type, List<Consumer<CacheInvalidationMessage>>> handlers =
+            new EnumMap<>(CacheInvalidationMessage.Type.class);
+
+    private final List<Runnable> resyncHandlers = new CopyOnWriteArrayList<>();
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport, ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        for (CacheInvalidationMessage.Type type : CacheInvalidationMessage.Type.values()) {
+            handlers.put(type, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        transport.start(this::receive, this::resync);
+        logger.info("Шина инвалидации кэшей запущена, узел {}, транспорт {}", nodeId, transport.getClass().getSimpleName());
+    }
+
+    public void register(CacheInvalidationMessage.Type type, Consumer<CacheInvalidationMessage> handler) {
+        handlers.get(type).add(handler);
+    }
+
+    public void onResync(Runnable handler) {
+        resyncHandlers.add(handler);
+    }
+
+    public boolean shouldBroadcast() {
+        return MODE.get() == Mode.NORMAL;
+    }
+
+    public boolean isRemote() {
+        return MODE.get() == Mode.REMOTE;
+    }
+
+    /**
+     * Выполняет инвалидацию без рассылки отдельных сбросов: вызывающий сам публикует смысловое сообщение
+     */
+    public void runLocal(Runnable action) {
+        runIn(Mode.LOCAL, action);
+    }
+
+    /**
+     * Рассылает сообщение после коммита текущей транзакции (или сразу, если транзакции нет),
+     * чтобы другие узлы не перечитали из БД ещё не закоммиченное состояние
+     */
+    public void publish(CacheInvalidationMessage message) {
+        message.setOrigin(nodeId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(message);
+                }
+            });
+        } else {
+            send(message);
+        }
+    }
+
+    /**
+     * Для слушателей AFTER_COMMIT: синхронизация, зарегистрированная на этой фазе, уже не сработает
+     */
+    public void publishImmediately(CacheInvalidationMessage message) {
+        message.setOrigin(nodeId);
+        send(message);
+    }
+
+    private void send(CacheInvalidationMessage message) {
+        try {
+            transport.send(objectMapper.writeValueAsString(message));
+            count("out", message.getType());
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Потерянное сообщение ограничено сроком жизни записи на других узлах
+            logger.warn("Не удалось разослать инвалидацию {}: {}", message.getType(), e.getMessage());
+        }
+    }
+
+    private void receive(String payload) {
+        CacheInvalidationMessage message;
+        try {
+            message = objectMapper.readValue(payload, CacheInvalidationMessage.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("Некорректное сообщение инвалидации: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(message.getOrigin()) || message.getType() == null) {
+            return;
+        }
+        count("in", message.getType());
+        runIn(Mode.REMOTE, () -> handlers.get(message.getType()).forEach(handler -> {
+            try {
+                handler.accept(message);
+            } catch (RuntimeException e) {
+                logger.warn("Ошибка применения инвалидации {}: {}", message.getType(), e.getMessage());
+            }
+        }));
+    }
+
+    private void resync() {
+        logger.warn("Сообщения инвалидации могли быть потеряны, сбрасываем локальные кэши");
+        runIn(Mode.REMOTE, () -> resyncHandlers.forEach(Runnable::run));
+    }
+
+    private void runIn(Mode mode, Runnable action) {
+        Mode previous = MODE.get();
+        MODE.set(mode);
+        try {
+            action.run();
+        } finally {
+            MODE.set(previous);
+        }
+    }
+
+    private void count(String direction, CacheInvalidationMessage.Type type) {
+        meterRegistry.counter("cache.cluster.messages", "direction", direction, "type", type.name()).increment();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.server.UsPinterest.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Канал доставки сообщений инвалидации между узлами (Postgres LISTEN/NOTIFY, RabbitMQ или локальный)
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Подписка на сообщения других узлов. onResync вызывается, когда сообщения могли быть потеряны
+     * (переподключение), и узел должен сбросить свои кэши целиком.
+     */
+    void start(Consumer<String> onMessage, Runnable onResync);
+
+    void send(String payload);
+}
@@ -0,0 +1,96 @@
+package com.example.server.UsPinterest.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight загрузка промахов кэша: на один ключ выполняется один загрузчик,
+ * остальные запросы ждут тот же future вместо повторного запроса к БД.
+ * Метрики: cache.loads{cache} — загрузки, cache.coalesced.waits{cache} — время ожидания чужой загрузки.
+ */
+@Service
+public class CacheLoadCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheLoadCoalescer.class);
+
+    private final ConcurrentHashMap<FlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    private final long waitTimeoutMs;
+
+    public CacheLoadCoalescer(MeterRegistry meterRegistry,
+                              @Value("${app.cache.coalesce-timeout-ms:10000}") long waitTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * Загружает значение для ключа; если загрузка уже идёт, дожидается её результата.
+     * Загрузчик сам кладёт значение в кэш, поэтому пришедшие после завершения найдут его там.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String cacheName, Object key, Supplier<T> loader) {
+        FlightKey flightKey = new FlightKey(cacheName, key);
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, own);
+        if (existing != null) {
+            return (T) await(cacheName, key, existing, loader);
+        }
+        try {
+            meterRegistry.counter("cache.loads", "cache", cacheName).increment();
+            T value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, own);
+        }
+    }
+
+    /**
+     * То же в фоне: для упреждающего обновления записей до истечения срока
+     */
+    public <T> CompletableFuture<T> loadAsync(String cacheName, Object key, Supplier<T> loader, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> load(cacheName, key, loader), executor);
+    }
+
+    private Object await(String cacheName, Object key, CompletableFuture<Object> future, Supplier<?> loader) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Зависшая загрузка не должна блокировать запросы бесконечно
+            logger.warn("Ожидание загрузки {}[{}] превысило {} мс, загружаем сами", cacheName, key, waitTimeoutMs);
+            meterRegistry.counter("cache.coalesced.timeouts", "cache", cacheName).increment();
+            return loader.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            sample.stop(meterRegistry.timer("cache.coalesced.waits", "cache", cacheName));
+        }
+    }
+
+    private record FlightKey(String cacheName, Object key) {
+    }
+}
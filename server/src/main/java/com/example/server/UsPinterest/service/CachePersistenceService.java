@@ -0,0 +1,273 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.config.CacheSerialization;
+import com.example.server.UsPinterest.dto.FeedPage;
+import com.example.server.UsPinterest.dto.FeedWindowKey;
+import com.example.server.UsPinterest.dto.PinSnapshot;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
+import com.example.server.UsPinterest.repository.PinRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Тёплый старт кэшей: при штатной остановке окна ленты и карточки пинов пишутся на диск,
+ * при запуске загружаются обратно до готовности приложения. Восстановленные записи
+ * сверяются с БД лениво, при первом чтении одним лёгким запросом вместо полного обогащения:
+ * существование пинов, счётчики лайков и комментариев, pins.updated_at не позже сохранения снимка
+ * (а для головы ленты — самый новый id).
+ */
+@Service
+public class CachePersistenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachePersistenceService.class);
+
+    // Запас на расхождение часов узла и БД при сравнении updated_at со временем снимка
+    private static final long CLOCK_SKEW_MS = 60_000;
+
+    private final CacheManager cacheManager;
+    private final CacheManager extendedPinCacheManager;
+    private final PinRepository pinRepository;
+    private final PinCacheInvalidator pinCacheInvalidator;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.cache.persistence.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.persistence.path:data/cache-snapshot.bin}")
+    private String path;
+
+    @Value("${app.cache.persistence.max-age-ms:3600000}")
+    private long maxAgeMs;
+
+    // Восстановленные с диска и ещё не сверенные с БД ключи
+    private final Set<FeedWindowKey> unverifiedWindows = ConcurrentHashMap.newKeySet();
+    private final Set<Long> unverifiedPins = ConcurrentHashMap.newKeySet();
+
+    // Время сохранения восстановленного снимка: правки пинов после него делают записи устаревшими
+    private volatile long restoredSavedAt;
+
+    public CachePersistenceService(CacheManager cacheManager,
+                                   @Qualifier("extendedPinCacheManager") CacheManager extendedPinCacheManager,
+                                   PinRepository pinRepository,
+                                   PinCacheInvalidator pinCacheInvalidator,
+                                   JdbcTemplate jdbcTemplate) {
+        this.cacheManager = cacheManager;
+        this.extendedPinCacheManager = extendedPinCacheManager;
+        this.pinRepository = pinRepository;
+        this.pinCacheInvalidator = pinCacheInvalidator;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Отметка правки пина в той же транзакции: по ней сверяются снимки, сохранённые до правки.
+     * Правки локации и тегов не меняют строку pins, поэтому отметка ставится по событию, а не в сущности
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onPinUpdated(PinUpdatedEvent event) {
+        if (event.getPin() != null && event.getPin().getId() != null) {
+            jdbcTemplate.update("UPDATE pins SET updated_at = now() WHERE id = ?", event.getPin().getId());
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void save() {
+        if (!enabled) {
+            return;
+        }
+        Map<FeedWindowKey, FeedPage> windows = new HashMap<>();
+        nativeCache(windowsCache()).asMap().forEach((key, value) -> {
+            if (key instanceof FeedWindowKey window && value instanceof FeedPage page) {
+                windows.put(window, page);
+            }
+        });
+        Map<Long, PinSnapshot> pins = new HashMap<>();
+        nativeCache(pinsCache()).asMap().forEach((key, value) -> {
+            if (key instanceof Long id && value instanceof PinSnapshot card) {
+                pins.put(id, card);
+            }
+        });
+        Path file = Paths.get(path);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeObject(new CacheSnapshot(System.currentTimeMillis(), windows, pins));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Снимок кэшей сохранён в {}: окон ленты {}, карточек {}", file, windows.size(), pins.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось сохранить снимок кэшей в {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Загрузка снимка до ApplicationReadyEvent; прогрев ленты (CacheWarmupService) идёт следом
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    @Order(0)
+    public void restore() {
+        Path file = Paths.get(path);
+        if (!enabled || !Files.isRegularFile(file)) {
+            return;
+        }
+        // Файл читается только через список разрешённых классов: подменённый снимок не исполнит код
+        try (ObjectInputStream in = CacheSerialization.objectInput(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(file))), CacheSnapshot.class)) {
+            CacheSnapshot snapshot = (CacheSnapshot) in.readObject();
+            long age = System.currentTimeMillis() - snapshot.savedAt();
+            if (age > maxAgeMs) {
+                logger.info("Снимок кэшей устарел ({} мс), пропускаем", age);
+                return;
+            }
+            restoredSavedAt = snapshot.savedAt();
+            long loadGeneration = pinCacheInvalidator.generation();
+            snapshot.windows().forEach((key, page) -> {
+                unverifiedWindows.add(key);
+                pinCacheInvalidator.put(PinCacheInvalidator.EXTENDED_PINS_CACHE, key, page,
+                        page.getItems().stream().map(PinSnapshot::getId).collect(Collectors.toList()), loadGeneration);
+            });
+            Cache pins = pinsCache();
+            snapshot.pins().forEach((id, card) -> {
+                pins.put(id, card);
+                unverifiedPins.add(id);
+            });
+            logger.info("Кэши восстановлены из {}: окон ленты {}, карточек {}",
+                    file, snapshot.windows().size(), snapshot.pins().size());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // Несовместимый или повреждённый снимок: стартуем с пустыми кэшами
+            logger.warn("Не удалось загрузить снимок кэшей из {}: {}", file, e.getMessage());
+        } finally {
+            // Снимок одноразовый: после аварийной остановки старые данные не должны вернуться
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Не удалось удалить снимок кэшей {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Сверяет восстановленное окно ленты при первом чтении; несовпадение сбрасывает окно
+     */
+    public boolean revalidateWindow(FeedWindowKey key, FeedPage page) {
+        if (unverifiedWindows.isEmpty() || !unverifiedWindows.remove(key)) {
+            return true;
+        }
+        boolean valid = staleIds(page.getItems()).isEmpty();
+        if (valid && key.isHead() && !page.getItems().isEmpty()) {
+            // в голову ленты за время простоя могли добавиться пины
+            valid = Objects.equals(pinRepository.findMaxId(), page.getItems().get(0).getId());
+        }
+        if (!valid) {
+            windowsCache().evict(key);
+            logger.debug("Восстановленное окно ленты {} устарело", key);
+        }
+        return valid;
+    }
+
+    /**
+     * Сверяет восстановленные карточки; возвращает id устаревших (они уже сброшены из кэша)
+     */
+    public Set<Long> revalidatePins(Collection<PinSnapshot> cards) {
+        if (unverifiedPins.isEmpty()) {
+            return Set.of();
+        }
+        List<PinSnapshot> restored = new ArrayList<>();
+        for (PinSnapshot card : cards) {
+            if (unverifiedPins.remove(card.getId())) {
+                restored.add(card);
+            }
+        }
+        if (restored.isEmpty()) {
+            return Set.of();
+        }
+        Set<Long> stale = staleIds(restored);
+        Cache pins = pinsCache();
+        stale.forEach(pins::evict);
+        return stale;
+    }
+
+    private Set<Long> staleIds(List<PinSnapshot> cards) {
+        if (cards.isEmpty()) {
+            return Set.of();
+        }
+        List<Long> ids = cards.stream().map(PinSnapshot::getId).collect(Collectors.toList());
+        Map<Long, Object[]> revisions = new HashMap<>();
+        for (Object[] row : pinRepository.findRevisionsByIds(ids)) {
+            revisions.put(((Number) row[0]).longValue(), row);
+        }
+        long editedAfter = restoredSavedAt - CLOCK_SKEW_MS;
+        Set<Long> stale = new HashSet<>();
+        for (PinSnapshot card : cards) {
+            Object[] row = revisions.get(card.getId());
+            if (row == null
+                    || count(row[1]) != card.getLikesCount()
+                    || count(row[2]) != card.getCommentsCount()
+                    || (row[3] instanceof Timestamp updatedAt && updatedAt.getTime() >= editedAfter)) {
+                stale.add(card.getId());
+            }
+        }
+        return stale;
+    }
+
+    private static int count(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(Cache cache) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+
+    private Cache windowsCache() {
+        return extendedPinCacheManager.getCache(PinCacheInvalidator.EXTENDED_PINS_CACHE);
+    }
+
+    private Cache pinsCache() {
+        return cacheManager.getCache(PinCacheInvalidator.PINS_CACHE);
+    }
+
+    private record CacheSnapshot(long savedAt, Map<FeedWindowKey, FeedPage> windows,
+                                 Map<Long, PinSnapshot> pins) implements Serializable {
+    }
+}
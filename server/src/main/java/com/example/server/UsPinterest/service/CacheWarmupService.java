@@ -0,0 +1,58 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.FeedPage;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+/**
+ * Прогрев кэшей до готовности приложения: первые окна ленты и список категорий.
+ * Выполняется после восстановления снимка, поэтому восстановленные окна здесь же и сверяются.
+ */
+@Service
+@RequiredArgsConstructor
+public class CacheWarmupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmupService.class);
+
+    private final PinFeedService pinFeedService;
+
+    private final CategoryService categoryService;
+
+    @Value("${app.cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.warmup.feed-windows:3}")
+    private int feedWindows;
+
+    @EventListener(ApplicationStartedEvent.class)
+    @Order(1)
+    public void warmup() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        try {
+            Long cursor = null;
+            for (int i = 0; i < feedWindows; i++) {
+                FeedPage page = pinFeedService.getWindow(cursor, PinFeedService.DEFAULT_PAGE_SIZE, true);
+                loaded++;
+                if (!page.isHasNext()) {
+                    break;
+                }
+                cursor = page.getNextCursor();
+            }
+            categoryService.getAllCategories();
+            logger.info("Прогрев кэшей: окон ленты {}, категории, {} мс", loaded, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // Прогрев не должен мешать запуску: холодный кэш заполнится запросами
+            logger.warn("Прогрев кэшей прерван после {} окон: {}", loaded, e.getMessage());
+        }
+    }
+}
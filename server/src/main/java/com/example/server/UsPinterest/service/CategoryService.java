@@ -1,8 +1,13 @@
 package com.example.server.UsPinterest.service;
 
+import com.example.server.UsPinterest.dto.CategoryResponse;
+import com.example.server.UsPinterest.event.SuggestTermsAddedEvent;
 import com.example.server.UsPinterest.model.Category;
 import com.example.server.UsPinterest.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,12 +17,21 @@ import java.util.List;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+    // В кэше DTO, а не сущности: значение сериализуется в снимок и общий L2
+    @Cacheable(value = "categories", key = "'all'")
+    public List<CategoryResponse> getAllCategories() {
+        return categoryRepository.findAll().stream()
+                .map(category -> new CategoryResponse(category.getId(), category.getName()))
+                .toList();
     }
 
+    @CacheEvict(value = "categories", allEntries = true)
     public Category saveCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new SuggestTermsAddedEvent(SuggestTermsAddedEvent.Type.CATEGORY,
+                List.of(saved.getName())));
+        return saved;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.CategoryResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Общий поиск (/api/search): разделы пинов, пользователей и категорий запрашиваются параллельно.
+ * Раздел, не уложившийся в свой таймаут или упавший, отсутствует в ответе, ответ помечается partial
+ */
+@Service
+public class CombinedSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CombinedSearchService.class);
+
+    public enum Section {
+        PINS, USERS, CATEGORIES;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Разделы из параметра types; пустой список — все разделы, неизвестное имя — null
+         */
+        public static Set<Section> parse(List<String> names) {
+            if (names == null || names.isEmpty()) {
+                return EnumSet.allOf(Section.class);
+            }
+            Set<Section> sections = EnumSet.noneOf(Section.class);
+            for (String name : names) {
+                if (name == null || name.isBlank()) {
+                    continue;
+                }
+                try {
+                    sections.add(Section.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+            return sections.isEmpty() ? EnumSet.allOf(Section.class) : sections;
+        }
+    }
+
+    private final SearchService searchService;
+
+    private final CategoryService categoryService;
+
+    private final Executor executor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Section, Long> timeoutsMs = new EnumMap<>(Section.class);
+
+    public CombinedSearchService(SearchService searchService,
+                                 CategoryService categoryService,
+                                 @Qualifier("searchFanOutExecutor") Executor executor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.search.combined.pins-timeout-ms:800}") long pinsTimeoutMs,
+                                 @Value("${app.search.combined.users-timeout-ms:500}") long usersTimeoutMs,
+                                 @Value("${app.search.combined.categories-timeout-ms:200}") long categoriesTimeoutMs) {
+        this.searchService = searchService;
+        this.categoryService = categoryService;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        timeoutsMs.put(Section.PINS, pinsTimeoutMs);
+        timeoutsMs.put(Section.USERS, usersTimeoutMs);
+        timeoutsMs.put(Section.CATEGORIES, categoriesTimeoutMs);
+    }
+
+    public Map<String, Object> search(String query, Set<Section> sections, int page, int size) {
+        Map<Section, CompletableFuture<Object>> branches = new EnumMap<>(Section.class);
+        for (Section section : sections) {
+            branches.put(section, dispatch(section, () -> load(section, query, page, size)));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        branches.forEach((section, branch) -> {
+            // ветки уже ограничены своими таймаутами, join не ждёт дольше самой медленной
+            Object value = branch.join();
+            if (value != null) {
+                result.put(section.key(), value);
+            } else {
+                missing.add(section.key());
+            }
+        });
+        result.put("partial", !missing.isEmpty());
+        if (!missing.isEmpty()) {
+            result.put("missing", missing);
+        }
+        return result;
+    }
+
+    private Object load(Section section, String query, int page, int size) {
+        switch (section) {
+            case PINS:
+                return searchService.searchPins(query, null, page, size);
+            case USERS:
+                return searchService.searchUsers(query, page, size);
+            default:
+                return matchingCategories(query);
+        }
+    }
+
+    /**
+     * Совпадение по подстроке в любом месте названия; список категорий берётся из кэша categories, запроса в БД нет
+     */
+    private List<String> matchingCategories(String query) {
+        String needle = query != null ? query.trim().toLowerCase(Locale.ROOT) : "";
+        return categoryService.getAllCategories().stream()
+                .map(CategoryResponse::getName)
+                .filter(name -> needle.isEmpty() || name.toLowerCase(Locale.ROOT).contains(needle))
+                .toList();
+    }
+
+    /**
+     * Запуск ветки с таймаутом; результат — значение раздела или null, если раздел не получен.
+     * orTimeout лишь перестаёт ждать, поэтому ветка, дождавшаяся потока после своего срока, запрос не выполняет
+     */
+    private CompletableFuture<Object> dispatch(Section section, Supplier<Object> loader) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutsMs.get(section));
+        CompletableFuture<Object> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                if (System.nanoTime() - deadline >= 0) {
+                    meterRegistry.counter("search.combined.expired", "section", section.key()).increment();
+                    throw new CompletionException(new TimeoutException("срок ветки истёк в очереди"));
+                }
+                return loader.get();
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future
+                .orTimeout(timeoutsMs.get(section), TimeUnit.MILLISECONDS)
+                .handle((value, error) -> {
+                    String outcome = outcome(error);
+                    sample.stop(meterRegistry.timer("search.combined.branch",
+                            "section", section.key(), "outcome", outcome));
+                    if (error != null) {
+                        logger.warn("Раздел {} общего поиска не получен ({}): {}",
+                                section.key(), outcome, unwrap(error).toString());
+                        return null;
+                    }
+                    return value;
+                });
+    }
+
+    private static String outcome(Throwable error) {
+        if (error == null) {
+            return "success";
+        }
+        Throwable cause = unwrap(error);
+        if (cause instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return "rejected";
+        }
+        return "failure";
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
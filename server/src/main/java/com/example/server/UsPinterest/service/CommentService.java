@@ -5,22 +5,22 @@ import com.example.server.UsPinterest.dto.CommentResponse;
 import com.example.server.UsPinterest.entity.Comment;
 import com.example.server.UsPinterest.model.Post;
 import com.example.server.UsPinterest.model.User;
+import com.example.server.UsPinterest.event.CommentMentionEvent;
+import com.example.server.UsPinterest.event.PinCommentsChangedEvent;
+import com.example.server.UsPinterest.event.PostCommentedEvent;
+import com.example.server.UsPinterest.exception.ResourceNotFoundException;
 import com.example.server.UsPinterest.repository.CommentRepository;
+import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.PostRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
-import com.example.server.UsPinterest.service.NotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
-import com.example.server.UsPinterest.model.Tag;
-import com.example.server.UsPinterest.repository.TagRepository;
-import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,8 +34,64 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
     private final UserRepository userRepository;
-    private final NotificationService notificationService;
-    private final TagRepository tagRepository;
+    private final TextEntityExtractor textEntityExtractor;
+    private final PinRepository pinRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Комментарий к пину: счётчик пина увеличивается одним UPDATE в той же транзакции,
+     * пин и его коллекция комментариев не загружаются
+     */
+    @Transactional
+    public Comment addCommentToPin(Long pinId, String text, User user) {
+        // UPDATE заодно проверяет, что пин существует
+        if (pinRepository.addCommentsCount(pinId, 1) == 0) {
+            throw new ResourceNotFoundException("Пин не найден с id: " + pinId);
+        }
+        Comment comment = new Comment();
+        comment.setText(text);
+        comment.setPin(pinRepository.getReferenceById(pinId));
+        comment.setUser(user);
+        comment.setCreatedAt(LocalDateTime.now());
+        // Теги и упоминания разрешаются пакетно, по одному запросу на вид сущности
+        comment.setTags(textEntityExtractor.resolveHashtags(text));
+        comment.setMentions(textEntityExtractor.resolveMentions(text));
+
+        Comment savedComment = commentRepository.save(comment);
+        publishPinCommentsCount(pinId);
+        publishMentions(savedComment);
+        return savedComment;
+    }
+
+    @Transactional
+    public void deletePinComment(Long commentId, Long pinId, Long userId) {
+        Comment comment = commentRepository.findById(commentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Комментарий не найден с ID: " + commentId));
+        if (comment.getPin() == null || !comment.getPin().getId().equals(pinId)) {
+            throw new RuntimeException("Комментарий не принадлежит указанному пину");
+        }
+        if (comment.getUser() == null || !comment.getUser().getId().equals(userId)) {
+            throw new AccessDeniedException("У вас нет прав для удаления этого комментария");
+        }
+        commentRepository.delete(comment);
+        pinRepository.addCommentsCount(pinId, -1);
+        publishPinCommentsCount(pinId);
+        logger.info("Комментарий удален: {} из пина: {} пользователем: {}", commentId, pinId, userId);
+    }
+
+    private void publishPinCommentsCount(Long pinId) {
+        // значение после нашего UPDATE: строка пина заблокирована до конца транзакции
+        int commentsCount = pinRepository.findCommentsCountById(pinId).orElse(0);
+        eventPublisher.publishEvent(new PinCommentsChangedEvent(pinId, commentsCount));
+    }
+
+    private void publishMentions(Comment comment) {
+        if (comment.getMentions() == null || comment.getMentions().isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = comment.getMentions().stream().map(User::getId).collect(Collectors.toSet());
+        eventPublisher.publishEvent(new CommentMentionEvent(comment.getId(), userIds));
+    }
 
     @Transactional
     public CommentResponse addCommentToPost(Long postId, CommentRequest commentRequest, Long userId) {
@@ -50,41 +106,19 @@ public class CommentService {
         comment.setUser(user);
         comment.setPost(post);
         comment.setCreatedAt(LocalDateTime.now());
-        // Обработка тегов в комментарии
-        Set<Tag> commentTags = new HashSet<>();
-        Pattern tagPattern = Pattern.compile("#(\\w+)");
-        Matcher tagMatcher = tagPattern.matcher(comment.getText());
-        while (tagMatcher.find()) {
-            String tagName = tagMatcher.group(1);
-            Tag tag = tagRepository.findByNameIgnoreCase(tagName)
-                .orElseGet(() -> tagRepository.save(new Tag(tagName)));
-            commentTags.add(tag);
-        }
-        comment.setTags(commentTags);
-        // Обработка упоминаний в комментарии
-        Set<User> commentMentions = new HashSet<>();
-        Pattern mentionPattern = Pattern.compile("@(\\w+)");
-        Matcher mentionMatcher = mentionPattern.matcher(comment.getText());
-        while (mentionMatcher.find()) {
-            String usernameMention = mentionMatcher.group(1);
-            userRepository.findByUsername(usernameMention).ifPresent(mentionedUser -> {
-                commentMentions.add(mentionedUser);
-                notificationService.createMentionNotification(user, comment, mentionedUser);
-            });
-        }
-        comment.setMentions(commentMentions);
+        comment.setTags(textEntityExtractor.resolveHashtags(comment.getText()));
+        comment.setMentions(textEntityExtractor.resolveMentions(comment.getText()));
 
         Comment savedComment = commentRepository.save(comment);
         logger.info("Комментарий создан: {} для поста: {} пользователем: {}",
                 savedComment.getId(), postId, user.getUsername());
 
-        // Обновляем счетчик комментариев в посте
-        long totalComments = commentRepository.countByPostId(postId);
-        post.setCommentsCount((int) totalComments);
-        postRepository.save(post);
+        // Счётчик поста увеличивается атомарно, без пересчёта COUNT(*)
+        postRepository.addCommentsCount(postId, 1);
 
-        // Создаем уведомление о комментарии к посту
-        notificationService.createPostCommentNotification(user, post, commentRequest.getText());
+        // Уведомления автору поста и упомянутым — после коммита, вне потока запроса (CommentEventListener)
+        eventPublisher.publishEvent(new PostCommentedEvent(savedComment.getId()));
+        publishMentions(savedComment);
 
         return convertToCommentResponse(savedComment);
     }
@@ -122,12 +156,7 @@ public class CommentService {
         }
 
         commentRepository.delete(comment);
-        // После удаления обновляем счетчик комментариев
-        long totalCommentsAfterDelete = commentRepository.countByPostId(postId);
-        Post parentPost = postRepository.findById(postId)
-                .orElseThrow(() -> new RuntimeException("Пост не найден с ID: " + postId));
-        parentPost.setCommentsCount((int) totalCommentsAfterDelete);
-        postRepository.save(parentPost);
+        postRepository.addCommentsCount(postId, -1);
 
         logger.info("Комментарий удален: {} из поста: {} пользователем: {}",
                 commentId, postId, user.getUsername());
@@ -0,0 +1,515 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.example.server.UsPinterest.dto.CommentResponse;
+import com.example.server.UsPinterest.event.PinCommentsChangedEvent;
+import com.example.server.UsPinterest.exception.TooManyRequestsException;
+import com.example.server.UsPinterest.repository.CommentRepository;
+import com.example.server.UsPinterest.repository.CommentView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Потоки новых комментариев пинов (SSE). Подписчики одного пина образуют тему; на изменение
+ * комментариев узел один раз дочитывает новые строки и один раз сериализует каждое событие,
+ * после чего кадр раскладывается по очередям подписчиков. Очередь подписчика ограничена:
+ * не успевающий читать клиент отключается и переподключается с Last-Event-ID.
+ * Кадры отправляют несколько долгоживущих циклов доставки, обходящих подписчиков с непустой
+ * очередью: число задач не растёт с числом подписчиков. Догрузка перечитывает окно rescan-ids
+ * ниже границы темы, чтобы не потерять комментарий, закоммиченный позже комментария с большим id.
+ * Изменения с других узлов приходят сообщением PIN_COMMENTS шины инвалидации.
+ */
+@Service
+public class CommentStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentStreamService.class);
+
+    // Сколько комментариев догружается за раз (и при переподключении)
+    private static final int FETCH_LIMIT = 50;
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("ping").build();
+
+    private final CommentRepository commentRepository;
+    private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount;
+
+    @Value("${app.comments.stream.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${app.comments.stream.max-subscribers:5000}")
+    private int maxSubscribers;
+
+    @Value("${app.comments.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.comments.stream.delivery-threads:2}")
+    private int deliveryThreads;
+
+    @Value("${app.comments.stream.rescan-ids:1000}")
+    private long rescanIds;
+
+    @Value("${app.comments.stream.write-timeout-ms:5000}")
+    private long writeTimeoutMs;
+
+    private DeliveryLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    public CommentStreamService(CommentRepository commentRepository,
+                                FileStorageService fileStorageService,
+                                ObjectMapper objectMapper,
+                                @Qualifier("commentStreamExecutor") Executor executor,
+                                CacheInvalidationBus bus,
+                                MeterRegistry meterRegistry) {
+        this.commentRepository = commentRepository;
+        this.fileStorageService = fileStorageService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.subscriberCount = meterRegistry.gauge("comments.stream.subscribers", new AtomicInteger());
+        bus.register(CacheInvalidationMessage.Type.PIN_COMMENTS,
+                m -> onCommentsChanged(m.getPinId(), m.getCommentsCount()));
+    }
+
+    @PostConstruct
+    public void startDelivery() {
+        loops = new DeliveryLoop[Math.max(1, deliveryThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new DeliveryLoop("commentStream-delivery-" + i);
+            loops[i].startWorker();
+        }
+    }
+
+    @PreDestroy
+    public void stopDelivery() {
+        for (DeliveryLoop loop : loops) {
+            loop.worker.thread.interrupt();
+        }
+    }
+
+    /**
+     * Запись в сокет блокирующая: подписчик, чей кадр не ушёл за write-timeout-ms, отключается,
+     * а цикл получает новый поток, чтобы остальные подписчики не ждали. Зависший поток сам
+     * закрывает emitter, когда запись завершится или упадёт по таймауту соединения, и выходит
+     */
+    @Scheduled(fixedDelayString = "${app.comments.stream.write-check-ms:1000}")
+    public void checkStalledWrites() {
+        long now = System.nanoTime();
+        for (DeliveryLoop loop : loops) {
+            Worker worker = loop.worker;
+            Subscriber stalled = worker.sending;
+            if (stalled == null || now - worker.sendStarted < TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs)) {
+                continue;
+            }
+            meterRegistry.counter("comments.stream.stalled").increment();
+            logger.warn("Поток комментариев пина {}: кадр не отправлен за {} мс, подписчик отключён",
+                    stalled.pinId, writeTimeoutMs);
+            leave(stalled);
+            loop.startWorker();
+        }
+    }
+
+    /**
+     * Подписка на новые комментарии пина. afterId — последний комментарий, который уже есть у клиента:
+     * всё, что новее, досылается перед живыми событиями
+     */
+    public SseEmitter subscribe(Long pinId, Long afterId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TooManyRequestsException("Слишком много подписок на комментарии");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(pinId, emitter, bufferSize,
+                loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)]);
+        emitter.onCompletion(() -> leave(subscriber));
+        emitter.onTimeout(() -> leave(subscriber));
+        emitter.onError(e -> leave(subscriber));
+        try {
+            executor.execute(() -> join(subscriber, afterId));
+        } catch (RejectedExecutionException e) {
+            leave(subscriber);
+            throw new TooManyRequestsException("Слишком много подписок на комментарии");
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentsChanged(PinCommentsChangedEvent event) {
+        onCommentsChanged(event.getPinId(), event.getCommentsCount());
+    }
+
+    /**
+     * Пустой кадр раз в интервал: прокси не закрывают простаивающее соединение, а мёртвые клиенты отваливаются
+     */
+    @Scheduled(fixedDelayString = "${app.comments.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        topics.values().forEach(topic -> {
+            broadcast(topic, HEARTBEAT);
+            // догрузка, не поставленная из-за заполненной очереди, повторяется здесь
+            if (topic.refreshMissed) {
+                topic.refreshMissed = false;
+                onCommentsChanged(topic.pinId, null);
+            }
+        });
+    }
+
+    private void onCommentsChanged(Long pinId, Integer commentsCount) {
+        Topic topic = pinId != null ? topics.get(pinId) : null;
+        if (topic == null) {
+            return;
+        }
+        if (commentsCount != null) {
+            topic.commentsCount = commentsCount;
+        }
+        // всплеск комментариев схлопывается в одну догрузку
+        if (topic.refreshScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> refresh(topic));
+            } catch (RejectedExecutionException e) {
+                topic.refreshScheduled.set(false);
+                topic.refreshMissed = true;
+                logger.warn("Поток комментариев пина {}: очередь догрузки заполнена, повтор с heartbeat", pinId);
+            }
+        }
+    }
+
+    private void refresh(Topic topic) {
+        topic.refreshScheduled.set(false);
+        synchronized (topic) {
+            // тема ещё не инициализирована первой подпиской: её граница будет прочитана при подписке
+            if (topic.closed || topic.lastCommentId < 0) {
+                return;
+            }
+            try {
+                // страницы дочитываются до конца: после всплеска ничего не ждёт следующего события.
+                // Окно ниже границы перечитывается, уже разосланные id в нём пропускаются
+                long floor = rescanFloor(topic);
+                long cursor = floor;
+                List<CommentView> page;
+                do {
+                    page = commentRepository.findNewerByPinId(topic.pinId, cursor, PageRequest.of(0, FETCH_LIMIT));
+                    for (CommentView view : page) {
+                        cursor = view.getId();
+                        if (view.getId() > topic.lastCommentId || topic.sent.add(view.getId())) {
+                            broadcast(topic, commentFrame(view));
+                            topic.sent.add(view.getId());
+                            topic.lastCommentId = Math.max(topic.lastCommentId, view.getId());
+                        }
+                    }
+                } while (page.size() >= FETCH_LIMIT);
+                topic.sent.headSet(rescanFloor(topic), true).clear();
+                // удаление комментария новых строк не даёт, но меняет счётчик
+                broadcast(topic, countFrame(topic.pinId, topic.commentsCount));
+            } catch (RuntimeException e) {
+                logger.warn("Поток комментариев пина {}: не удалось догрузить комментарии: {}", topic.pinId, e.getMessage());
+            }
+        }
+    }
+
+    private long rescanFloor(Topic topic) {
+        return Math.max(topic.baseCommentId, topic.lastCommentId - rescanIds);
+    }
+
+    /**
+     * Подписчик добавляется в тему под её блокировкой, а пропущенное досылается ему уже вне её
+     * прямо в emitter: живые кадры тем временем копятся в его очереди и уходят после кадра ready
+     */
+    private void join(Subscriber subscriber, Long afterId) {
+        Topic topic;
+        long upTo;
+        while (true) {
+            topic = topics.computeIfAbsent(subscriber.pinId, Topic::new);
+            synchronized (topic) {
+                if (topic.closed) {
+                    continue;
+                }
+                // клиент мог отключиться до подписки: leave ставит closed раньше, чем читает topic
+                subscriber.topic = topic;
+                if (subscriber.closed.get()) {
+                    if (topic.subscribers.isEmpty()) {
+                        topic.closed = true;
+                        topics.remove(topic.pinId, topic);
+                    }
+                    return;
+                }
+                try {
+                    if (topic.lastCommentId < 0) {
+                        Long maxId = commentRepository.findMaxIdByPinId(topic.pinId);
+                        topic.lastCommentId = maxId != null ? maxId : 0;
+                        topic.baseCommentId = topic.lastCommentId;
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Поток комментариев пина {}: ошибка подписки: {}", topic.pinId, e.getMessage());
+                }
+                topic.subscribers.add(subscriber);
+                upTo = topic.lastCommentId;
+                break;
+            }
+        }
+        try {
+            if (afterId != null && afterId < upTo) {
+                catchUp(subscriber, afterId, upTo);
+            }
+            subscriber.emitter.send(SseEmitter.event().name("ready").data(upTo).build());
+        } catch (IOException | IllegalStateException e) {
+            subscriber.emitter.completeWithError(e);
+            leave(subscriber);
+            return;
+        } catch (RuntimeException e) {
+            logger.warn("Поток комментариев пина {}: не удалось дослать пропущенное: {}", topic.pinId, e.getMessage());
+        }
+        subscriber.release();
+    }
+
+    /**
+     * Пропущенное клиентом до границы темы на момент подписки, постранично: разрыв любой длины
+     */
+    private void catchUp(Subscriber subscriber, long afterId, long upTo) throws IOException {
+        long cursor = afterId;
+        List<CommentView> page;
+        do {
+            page = commentRepository.findNewerByPinId(subscriber.pinId, cursor, PageRequest.of(0, FETCH_LIMIT));
+            for (CommentView view : page) {
+                if (view.getId() > upTo) {
+                    return;
+                }
+                subscriber.emitter.send(commentFrame(view));
+                meterRegistry.counter("comments.stream.events").increment();
+                cursor = view.getId();
+            }
+        } while (page.size() >= FETCH_LIMIT);
+    }
+
+    private void leave(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        Topic topic = subscriber.topic;
+        if (topic == null) {
+            return;
+        }
+        synchronized (topic) {
+            topic.subscribers.remove(subscriber);
+            if (topic.subscribers.isEmpty()) {
+                topic.closed = true;
+                topics.remove(topic.pinId, topic);
+            }
+        }
+    }
+
+    private void broadcast(Topic topic, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        for (Subscriber subscriber : topic.subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> commentFrame(CommentView view) {
+        CommentResponse response = new CommentResponse();
+        response.setId(view.getId());
+        response.setText(view.getText());
+        response.setCreatedAt(view.getCreatedAt());
+        response.setUserId(view.getUserId());
+        response.setUsername(view.getUsername() != null ? view.getUsername() : "Unknown");
+        String avatarUrl = view.getUserProfileImageUrl();
+        if (avatarUrl != null && !avatarUrl.isEmpty()) {
+            avatarUrl = fileStorageService.updateImageUrl(avatarUrl);
+        }
+        response.setUserProfileImageUrl(avatarUrl);
+        return SseEmitter.event().id(String.valueOf(view.getId())).name("comment")
+                .data(json(response), MediaType.APPLICATION_JSON).build();
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> countFrame(Long pinId, int commentsCount) {
+        return SseEmitter.event().name("comments-count")
+                .data(json(Map.of("pinId", pinId, "commentsCount", commentsCount)), MediaType.APPLICATION_JSON).build();
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать событие комментариев", e);
+        }
+    }
+
+    private static final class Topic {
+        final Long pinId;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final AtomicBoolean refreshScheduled = new AtomicBoolean();
+        // разосланные id выше нижней границы окна перечитывания (под блокировкой темы)
+        final NavigableSet<Long> sent = new TreeSet<>();
+        volatile long lastCommentId = -1;
+        // граница при создании темы: более ранние комментарии клиенты получают при загрузке страницы
+        volatile long baseCommentId;
+        volatile int commentsCount;
+        volatile boolean refreshMissed;
+        boolean closed;
+
+        Topic(Long pinId) {
+            this.pinId = pinId;
+        }
+    }
+
+    /**
+     * Цикл доставки: берёт подписчиков, у которых есть кадры, и отправляет их; подписчик стоит
+     * в очереди цикла не больше одного раза, так что её размер ограничен числом подписчиков
+     */
+    private static final class DeliveryLoop {
+        final BlockingQueue<Subscriber> ready = new LinkedBlockingQueue<>();
+        final String name;
+        volatile Worker worker;
+
+        DeliveryLoop(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Новый поток цикла; прежний, если он завис на записи, выйдет после неё
+         */
+        void startWorker() {
+            Worker next = new Worker(this);
+            next.thread = new Thread(next, name);
+            next.thread.setDaemon(true);
+            worker = next;
+            next.thread.start();
+        }
+    }
+
+    private static final class Worker implements Runnable {
+        final DeliveryLoop loop;
+        Thread thread;
+        // подписчик, которому сейчас пишется кадр, и начало записи (nanoTime)
+        volatile Subscriber sending;
+        volatile long sendStarted;
+
+        Worker(DeliveryLoop loop) {
+            this.loop = loop;
+        }
+
+        @Override
+        public void run() {
+            while (loop.worker == this && !Thread.currentThread().isInterrupted()) {
+                try {
+                    loop.ready.take().drain(this);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    logger.warn("Цикл доставки комментариев: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final class Subscriber {
+        final Long pinId;
+        final SseEmitter emitter;
+        final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        final DeliveryLoop loop;
+        // до кадра ready доставка удерживается: пропущенное досылается напрямую из join
+        final AtomicBoolean draining = new AtomicBoolean(true);
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile Topic topic;
+
+        Subscriber(Long pinId, SseEmitter emitter, int bufferSize, DeliveryLoop loop) {
+            this.pinId = pinId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+            this.loop = loop;
+        }
+
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(frame)) {
+                // клиент не успевает читать: отключаем, он переподключится с Last-Event-ID
+                meterRegistry.counter("comments.stream.dropped").increment();
+                emitter.complete();
+                leave(this);
+                return;
+            }
+            scheduleDrain();
+        }
+
+        void release() {
+            draining.set(false);
+            if (!closed.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                loop.ready.add(this);
+            }
+        }
+
+        /**
+         * Не больше очереди кадров за проход: один подписчик не задерживает остальных в цикле
+         */
+        private void drain(Worker worker) {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> frame;
+                int sent = 0;
+                while (!closed.get() && sent++ < bufferSize && (frame = queue.poll()) != null) {
+                    worker.sendStarted = System.nanoTime();
+                    worker.sending = this;
+                    try {
+                        emitter.send(frame);
+                    } finally {
+                        worker.sending = null;
+                    }
+                    meterRegistry.counter("comments.stream.events").increment();
+                }
+                if (closed.get()) {
+                    // отключён проверкой зависших записей, пока кадр писался
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+                leave(this);
+            } finally {
+                draining.set(false);
+            }
+            if (!closed.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
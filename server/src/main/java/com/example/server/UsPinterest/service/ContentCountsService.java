@@ -0,0 +1,140 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.event.PinCreatedEvent;
+import com.example.server.UsPinterest.event.PinDeletedEvent;
+import com.example.server.UsPinterest.event.PostCreatedEvent;
+import com.example.server.UsPinterest.event.PostDeletedEvent;
+import com.example.server.UsPinterest.repository.PinRepository;
+import com.example.server.UsPinterest.repository.PostRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики пинов и постов в памяти: один раз засеваются из БД, дальше меняются
+ * по событиям создания/удаления и периодически сверяются с базой.
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentCountsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentCountsService.class);
+
+    private static final int MAX_TRACKED_USERS = 10000;
+
+    private final PinRepository pinRepository;
+    private final PostRepository postRepository;
+
+    private final AtomicLong totalPins = new AtomicLong();
+    private final AtomicLong totalPosts = new AtomicLong();
+    private volatile boolean seeded;
+
+    // Счётчики пользователей засеваются при первом чтении; отсутствующие в кэше не обновляем
+    private final Cache<Long, AtomicLong> userPins = Caffeine.newBuilder()
+            .maximumSize(MAX_TRACKED_USERS)
+            .build();
+    private final Cache<Long, AtomicLong> userPosts = Caffeine.newBuilder()
+            .maximumSize(MAX_TRACKED_USERS)
+            .build();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        ensureSeeded();
+    }
+
+    public long getTotalPins() {
+        ensureSeeded();
+        return totalPins.get();
+    }
+
+    public long getTotalPosts() {
+        ensureSeeded();
+        return totalPosts.get();
+    }
+
+    public long getUserPinsCount(Long userId) {
+        return userPins.get(userId, id -> new AtomicLong(pinRepository.countByUserId(id))).get();
+    }
+
+    public long getUserPostsCount(Long userId) {
+        return userPosts.get(userId, id -> new AtomicLong(postRepository.countByUserId(id))).get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinCreated(PinCreatedEvent event) {
+        totalPins.incrementAndGet();
+        adjust(userPins, event.getPin().getUser() != null ? event.getPin().getUser().getId() : null, 1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinDeleted(PinDeletedEvent event) {
+        totalPins.decrementAndGet();
+        adjust(userPins, event.getUserId(), -1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostCreated(PostCreatedEvent event) {
+        totalPosts.incrementAndGet();
+        adjust(userPosts, event.getUserId(), 1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPostDeleted(PostDeletedEvent event) {
+        totalPosts.decrementAndGet();
+        adjust(userPosts, event.getUserId(), -1);
+    }
+
+    /**
+     * Периодическая сверка с БД: исправляет расхождения от удалений в обход сервисов
+     */
+    @Scheduled(initialDelayString = "${app.counts.reconcile-interval-ms:300000}",
+            fixedDelayString = "${app.counts.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        // расхождение применяется дельтой от снимка до запроса: события, пришедшие во время count(), не затираются
+        long pinsBefore = totalPins.get();
+        long postsBefore = totalPosts.get();
+        long pinsDrift = pinRepository.count() - pinsBefore;
+        long postsDrift = postRepository.count() - postsBefore;
+        totalPins.addAndGet(pinsDrift);
+        totalPosts.addAndGet(postsDrift);
+        seeded = true;
+        userPins.invalidateAll();
+        userPosts.invalidateAll();
+        if (pinsDrift != 0 || postsDrift != 0) {
+            logger.info("Сверка счётчиков: расхождение пинов {}, постов {}", pinsDrift, postsDrift);
+        }
+    }
+
+    private void ensureSeeded() {
+        if (seeded) {
+            return;
+        }
+        synchronized (this) {
+            if (!seeded) {
+                totalPins.set(pinRepository.count());
+                totalPosts.set(postRepository.count());
+                seeded = true;
+                logger.info("Счётчики засеяны: пинов {}, постов {}", totalPins.get(), totalPosts.get());
+            }
+        }
+    }
+
+    private void adjust(Cache<Long, AtomicLong> counters, Long userId, long delta) {
+        if (userId == null) {
+            return;
+        }
+        AtomicLong counter = counters.getIfPresent(userId);
+        if (counter != null) {
+            counter.addAndGet(delta);
+        }
+    }
+}
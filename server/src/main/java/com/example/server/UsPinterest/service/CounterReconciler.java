@@ -0,0 +1,186 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.event.PinCommentsChangedEvent;
+import com.example.server.UsPinterest.event.PinLikesChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Сверка денормализованных счётчиков (likes_count, comments_count пинов и постов) с таблицами
+ * likes и comments. Таблица проходится диапазонами id, каждый диапазон — один UPDATE ... FROM (GROUP BY),
+ * меняются только расходящиеся строки. Расхождение применяется дельтой к текущему значению строки:
+ * приращение, закоммиченное пока UPDATE ждал блокировку строки, не теряется.
+ * Работает через отдельный пул maintenanceDataSource и поток maintenanceExecutor,
+ * не занимая соединения пользовательских запросов и поток планировщика.
+ */
+@Service
+public class CounterReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CounterReconciler.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EngagementCounterService engagementCounterService;
+    private final MeterRegistry meterRegistry;
+    private final Executor maintenanceExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${app.counters.reconcile.chunk-size:10000}")
+    private long chunkSize;
+
+    @Value("${app.counters.reconcile.chunk-pause-ms:50}")
+    private long chunkPauseMs;
+
+    public CounterReconciler(@Qualifier("maintenanceDataSource") DataSource maintenanceDataSource,
+                             ApplicationEventPublisher eventPublisher,
+                             EngagementCounterService engagementCounterService,
+                             MeterRegistry meterRegistry,
+                             @Qualifier("maintenanceExecutor") Executor maintenanceExecutor) {
+        this.jdbcTemplate = new JdbcTemplate(maintenanceDataSource);
+        this.eventPublisher = eventPublisher;
+        this.engagementCounterService = engagementCounterService;
+        this.meterRegistry = meterRegistry;
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    /**
+     * Планировщик только ставит сверку в очередь обслуживания: сброс счётчиков и fsync журнала
+     * на его потоке не ждут полного прохода по таблицам
+     */
+    @Scheduled(cron = "${app.counters.reconcile.cron:0 30 3 * * *}")
+    public void scheduleReconcile() {
+        try {
+            maintenanceExecutor.execute(this::reconcile);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Очередь задач обслуживания заполнена, сверка счётчиков пропущена до следующего запуска");
+        }
+    }
+
+    public void reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Сверка счётчиков уже выполняется, запуск пропущен");
+            return;
+        }
+        try {
+            // лайки сначала досбрасываются: в пересчёт не должны попасть строки с дельтой в памяти
+            engagementCounterService.flush();
+            int pinComments = reconcile(Target.PIN_COMMENTS, Set::of);
+            int postComments = reconcile(Target.POST_COMMENTS, Set::of);
+            int pinLikes = reconcile(Target.PIN_LIKES, engagementCounterService::pendingPinIds);
+            int postLikes = reconcile(Target.POST_LIKES, engagementCounterService::pendingPostIds);
+            if (pinComments + postComments + pinLikes + postLikes > 0) {
+                logger.info("Сверка счётчиков: исправлено комментариев пинов {}, постов {}; лайков пинов {}, постов {}",
+                        pinComments, postComments, pinLikes, postLikes);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int reconcile(Target target, Supplier<Set<Long>> pending) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + target.table, Long.class);
+        if (maxId == null) {
+            return 0;
+        }
+        // c.stored и c.cnt — из одного снимка; t.<column> перечитывается после ожидания блокировки строки,
+        // поэтому SET к нему прибавляет расхождение снимка, а не затирает абсолютным c.cnt
+        String sql = "UPDATE " + target.table + " t SET " + target.column + " = COALESCE(t." + target.column +
+                ", 0) + (c.cnt - c.stored) FROM (" +
+                "SELECT r.id, COALESCE(r." + target.column + ", 0) AS stored, COUNT(x.id) AS cnt FROM " + target.table + " r " +
+                "LEFT JOIN " + target.source + " x ON x." + target.foreignKey + " = r.id " +
+                "WHERE r.id > ? AND r.id <= ? GROUP BY r.id, r." + target.column + ") c " +
+                "WHERE t.id = c.id AND c.stored <> c.cnt " +
+                "AND NOT (t.id = ANY (?::bigint[])) RETURNING t.id, c.stored, c.cnt, t." + target.column;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int fixed = 0;
+        long drift = 0;
+        for (long from = 0; from < maxId; from += chunkSize) {
+            List<long[]> rows;
+            try {
+                rows = jdbcTemplate.query(sql,
+                        (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)},
+                        from, from + chunkSize, idArray(pending.get()));
+            } catch (DataAccessException e) {
+                // lock_timeout на горячих строках: диапазон исправится следующим запуском
+                meterRegistry.counter("counters.reconcile.errors", "counter", target.metricName()).increment();
+                logger.warn("Сверка {}: диапазон ({}, {}] пропущен: {}", target.metricName(), from, from + chunkSize, e.getMessage());
+                continue;
+            }
+            for (long[] row : rows) {
+                drift += Math.abs(row[2] - row[1]);
+                publish(target, row[0], (int) row[3]);
+            }
+            fixed += rows.size();
+            pause();
+        }
+        sample.stop(meterRegistry.timer("counters.reconcile.duration", "counter", target.metricName()));
+        meterRegistry.counter("counters.reconcile.fixed", "counter", target.metricName()).increment(fixed);
+        meterRegistry.counter("counters.reconcile.drift", "counter", target.metricName()).increment(drift);
+        return fixed;
+    }
+
+    private void publish(Target target, Long id, int value) {
+        // кэшированные карточки и окна ленты получают исправленное значение
+        if (target == Target.PIN_COMMENTS) {
+            eventPublisher.publishEvent(new PinCommentsChangedEvent(id, value));
+        } else if (target == Target.PIN_LIKES) {
+            eventPublisher.publishEvent(new PinLikesChangedEvent(id, value));
+        }
+    }
+
+    private void pause() {
+        if (chunkPauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(chunkPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String idArray(Set<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private enum Target {
+        PIN_COMMENTS("pins", "comments_count", "comments", "pin_id"),
+        POST_COMMENTS("posts", "comments_count", "comments", "post_id"),
+        PIN_LIKES("pins", "likes_count", "likes", "pin_id"),
+        POST_LIKES("posts", "likes_count", "likes", "post_id");
+
+        final String table;
+        final String column;
+        final String source;
+        final String foreignKey;
+
+        Target(String table, String column, String source, String foreignKey) {
+            this.table = table;
+            this.column = column;
+            this.source = source;
+            this.foreignKey = foreignKey;
+        }
+
+        String metricName() {
+            return table + "." + column;
+        }
+    }
+}
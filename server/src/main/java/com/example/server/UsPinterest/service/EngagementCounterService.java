@@ -0,0 +1,260 @@
+package com.example.server.UsPinterest.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики лайков пинов и постов с отложенной записью: клик добавляет дельту в LongAdder пина,
+ * раз в несколько сотен мс дельты сбрасываются пакетом UPDATE ... SET likes_count = likes_count + ?.
+ * Строка пина больше не блокируется на каждый клик, а лайки не пересчитываются COUNT(*).
+ * Чтение счётчика = сохранённое значение + ещё не записанная дельта.
+ * Каждая дельта сначала попадает в EngagementJournal: после падения процесса незаписанные
+ * дельты восстанавливаются проигрыванием журнала с позиции, сохранённой последним сбросом.
+ */
+@Service
+@DependsOn("databaseIndexInitializer")
+public class EngagementCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EngagementCounterService.class);
+
+    // Счётчик без изменений дольше этого срока удаляется из памяти
+    private static final long IDLE_EVICT_MS = 10_000;
+
+    private static final String PIN_FLUSH_SQL = "UPDATE pins SET likes_count = GREATEST(likes_count + ?, 0) WHERE id = ?";
+    private static final String POST_FLUSH_SQL = "UPDATE posts SET likes_count = GREATEST(likes_count + ?, 0) WHERE id = ?";
+
+    private static final String CHECKPOINT_SQL =
+            "INSERT INTO engagement_journal_checkpoints (journal_id, flushed_segment, flushed_offset, updated_at) " +
+            "VALUES (?, ?, ?, now()) ON CONFLICT (journal_id) DO UPDATE SET flushed_segment = EXCLUDED.flushed_segment, " +
+            "flushed_offset = EXCLUDED.flushed_offset, updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EngagementJournal journal;
+
+    private final Map<Long, PendingDelta> pinLikes = new ConcurrentHashMap<>();
+    private final Map<Long, PendingDelta> postLikes = new ConcurrentHashMap<>();
+
+    public EngagementCounterService(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    EngagementJournal journal) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+    }
+
+    /**
+     * Восстанавливает дельты, не дошедшие до БД к моменту остановки или падения
+     */
+    @PostConstruct
+    public void replayJournal() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        List<EngagementJournal.Position> saved = jdbcTemplate.query(
+                "SELECT flushed_segment, flushed_offset FROM engagement_journal_checkpoints WHERE journal_id = ?",
+                (rs, rowNum) -> new EngagementJournal.Position(rs.getLong(1), rs.getInt(2)), journal.journalId());
+        EngagementJournal.Position from = saved.isEmpty() ? EngagementJournal.Position.START : saved.get(0);
+        int replayed = journal.replay(from, event -> increment(
+                event.type() == EngagementJournal.Type.PIN_LIKES ? pinLikes : postLikes, event.targetId(), event.delta()));
+        if (replayed > 0) {
+            logger.info("Журнал счётчиков: восстановлено {} событий после позиции {}", replayed, from);
+        }
+    }
+
+    /**
+     * Дельта учитывается сразу (ответ клиенту уже с ней) и откатывается, если транзакция не зафиксируется
+     */
+    public void addPinLikes(Long pinId, Long userId, long delta) {
+        add(pinLikes, EngagementJournal.Type.PIN_LIKES, pinId, userId, delta);
+    }
+
+    public void addPostLikes(Long postId, Long userId, long delta) {
+        add(postLikes, EngagementJournal.Type.POST_LIKES, postId, userId, delta);
+    }
+
+    public int pinLikes(Long pinId, Integer persisted) {
+        return combine(persisted, pinLikes.get(pinId));
+    }
+
+    public int postLikes(Long postId, Integer persisted) {
+        return combine(persisted, postLikes.get(postId));
+    }
+
+    public long pendingPinLikes(Long pinId) {
+        PendingDelta pending = pinLikes.get(pinId);
+        return pending != null ? pending.adder.sum() : 0;
+    }
+
+    /**
+     * Пины с ещё не записанной дельтой: сверка их пропускает, иначе дельта ляжет поверх пересчёта
+     */
+    public Set<Long> pendingPinIds() {
+        return pendingIds(pinLikes);
+    }
+
+    public Set<Long> pendingPostIds() {
+        return pendingIds(postLikes);
+    }
+
+    /**
+     * Снимок дельт и позиция журнала берутся атомарно, счётчики и позиция пишутся одной транзакцией:
+     * после коммита записанные дельты вычитаются, а сегменты журнала до позиции удаляются
+     */
+    @Scheduled(fixedDelayString = "${app.engagement.flush-interval-ms:300}")
+    public synchronized void flush() {
+        List<FlushedDelta> pins = new ArrayList<>();
+        List<FlushedDelta> posts = new ArrayList<>();
+        Runnable snapshot = () -> {
+            collect(pinLikes, pins);
+            collect(postLikes, posts);
+        };
+        EngagementJournal.Position position = null;
+        if (journal.isEnabled()) {
+            position = journal.checkpoint(snapshot);
+        } else {
+            snapshot.run();
+        }
+        if (pins.isEmpty() && posts.isEmpty()) {
+            return;
+        }
+        EngagementJournal.Position flushed = position;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                write(PIN_FLUSH_SQL, pins);
+                write(POST_FLUSH_SQL, posts);
+                if (flushed != null) {
+                    jdbcTemplate.update(CHECKPOINT_SQL, journal.journalId(), flushed.segment(), flushed.offset());
+                }
+            });
+        } catch (RuntimeException e) {
+            // дельты остаются в памяти и уйдут следующим сбросом
+            logger.warn("Не удалось записать счётчики лайков ({} строк): {}", pins.size() + posts.size(), e.getMessage());
+            return;
+        }
+        // вычитаем ровно записанное: клики во время записи остаются в счётчике
+        pins.forEach(FlushedDelta::settle);
+        posts.forEach(FlushedDelta::settle);
+        if (flushed != null) {
+            journal.compact(flushed);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(Map<Long, PendingDelta> counters, EngagementJournal.Type type, Long id, Long userId, long delta) {
+        if (id == null || delta == 0) {
+            return;
+        }
+        record(counters, type, id, userId, delta);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // откат тоже журналируется; если процесс упадёт до него, расхождение исправит сверка счётчиков
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        record(counters, type, id, userId, -delta);
+                    }
+                }
+            });
+        }
+    }
+
+    private void record(Map<Long, PendingDelta> counters, EngagementJournal.Type type, Long id, Long userId, long delta) {
+        if (journal.isEnabled()) {
+            journal.append(type, id, userId != null ? userId : 0, delta, () -> increment(counters, id, delta));
+        } else {
+            increment(counters, id, delta);
+        }
+    }
+
+    private static Set<Long> pendingIds(Map<Long, PendingDelta> counters) {
+        Set<Long> ids = new HashSet<>();
+        counters.forEach((id, pending) -> {
+            if (pending.adder.sum() != 0) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Под блокировкой записи в карте, как и удаление простаивающего счётчика: добавление
+     * либо успевает до удаления (и оно не происходит), либо создаёт новую запись
+     */
+    private static void increment(Map<Long, PendingDelta> counters, Long id, long delta) {
+        counters.compute(id, (key, pending) -> {
+            PendingDelta current = pending != null ? pending : new PendingDelta();
+            current.add(delta);
+            return current;
+        });
+    }
+
+    private void collect(Map<Long, PendingDelta> counters, List<FlushedDelta> batch) {
+        if (counters.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        counters.forEach((id, pending) -> {
+            long delta = pending.adder.sum();
+            if (delta != 0) {
+                batch.add(new FlushedDelta(id, pending, delta));
+            } else if (now - pending.touchedAt > IDLE_EVICT_MS) {
+                // ноль перепроверяется под той же блокировкой записи, под которой идут добавления
+                counters.computeIfPresent(id, (key, current) ->
+                        current == pending && current.adder.sum() == 0 ? null : current);
+            }
+        });
+    }
+
+    private void write(String sql, List<FlushedDelta> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(batch.size());
+        batch.forEach(flushed -> args.add(new Object[]{flushed.delta(), flushed.id()}));
+        jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    private static int combine(Integer persisted, PendingDelta pending) {
+        long value = (persisted != null ? persisted : 0) + (pending != null ? pending.adder.sum() : 0);
+        return (int) Math.max(0, value);
+    }
+
+    private record FlushedDelta(Long id, PendingDelta pending, long delta) {
+        void settle() {
+            pending.adder.add(-delta);
+        }
+    }
+
+    private static final class PendingDelta {
+        final LongAdder adder = new LongAdder();
+        volatile long touchedAt = System.currentTimeMillis();
+
+        void add(long delta) {
+            adder.add(delta);
+            touchedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.server.UsPinterest.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал событий счётчиков: дельты, ещё не записанные в БД, переживают падение процесса.
+ * События дописываются в отображённые в память сегменты фиксированного размера (файл на диске
+ * обновляется без системного вызова на событие), force() раз в fsync-interval-ms.
+ * При сбросе счётчиков позиция журнала (сегмент, смещение) пишется в БД в той же транзакции,
+ * что и сами счётчики; после коммита сегменты до неё удаляются.
+ * При старте проигрываются только записи после сохранённой позиции.
+ */
+@Service
+public class EngagementJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(EngagementJournal.class);
+
+    /*
+     * Запись, 40 байт: тип (1 байт, 0 — конец журнала: файл сегмента заполнен нулями), 3 байта резерва,
+     * дельта (int), id пина/поста, id пользователя, время (мс), CRC32 первых 32 байт, 4 байта резерва
+     */
+    static final int RECORD_BYTES = 40;
+    private static final int CHECKSUM_OFFSET = 32;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    public enum Type {
+        PIN_LIKES(1), POST_LIKES(2);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type of(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    public record Event(Type type, long targetId, long userId, int delta, long timestamp) {
+    }
+
+    /**
+     * Позиция в журнале: записи сегмента segment до смещения offset и все более ранние сегменты
+     */
+    public record Position(long segment, int offset) {
+        public static final Position START = new Position(-1, 0);
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+
+    private String journalId;
+    private long segment = -1;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
+    private final CRC32 crc = new CRC32();
+
+    public EngagementJournal(@Value("${app.engagement.journal.enabled:true}") boolean enabled,
+                             @Value("${app.engagement.journal.dir:data/engagement-journal}") String dir,
+                             @Value("${app.engagement.journal.segment-bytes:8388608}") int segmentBytes) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.segmentBytes = Math.max(RECORD_BYTES, segmentBytes - segmentBytes % RECORD_BYTES);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Идентификатор каталога журнала: ключ контрольной точки в БД, у каждого узла свой
+     */
+    public synchronized String journalId() {
+        if (journalId == null) {
+            Path idFile = dir.resolve("journal.id");
+            try {
+                Files.createDirectories(dir);
+                if (Files.isRegularFile(idFile)) {
+                    journalId = Files.readString(idFile, StandardCharsets.UTF_8).trim();
+                } else {
+                    journalId = UUID.randomUUID().toString();
+                    Files.writeString(idFile, journalId, StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать идентификатор журнала " + idFile, e);
+            }
+        }
+        return journalId;
+    }
+
+    /**
+     * Проигрывает записи после позиции from по порядку; новые записи пойдут в следующий сегмент
+     */
+    public synchronized int replay(Position from, Consumer<Event> consumer) {
+        int replayed = 0;
+        for (long number : segmentNumbers()) {
+            segment = Math.max(segment, number);
+            if (number < from.segment()) {
+                continue;
+            }
+            int offset = number == from.segment() ? from.offset() : 0;
+            replayed += readSegment(segmentPath(number), offset, consumer);
+        }
+        return replayed;
+    }
+
+    /**
+     * Дописывает событие и под той же блокировкой применяет его к счётчику в памяти:
+     * контрольная точка видит либо и запись, и дельту, либо ни то ни другое
+     */
+    public synchronized void append(Type type, long targetId, long userId, long delta, Runnable apply) {
+        if (buffer == null || buffer.remaining() < RECORD_BYTES) {
+            openNextSegment();
+        }
+        int start = buffer.position();
+        buffer.put(type.code).put((byte) 0).put((byte) 0).put((byte) 0)
+                .putInt((int) delta)
+                .putLong(targetId)
+                .putLong(userId)
+                .putLong(System.currentTimeMillis());
+        crc.reset();
+        crc.update(buffer.slice(start, CHECKSUM_OFFSET));
+        buffer.putInt((int) crc.getValue()).putInt(0);
+        dirty = true;
+        apply.run();
+    }
+
+    /**
+     * Выполняет snapshot под блокировкой журнала и возвращает позицию, до которой события вошли в снимок
+     */
+    public synchronized Position checkpoint(Runnable snapshot) {
+        snapshot.run();
+        // сегмент, проигранный при старте и ещё не продолженный, учтён целиком
+        return new Position(segment, buffer != null ? buffer.position() : Integer.MAX_VALUE);
+    }
+
+    /**
+     * Удаляет сегменты целиком до позиции, уже учтённой в БД
+     */
+    public void compact(Position flushed) {
+        List<Long> numbers;
+        synchronized (this) {
+            numbers = segmentNumbers();
+        }
+        for (long number : numbers) {
+            if (number >= flushed.segment()) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segmentPath(number));
+            } catch (IOException e) {
+                logger.warn("Не удалось удалить сегмент журнала {}: {}", number, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.engagement.journal.fsync-interval-ms:1000}")
+    public void sync() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            if (buffer == null || !dirty) {
+                return;
+            }
+            current = buffer;
+            dirty = false;
+        }
+        // force() вне блокировки: запись событий на время msync не останавливается
+        current.force();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeSegment();
+    }
+
+    private void openNextSegment() {
+        closeSegment();
+        long next = segment + 1;
+        Path path = segmentPath(next);
+        try {
+            Files.createDirectories(dir);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segment = next;
+        } catch (IOException e) {
+            closeChannel();
+            throw new UncheckedIOException("Не удалось открыть сегмент журнала " + path, e);
+        }
+    }
+
+    private void closeSegment() {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+            dirty = false;
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Не удалось закрыть сегмент журнала {}: {}", segment, e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private int readSegment(Path path, int offset, Consumer<Event> consumer) {
+        int count = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (offset >= in.size()) {
+                return 0;
+            }
+            ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            data.position(offset);
+            CRC32 check = new CRC32();
+            while (data.remaining() >= RECORD_BYTES) {
+                int start = data.position();
+                Type type = Type.of(data.get(start));
+                if (type == null) {
+                    break;
+                }
+                check.reset();
+                check.update(data.slice(start, CHECKSUM_OFFSET));
+                if ((int) check.getValue() != data.getInt(start + CHECKSUM_OFFSET)) {
+                    // недописанная запись: процесс упал посреди записи, дальше данных нет
+                    logger.warn("Сегмент {}: повреждённая запись на смещении {}, остаток пропущен", path.getFileName(), start);
+                    break;
+                }
+                consumer.accept(new Event(type, data.getLong(start + 8), data.getLong(start + 16),
+                        data.getInt(start + 4), data.getLong(start + 24)));
+                data.position(start + RECORD_BYTES);
+                count++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент журнала " + path, e);
+        }
+        return count;
+    }
+
+    private List<Long> segmentNumbers() {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return numbers;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            numbers.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            logger.warn("Посторонний файл в каталоге журнала: {}", name);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать каталог журнала " + dir, e);
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("%020d%s", number, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.event.PinCommentsChangedEvent;
+import com.example.server.UsPinterest.event.PinLikesChangedEvent;
+import com.example.server.UsPinterest.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Проверки ссылочной целостности: строки, ссылающиеся на удалённых родителей.
+ * Каждая проверка — anti-join (NOT EXISTS) по диапазонам id, без загрузки сущностей;
+ * в режиме dryRun строки только считаются, иначе удаляются пачкой на диапазон.
+ * Удаление лайков и комментариев уменьшает счётчики сохранившихся пинов и постов
+ * (лайки — дельтой через EngagementCounterService, как обычный анлайк) и обновляет их кэши.
+ * Проверки выполняются как задачи в фоновом потоке через пул maintenanceDataSource.
+ */
+@Service
+public class IntegrityCheckService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntegrityCheckService.class);
+
+    private static final int MAX_KEPT_JOBS = 20;
+
+    private static final String MISSING_CONTENT =
+            "(t.pin_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM pins p WHERE p.id = t.pin_id)) " +
+            "OR (t.post_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM posts p WHERE p.id = t.post_id)) " +
+            "OR (t.photo_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM photos p WHERE p.id = t.photo_id)) " +
+            "OR (t.pin_id IS NULL AND t.post_id IS NULL AND t.photo_id IS NULL)";
+
+    // автор и сохранившиеся родители удалённой строки: их счётчики нужно уменьшить
+    private static final String LIVE_PARENTS = "t.user_id, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM pins p WHERE p.id = t.pin_id) THEN t.pin_id END, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM posts p WHERE p.id = t.post_id) THEN t.post_id END";
+
+    private static final RowMapper<Removed> REMOVED_MAPPER = (rs, rowNum) -> new Removed(
+            rs.getObject(1, Long.class), rs.getObject(2, Long.class), rs.getObject(3, Long.class));
+
+    private static final Map<String, Check> CHECKS = new LinkedHashMap<>();
+
+    static {
+        register(new Check("comments", "comments", "id", MISSING_CONTENT, "comments_count",
+                List.of("DELETE FROM comment_tags WHERE comment_id = ANY (?::bigint[])",
+                        "DELETE FROM comment_mentions WHERE comment_id = ANY (?::bigint[])")));
+        register(new Check("likes", "likes", "id",
+                MISSING_CONTENT + " OR NOT EXISTS (SELECT 1 FROM users u WHERE u.id = t.user_id)", "likes_count", List.of()));
+        register(new Check("locations", "locations", "id",
+                "(t.pin_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM pins p WHERE p.id = t.pin_id)) " +
+                "OR (t.post_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM posts p WHERE p.id = t.post_id))", null, List.of()));
+        register(new Check("pictures", "pictures", "id",
+                "NOT EXISTS (SELECT 1 FROM pins p WHERE p.id = t.pin_id)", null, List.of()));
+        register(new Check("notifications", "notifications", "id",
+                "NOT EXISTS (SELECT 1 FROM users u WHERE u.id = t.recipient_id) " +
+                "OR (t.pin_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM pins p WHERE p.id = t.pin_id)) " +
+                "OR (t.post_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM posts p WHERE p.id = t.post_id))", null, List.of()));
+        // у pin_tags нет собственного id: диапазоны строятся по pin_id
+        register(new Check("pin_tags", "pin_tags", "pin_id",
+                "NOT EXISTS (SELECT 1 FROM pins p WHERE p.id = t.pin_id) " +
+                "OR NOT EXISTS (SELECT 1 FROM tags g WHERE g.id = t.tag_id)", null, List.of()));
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor maintenanceExecutor;
+    private final MeterRegistry meterRegistry;
+    private final EngagementCounterService engagementCounterService;
+    private final LikedPinIndex likedPinIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicLong jobSequence = new AtomicLong();
+    private final AtomicInteger runningJobs;
+
+    private final Map<Long, Job> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Job> eldest) {
+            return size() > MAX_KEPT_JOBS;
+        }
+    };
+
+    @Value("${app.integrity.chunk-size:10000}")
+    private long chunkSize;
+
+    @Value("${app.integrity.chunk-pause-ms:20}")
+    private long chunkPauseMs;
+
+    public IntegrityCheckService(@Qualifier("maintenanceDataSource") DataSource maintenanceDataSource,
+                                 @Qualifier("maintenanceExecutor") Executor maintenanceExecutor,
+                                 MeterRegistry meterRegistry,
+                                 EngagementCounterService engagementCounterService,
+                                 LikedPinIndex likedPinIndex,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = new JdbcTemplate(maintenanceDataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(maintenanceDataSource));
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.meterRegistry = meterRegistry;
+        this.engagementCounterService = engagementCounterService;
+        this.likedPinIndex = likedPinIndex;
+        this.eventPublisher = eventPublisher;
+        this.runningJobs = meterRegistry.gauge("integrity.jobs.running", new AtomicInteger());
+    }
+
+    public Collection<String> checkNames() {
+        return CHECKS.keySet();
+    }
+
+    /**
+     * Ставит задачу в очередь; пустой список — все проверки
+     */
+    public Map<String, Object> startJob(Collection<String> checkNames, boolean dryRun) {
+        List<Check> selected = new ArrayList<>();
+        if (checkNames == null || checkNames.isEmpty()) {
+            selected.addAll(CHECKS.values());
+        } else {
+            for (String name : checkNames) {
+                Check check = CHECKS.get(name);
+                if (check == null) {
+                    throw new IllegalArgumentException("Неизвестная проверка: " + name + ", доступны: " + CHECKS.keySet());
+                }
+                selected.add(check);
+            }
+        }
+        Job job = new Job(jobSequence.incrementAndGet(), selected, dryRun);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        try {
+            maintenanceExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            job.finish("REJECTED", "Очередь задач обслуживания заполнена");
+            throw new TooManyRequestsException("Очередь проверок целостности заполнена, повторите позже");
+        }
+        logger.info("Задача проверки целостности {} поставлена: проверки {}, dryRun={}", job.id, job.progress.keySet(), dryRun);
+        return job.toMap();
+    }
+
+    public Optional<Map<String, Object>> getJob(Long id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id)).map(Job::toMap);
+        }
+    }
+
+    public List<Map<String, Object>> getJobs() {
+        synchronized (jobs) {
+            return jobs.values().stream().map(Job::toMap).collect(Collectors.toList());
+        }
+    }
+
+    private void run(Job job) {
+        runningJobs.incrementAndGet();
+        job.state = "RUNNING";
+        job.startedAt = LocalDateTime.now();
+        try {
+            for (Progress progress : job.progress.values()) {
+                runCheck(progress, job.dryRun);
+            }
+            job.finish("COMPLETED", null);
+            logger.info("Задача проверки целостности {} завершена: {}", job.id, job.summary());
+        } catch (RuntimeException e) {
+            job.finish("FAILED", e.getMessage());
+            logger.error("Задача проверки целостности {} завершилась ошибкой", job.id, e);
+        } finally {
+            runningJobs.decrementAndGet();
+        }
+    }
+
+    private void runCheck(Progress progress, boolean dryRun) {
+        Check check = progress.check;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long startedAt = System.currentTimeMillis();
+        progress.state = "RUNNING";
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(" + check.rangeColumn() + ") AS lo, MAX(" + check.rangeColumn() + ") AS hi FROM " + check.table());
+        Number lo = (Number) bounds.get("lo");
+        Number hi = (Number) bounds.get("hi");
+        if (lo != null && hi != null) {
+            progress.maxId = hi.longValue();
+            String range = "t." + check.rangeColumn() + " > ? AND t." + check.rangeColumn() + " <= ? AND (" + check.orphanPredicate() + ")";
+            for (long from = lo.longValue() - 1; from < hi.longValue(); from += chunkSize) {
+                long to = Math.min(from + chunkSize, hi.longValue());
+                if (dryRun) {
+                    Long found = jdbcTemplate.queryForObject(
+                            "SELECT COUNT(*) FROM " + check.table() + " t WHERE " + range, Long.class, from, to);
+                    progress.found += found != null ? found : 0;
+                } else {
+                    int deleted = deleteChunk(check, range, from, to);
+                    progress.found += deleted;
+                    progress.deleted += deleted;
+                }
+                progress.scannedUpTo = to;
+                pause();
+            }
+        }
+        progress.durationMs = System.currentTimeMillis() - startedAt;
+        progress.state = "COMPLETED";
+        sample.stop(meterRegistry.timer("integrity.check.duration", "check", check.name(), "dryRun", String.valueOf(dryRun)));
+        meterRegistry.counter("integrity.check.orphans", "check", check.name()).increment(progress.found);
+        meterRegistry.counter("integrity.check.deleted", "check", check.name()).increment(progress.deleted);
+    }
+
+    private int deleteChunk(Check check, String range, long from, long to) {
+        if (check.dependents().isEmpty() && check.counter() == null) {
+            return jdbcTemplate.update("DELETE FROM " + check.table() + " t WHERE " + range, from, to);
+        }
+        List<Removed> removed = new ArrayList<>();
+        Map<Long, Integer> pinComments = new HashMap<>();
+        Integer deleted = transactionTemplate.execute(status -> {
+            String where = range;
+            Object[] args = {from, to};
+            if (!check.dependents().isEmpty()) {
+                // зависимые строки (теги, упоминания) удаляются в той же транзакции, до самих строк
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT t.id FROM " + check.table() + " t WHERE " + range, Long.class, from, to);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                String idArray = idArray(ids);
+                for (String dependent : check.dependents()) {
+                    jdbcTemplate.update(dependent, idArray);
+                }
+                where = "t.id = ANY (?::bigint[])";
+                args = new Object[]{idArray};
+            }
+            String delete = "DELETE FROM " + check.table() + " t WHERE " + where;
+            if (check.counter() == null) {
+                return jdbcTemplate.update(delete, args);
+            }
+            removed.addAll(jdbcTemplate.query(delete + " RETURNING " + LIVE_PARENTS, REMOVED_MAPPER, args));
+            if ("comments_count".equals(check.counter())) {
+                // счётчики комментариев пишутся сразу в БД, как и при обычном удалении комментария
+                pinComments.putAll(subtract("pins", check.counter(), removed, Removed::pinId));
+                subtract("posts", check.counter(), removed, Removed::postId);
+            }
+            return removed.size();
+        });
+        if ("likes_count".equals(check.counter())) {
+            afterLikesRemoved(removed);
+        }
+        pinComments.forEach((pinId, count) -> eventPublisher.publishEvent(new PinCommentsChangedEvent(pinId, count)));
+        return deleted != null ? deleted : 0;
+    }
+
+    /**
+     * Уменьшает счётчик сохранившихся родителей на число удалённых строк; возвращает новые значения
+     */
+    private Map<Long, Integer> subtract(String table, String column, List<Removed> removed, Function<Removed, Long> parent) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Removed row : removed) {
+            Long id = parent.apply(row);
+            if (id != null) {
+                counts.merge(id, 1, Integer::sum);
+            }
+        }
+        Map<Long, Integer> updated = new HashMap<>();
+        if (counts.isEmpty()) {
+            return updated;
+        }
+        List<Long> ids = new ArrayList<>(counts.keySet());
+        jdbcTemplate.query("UPDATE " + table + " p SET " + column + " = GREATEST(p." + column + " - d.cnt, 0) " +
+                        "FROM (SELECT unnest(?::bigint[]) AS id, unnest(?::int[]) AS cnt) d " +
+                        "WHERE p.id = d.id RETURNING p.id, p." + column,
+                (RowCallbackHandler) rs -> updated.put(rs.getLong(1), rs.getInt(2)),
+                idArray(ids), ids.stream().map(id -> String.valueOf(counts.get(id))).collect(Collectors.joining(",", "{", "}")));
+        return updated;
+    }
+
+    /**
+     * После коммита: лайки снимаются дельтой (она учитывает ещё не сброшенные клики и уходит в БД
+     * очередным сбросом), индекс лайкнутых пинов и карточки пинов получают новое состояние
+     */
+    private void afterLikesRemoved(List<Removed> removed) {
+        Set<Long> pins = new HashSet<>();
+        for (Removed row : removed) {
+            if (row.pinId() != null) {
+                engagementCounterService.addPinLikes(row.pinId(), row.userId(), -1);
+                if (row.userId() != null) {
+                    likedPinIndex.applyChange(row.userId(), row.pinId(), false);
+                }
+                pins.add(row.pinId());
+            }
+            if (row.postId() != null) {
+                engagementCounterService.addPostLikes(row.postId(), row.userId(), -1);
+            }
+        }
+        if (pins.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query("SELECT id, likes_count FROM pins WHERE id = ANY (?::bigint[])", rs -> {
+            long pinId = rs.getLong(1);
+            eventPublisher.publishEvent(new PinLikesChangedEvent(pinId,
+                    engagementCounterService.pinLikes(pinId, rs.getInt(2))));
+        }, idArray(pins));
+    }
+
+    private static String idArray(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    private void pause() {
+        if (chunkPauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(chunkPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void register(Check check) {
+        CHECKS.put(check.name(), check);
+    }
+
+    /**
+     * counter — столбец родителей (pins/posts), который учитывает строки проверки, или null
+     */
+    private record Check(String name, String table, String rangeColumn, String orphanPredicate, String counter,
+                         List<String> dependents) {
+    }
+
+    private record Removed(Long userId, Long pinId, Long postId) {
+    }
+
+    private static final class Progress {
+        final Check check;
+        volatile String state = "PENDING";
+        volatile long scannedUpTo;
+        volatile long maxId;
+        volatile long found;
+        volatile long deleted;
+        volatile long durationMs;
+
+        Progress(Check check) {
+            this.check = check;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("state", state);
+            map.put("scannedUpTo", scannedUpTo);
+            map.put("maxId", maxId);
+            map.put("found", found);
+            map.put("deleted", deleted);
+            map.put("durationMs", durationMs);
+            return map;
+        }
+    }
+
+    private static final class Job {
+        final long id;
+        final boolean dryRun;
+        final Map<String, Progress> progress = new LinkedHashMap<>();
+        final LocalDateTime createdAt = LocalDateTime.now();
+        volatile String state = "QUEUED";
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        Job(long id, List<Check> checks, boolean dryRun) {
+            this.id = id;
+            this.dryRun = dryRun;
+            checks.forEach(check -> progress.put(check.name(), new Progress(check)));
+        }
+
+        void finish(String state, String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.state = state;
+        }
+
+        String summary() {
+            return progress.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue().found)
+                    .collect(Collectors.joining(", "));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("state", state);
+            map.put("dryRun", dryRun);
+            map.put("createdAt", createdAt);
+            map.put("startedAt", startedAt);
+            map.put("finishedAt", finishedAt);
+            if (error != null) {
+                map.put("error", error);
+            }
+            Map<String, Object> checks = new LinkedHashMap<>();
+            progress.forEach((name, p) -> checks.put(name, p.toMap()));
+            map.put("checks", checks);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.event.PinLikedEvent;
+import com.example.server.UsPinterest.event.PinLikesChangedEvent;
+import com.example.server.UsPinterest.exception.ResourceNotFoundException;
+import com.example.server.UsPinterest.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Групповая запись лайков пинов. Запросы кладут команды like/unlike в ограниченную очередь,
+ * один поток-писатель раз в несколько мс забирает пачку, схлопывает команды одной пары
+ * (пользователь, пин) до последней и пишет пачку одной транзакцией:
+ * INSERT ... ON CONFLICT DO NOTHING и DELETE по списку пар, по одному запросу на пачку.
+ * Ответ клиенту завершается после коммита его пачки; при всплеске лайков число соединений
+ * не растёт вместе с числом запросов.
+ */
+@Service
+public class LikeIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LikeIngestService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EngagementCounterService engagementCounterService;
+    private final LikedPinIndex likedPinIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<Command> queue;
+    private final long batchWindowNanos;
+    private final int maxBatch;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public LikeIngestService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             EngagementCounterService engagementCounterService,
+                             LikedPinIndex likedPinIndex,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.likes.ingest.queue-capacity:10000}") int queueCapacity,
+                             @Value("${app.likes.ingest.batch-window-ms:5}") long batchWindowMs,
+                             @Value("${app.likes.ingest.max-batch:500}") int maxBatch) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.engagementCounterService = engagementCounterService;
+        this.likedPinIndex = likedPinIndex;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+        this.maxBatch = maxBatch;
+        this.batchSizes = DistributionSummary.builder("likes.ingest.batch.size").register(meterRegistry);
+        meterRegistry.gauge("likes.ingest.queue", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "like-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Остаток очереди дописывается до остановки; счётчики сбрасываются уже после этого
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public CompletableFuture<LikeOutcome> like(Long userId, String username, Long pinId) {
+        return submit(new Command(userId, username, pinId, true));
+    }
+
+    public CompletableFuture<LikeOutcome> unlike(Long userId, String username, Long pinId) {
+        return submit(new Command(userId, username, pinId, false));
+    }
+
+    private CompletableFuture<LikeOutcome> submit(Command command) {
+        if (!running || !queue.offer(command)) {
+            meterRegistry.counter("likes.ingest.rejected").increment();
+            command.future.completeExceptionally(new TooManyRequestsException("Слишком много запросов"));
+        }
+        return command.future;
+    }
+
+    private void runWriter() {
+        List<Command> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // окно группового коммита: собираем попутные команды, не дольше batch-window-ms
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    Command next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch, maxBatch - batch.size());
+                batchSizes.record(batch.size());
+                write(coalesce(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Ошибка записи пачки лайков", e);
+                batch.forEach(command -> command.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Команды одной пары схлопываются: в БД уходит только последняя, ответ получают все
+     */
+    private Map<LikeKey, List<Command>> coalesce(List<Command> batch) {
+        Map<LikeKey, List<Command>> byKey = new LinkedHashMap<>();
+        for (Command command : batch) {
+            byKey.computeIfAbsent(new LikeKey(command.userId, command.pinId), key -> new ArrayList<>(1)).add(command);
+        }
+        int coalesced = batch.size() - byKey.size();
+        if (coalesced > 0) {
+            meterRegistry.counter("likes.ingest.coalesced").increment(coalesced);
+        }
+        return byKey;
+    }
+
+    private void write(Map<LikeKey, List<Command>> byKey) {
+        BatchResult result;
+        try {
+            result = transactionTemplate.execute(status -> writeBatch(byKey));
+        } catch (DataAccessException e) {
+            if (byKey.size() == 1) {
+                logger.warn("Не удалось записать лайк {}: {}", byKey.keySet(), e.getMessage());
+                byKey.values().forEach(commands -> commands.forEach(c -> c.future.completeExceptionally(e)));
+                return;
+            }
+            // одна ошибочная пара (например, пин удалён между проверкой и вставкой) не должна ронять всю пачку
+            logger.debug("Пачка лайков откатилась ({}), пишем по одной паре", e.getMessage());
+            byKey.forEach((key, commands) -> write(Map.of(key, commands)));
+            return;
+        }
+        afterCommit(byKey, result);
+    }
+
+    private BatchResult writeBatch(Map<LikeKey, List<Command>> byKey) {
+        Set<Long> pinIds = new HashSet<>();
+        byKey.keySet().forEach(key -> pinIds.add(key.pinId()));
+        Map<Long, Integer> persisted = new HashMap<>();
+        jdbcTemplate.query("SELECT id, likes_count FROM pins WHERE id IN (" + placeholders(pinIds.size(), "?") + ")",
+                rs -> {
+                    persisted.put(rs.getLong(1), rs.getInt(2));
+                }, pinIds.toArray());
+
+        List<LikeKey> toInsert = new ArrayList<>();
+        List<LikeKey> toDelete = new ArrayList<>();
+        byKey.forEach((key, commands) -> {
+            if (!persisted.containsKey(key.pinId())) {
+                return;
+            }
+            if (last(commands).like) {
+                toInsert.add(key);
+            } else {
+                toDelete.add(key);
+            }
+        });
+
+        Set<LikeKey> inserted = toInsert.isEmpty() ? Collections.emptySet() : changedKeys(
+                "INSERT INTO likes (user_id, pin_id, created_at) VALUES " + placeholders(toInsert.size(), "(?, ?, now())")
+                        + " ON CONFLICT (user_id, pin_id) WHERE pin_id IS NOT NULL DO NOTHING RETURNING user_id, pin_id",
+                toInsert);
+        Set<LikeKey> deleted = toDelete.isEmpty() ? Collections.emptySet() : changedKeys(
+                "DELETE FROM likes WHERE (user_id, pin_id) IN (" + placeholders(toDelete.size(), "(?, ?)")
+                        + ") RETURNING user_id, pin_id",
+                toDelete);
+        return new BatchResult(persisted, inserted, deleted);
+    }
+
+    private Set<LikeKey> changedKeys(String sql, List<LikeKey> keys) {
+        Object[] args = new Object[keys.size() * 2];
+        for (int i = 0; i < keys.size(); i++) {
+            args[2 * i] = keys.get(i).userId();
+            args[2 * i + 1] = keys.get(i).pinId();
+        }
+        return new HashSet<>(jdbcTemplate.query(sql, (rs, rowNum) -> new LikeKey(rs.getLong(1), rs.getLong(2)), args));
+    }
+
+    private void afterCommit(Map<LikeKey, List<Command>> byKey, BatchResult result) {
+        // вне транзакции: дельта применяется сразу и уходит в БД очередным сбросом счётчиков
+        Map<Long, Long> deltas = new HashMap<>();
+        result.inserted().forEach(key -> {
+            deltas.merge(key.pinId(), 1L, Long::sum);
+            engagementCounterService.addPinLikes(key.pinId(), key.userId(), 1);
+            likedPinIndex.applyChange(key.userId(), key.pinId(), true);
+        });
+        result.deleted().forEach(key -> {
+            deltas.merge(key.pinId(), -1L, Long::sum);
+            engagementCounterService.addPinLikes(key.pinId(), key.userId(), -1);
+            likedPinIndex.applyChange(key.userId(), key.pinId(), false);
+        });
+        Map<Long, Integer> totals = new HashMap<>();
+        result.persisted().forEach((pinId, stored) ->
+                totals.put(pinId, engagementCounterService.pinLikes(pinId, stored)));
+
+        deltas.forEach((pinId, delta) -> {
+            if (delta != 0) {
+                eventPublisher.publishEvent(new PinLikesChangedEvent(pinId, totals.get(pinId)));
+            }
+        });
+
+        byKey.forEach((key, commands) -> {
+            Integer total = totals.get(key.pinId());
+            if (total == null) {
+                commands.forEach(c -> c.future.completeExceptionally(new ResourceNotFoundException("Пин не найден")));
+                return;
+            }
+            Command last = last(commands);
+            boolean changed = result.inserted().contains(key) || result.deleted().contains(key);
+            if (changed && last.like) {
+                eventPublisher.publishEvent(new PinLikedEvent(key.pinId(), key.userId(), last.username));
+            }
+            LikeOutcome outcome = new LikeOutcome(last.like, changed, total);
+            commands.forEach(c -> c.future.complete(outcome));
+        });
+    }
+
+    private static Command last(List<Command> commands) {
+        return commands.get(commands.size() - 1);
+    }
+
+    private static String placeholders(int count, String item) {
+        return String.join(", ", Collections.nCopies(count, item));
+    }
+
+    /**
+     * Итог команды: состояние лайка после пачки, изменилось ли оно и счётчик пина
+     */
+    public record LikeOutcome(boolean liked, boolean changed, int likesCount) {
+    }
+
+    private record LikeKey(Long userId, Long pinId) {
+    }
+
+    private record BatchResult(Map<Long, Integer> persisted, Set<LikeKey> inserted, Set<LikeKey> deleted) {
+    }
+
+    private static final class Command {
+        final Long userId;
+        final String username;
+        final Long pinId;
+        final boolean like;
+        final CompletableFuture<LikeOutcome> future = new CompletableFuture<>();
+
+        Command(Long userId, String username, Long pinId, boolean like) {
+            this.userId = userId;
+            this.username = username;
+            this.pinId = pinId;
+            this.like = like;
+        }
+    }
+}
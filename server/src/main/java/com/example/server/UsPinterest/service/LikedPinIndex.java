@@ -0,0 +1,120 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.config.CacheKeyCodec;
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.example.server.UsPinterest.repository.LikeRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Индекс лайков пользователя: отсортированный long[] id лайкнутых пинов в кэше "liked_pins".
+ * Отметка «лайкнуто» для страницы карточек — двоичный поиск по массиву, без чтения строк likes.
+ * Массив неизменяем: лайк/анлайк подменяет его копией; на других узлах запись сбрасывается.
+ */
+@Service
+public class LikedPinIndex {
+
+    public static final String CACHE = "liked_pins";
+
+    private static final long[] EMPTY = new long[0];
+
+    private final CacheManager cacheManager;
+    private final LikeRepository likeRepository;
+    private final CacheInvalidationBus bus;
+
+    public LikedPinIndex(CacheManager cacheManager, LikeRepository likeRepository, CacheInvalidationBus bus) {
+        this.cacheManager = cacheManager;
+        this.likeRepository = likeRepository;
+        this.bus = bus;
+    }
+
+    public boolean isLiked(Long userId, Long pinId) {
+        return userId != null && pinId != null && Arrays.binarySearch(likedPins(userId), pinId) >= 0;
+    }
+
+    /**
+     * Какие из переданных пинов лайкнуты пользователем (порядок входа сохраняется)
+     */
+    public Set<Long> likedAmong(Long userId, Collection<Long> pinIds) {
+        Set<Long> liked = new LinkedHashSet<>();
+        if (userId == null || pinIds.isEmpty()) {
+            return liked;
+        }
+        long[] index = likedPins(userId);
+        for (Long pinId : pinIds) {
+            if (pinId != null && Arrays.binarySearch(index, pinId) >= 0) {
+                liked.add(pinId);
+            }
+        }
+        return liked;
+    }
+
+    /**
+     * Вызывается после коммита лайка/анлайка. Отсутствующая запись не создаётся: загрузится из БД при чтении
+     */
+    @SuppressWarnings("unchecked")
+    public void applyChange(Long userId, Long pinId, boolean liked) {
+        Cache cache = cache();
+        if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+            cache.evict(userId);
+            return;
+        }
+        // computeIfPresent атомарен с загрузкой: изменение не потеряется, даже если запись как раз читается из БД
+        ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache).asMap()
+                .computeIfPresent(userId, (key, value) -> liked ? with((long[]) value, pinId) : without((long[]) value, pinId));
+        bus.publishImmediately(CacheInvalidationMessage.evict(CACHE, CacheKeyCodec.encode(userId)));
+    }
+
+    private long[] likedPins(Long userId) {
+        long[] index = cache().get(userId, () -> load(userId));
+        return index != null ? index : EMPTY;
+    }
+
+    private long[] load(Long userId) {
+        List<Long> ids = likeRepository.findLikedPinIdsOrdered(userId);
+        long[] index = new long[ids.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = ids.get(i);
+        }
+        return index;
+    }
+
+    private Cache cache() {
+        Cache cache = cacheManager.getCache(CACHE);
+        if (cache == null) {
+            throw new IllegalStateException("Кэш " + CACHE + " не настроен");
+        }
+        return cache;
+    }
+
+    private static long[] with(long[] index, long pinId) {
+        int pos = Arrays.binarySearch(index, pinId);
+        if (pos >= 0) {
+            return index;
+        }
+        int insertAt = -pos - 1;
+        long[] copy = new long[index.length + 1];
+        System.arraycopy(index, 0, copy, 0, insertAt);
+        copy[insertAt] = pinId;
+        System.arraycopy(index, insertAt, copy, insertAt + 1, index.length - insertAt);
+        return copy;
+    }
+
+    private static long[] without(long[] index, long pinId) {
+        int pos = Arrays.binarySearch(index, pinId);
+        if (pos < 0) {
+            return index;
+        }
+        long[] copy = new long[index.length - 1];
+        System.arraycopy(index, 0, copy, 0, pos);
+        System.arraycopy(index, pos + 1, copy, pos, index.length - pos - 1);
+        return copy;
+    }
+}
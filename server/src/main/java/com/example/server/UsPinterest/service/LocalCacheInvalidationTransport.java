@@ -0,0 +1,22 @@
+package com.example.server.UsPinterest.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Один узел (локальный запуск, тесты): рассылать некому, все сбросы уже применены к своим кэшам
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.cluster.transport", havingValue = "local", matchIfMissing = true)
+public class LocalCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    @Override
+    public void start(Consumer<String> onMessage, Runnable onResync) {
+    }
+
+    @Override
+    public void send(String payload) {
+    }
+}
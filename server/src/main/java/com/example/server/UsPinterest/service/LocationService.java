@@ -2,6 +2,8 @@ package com.example.server.UsPinterest.service;
 
 import com.example.server.UsPinterest.dto.LocationRequest;
 import com.example.server.UsPinterest.dto.LocationResponse;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
+import com.example.server.UsPinterest.event.SuggestTermsAddedEvent;
 import com.example.server.UsPinterest.exception.ResourceNotFoundException;
 import com.example.server.UsPinterest.model.Location;
 import com.example.server.UsPinterest.model.Pin;
@@ -10,6 +12,7 @@ import com.example.server.UsPinterest.repository.LocationRepository;
 import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.PostRepository;
 import com.example.server.UsPinterest.service.GeocodingService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,15 +25,18 @@ public class LocationService {
     private final PostRepository postRepository;
     private final PinRepository pinRepository;
     private final GeocodingService geocodingService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public LocationService(LocationRepository locationRepository,
                            PostRepository postRepository,
                            PinRepository pinRepository,
-                           GeocodingService geocodingService) {
+                           GeocodingService geocodingService,
+                           ApplicationEventPublisher eventPublisher) {
         this.locationRepository = locationRepository;
         this.postRepository = postRepository;
         this.pinRepository = pinRepository;
         this.geocodingService = geocodingService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -50,6 +56,14 @@ public class LocationService {
         location.setLongitude(request.getLongitude());
         location.setNameplace(request.getPlaceName());
         Location saved = locationRepository.save(location);
+        if (saved.getNameplace() != null && !saved.getNameplace().isBlank()) {
+            eventPublisher.publishEvent(new SuggestTermsAddedEvent(SuggestTermsAddedEvent.Type.PLACE,
+                    List.of(saved.getNameplace())));
+        }
+        if (saved.getPin() != null) {
+            // место входит в карточку и поисковый вектор пина
+            eventPublisher.publishEvent(new PinUpdatedEvent(saved.getPin()));
+        }
         return toDto(saved);
     }
 
@@ -4,6 +4,7 @@ import com.example.server.UsPinterest.dto.NotificationResponse;
 import com.example.server.UsPinterest.model.Notification;
 import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.model.User;
+import com.example.server.UsPinterest.repository.CommentRepository;
 import com.example.server.UsPinterest.repository.NotificationRepository;
 import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
@@ -23,6 +24,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -51,6 +53,8 @@ public class NotificationService {
 
     private final SseService sseService;
 
+    private final CommentRepository commentRepository;
+
     // Создать уведомление о подписке
     public void createFollowNotification(User sender, User recipient) {
         if (sender.getId().equals(recipient.getId())) {
@@ -154,6 +158,25 @@ public class NotificationService {
         sendWebSocketNotification(savedNotification);
     }
 
+    // Уведомление автору поста о комментарии: комментарий с постом и автором читается по id после коммита
+    public void createPostCommentNotification(Long commentId) {
+        commentRepository.findById(commentId)
+                .filter(comment -> comment.getPost() != null)
+                .ifPresent(comment -> createPostCommentNotification(comment.getUser(), comment.getPost(), comment.getText()));
+    }
+
+    // Уведомления всем упомянутым в комментарии: комментарий и адресаты читаются двумя запросами
+    public void createMentionNotifications(Long commentId, Collection<Long> recipientIds) {
+        if (recipientIds == null || recipientIds.isEmpty()) {
+            return;
+        }
+        commentRepository.findById(commentId).ifPresent(comment -> {
+            for (User recipient : userRepository.findAllById(recipientIds)) {
+                createMentionNotification(comment.getUser(), comment, recipient);
+            }
+        });
+    }
+
     // Создать уведомление об упоминании в комментарии
     public void createMentionNotification(User sender, com.example.server.UsPinterest.entity.Comment comment, User recipient) {
         if (recipient.getId().equals(sender.getId())) {
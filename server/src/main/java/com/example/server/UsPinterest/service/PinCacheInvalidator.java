@@ -0,0 +1,328 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.config.ClusterCache;
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.example.server.UsPinterest.dto.FeedPage;
+import com.example.server.UsPinterest.dto.FeedWindowKey;
+import com.example.server.UsPinterest.dto.PinSnapshot;
+import com.example.server.UsPinterest.event.PinCommentsChangedEvent;
+import com.example.server.UsPinterest.event.PinCreatedEvent;
+import com.example.server.UsPinterest.event.PinDeletedEvent;
+import com.example.server.UsPinterest.event.PinLikesChangedEvent;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
+import com.example.server.UsPinterest.model.Pin;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Точечная инвалидация кэшей пинов вместо allEntries.
+ * Записи кэшей помечаются id пинов, которые в них лежат; изменение пина затрагивает только их.
+ * Лайк обновляет снимок в окнах ленты на месте, новый пин сбрасывает только головные окна.
+ * Каждое изменение рассылается другим узлам одним смысловым сообщением: у каждого узла свои окна и метки.
+ */
+@Service
+public class PinCacheInvalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinCacheInvalidator.class);
+
+    public static final String PINS_CACHE = "pins";
+    public static final String SEARCH_CACHE = "search";
+    public static final String EXTENDED_PINS_CACHE = "extended_pins";
+
+    private final CacheManager cacheManager;
+    private final CacheManager extendedPinCacheManager;
+    private final MeterRegistry meterRegistry;
+    private final CacheInvalidationBus bus;
+
+    // Счётчик инвалидаций: загрузка запоминает его до чтения БД и по нему узнаёт, не устарела ли
+    private final AtomicLong generation = new AtomicLong();
+
+    // Поколение последнего создания пина: новые пины меняют головные окна и списки поиска
+    private final AtomicLong createdGeneration = new AtomicLong();
+
+    // Ниже этого поколения история изменений пинов забыта: такие загрузки считаются устаревшими
+    private final AtomicLong forgottenGeneration = new AtomicLong();
+
+    // pinId -> поколение его последнего изменения. Нужна лишь на время загрузки, поэтому живёт недолго
+    private final com.github.benmanes.caffeine.cache.Cache<Long, Long> changedAt = Caffeine.newBuilder()
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .maximumSize(100_000)
+            .removalListener((Long pinId, Long changed, RemovalCause cause) -> {
+                if (cause.wasEvicted() && changed != null) {
+                    forgottenGeneration.accumulateAndGet(changed, Math::max);
+                }
+            })
+            .build();
+
+    // pinId -> записи кэшей, где этот пин присутствует. Вытесненная метка сбрасывает свои записи:
+    // без неё изменение пина их бы не нашло
+    private final com.github.benmanes.caffeine.cache.Cache<Long, Set<TaggedEntry>> tags = Caffeine.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .maximumSize(200_000)
+            .removalListener((Long pinId, Set<TaggedEntry> entries, RemovalCause cause) -> {
+                if (cause.wasEvicted() && entries != null) {
+                    entries.forEach(entry -> evict(cache(entry.cacheName()), entry.key(), "tag_evicted"));
+                }
+            })
+            .build();
+
+    public PinCacheInvalidator(CacheManager cacheManager,
+                               @Qualifier("extendedPinCacheManager") CacheManager extendedPinCacheManager,
+                               MeterRegistry meterRegistry,
+                               CacheInvalidationBus bus) {
+        this.cacheManager = cacheManager;
+        this.extendedPinCacheManager = extendedPinCacheManager;
+        this.meterRegistry = meterRegistry;
+        this.bus = bus;
+        // Другие узлы присылают те же смысловые события: применяем к своим окнам и карточкам
+        bus.register(CacheInvalidationMessage.Type.PIN_LIKES,
+                m -> applyLikes(m.getPinId(), m.getLikesCount() != null ? m.getLikesCount() : 0));
+        bus.register(CacheInvalidationMessage.Type.PIN_COMMENTS,
+                m -> applyComments(m.getPinId(), m.getCommentsCount() != null ? m.getCommentsCount() : 0));
+        bus.register(CacheInvalidationMessage.Type.PIN_CREATED, m -> applyCreated());
+        bus.register(CacheInvalidationMessage.Type.PIN_CHANGED, m -> invalidatePin(m.getPinId(), "remote"));
+    }
+
+    /**
+     * Поколение инвалидаций; берётся до чтения БД и передаётся в {@link #put}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Кладёт запись в кэш, помеченную id пинов, которые она содержит.
+     * Метка ставится до записи, чтобы её нашла любая последующая инвалидация; если пины
+     * изменились после начала загрузки (loadGeneration), запись сразу сбрасывается
+     */
+    public void put(String cacheName, Object key, Object value, Collection<Long> pinIds, long loadGeneration) {
+        Cache cache = cache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        tag(cacheName, key, pinIds);
+        cache.put(key, value);
+        if (changedSince(loadGeneration, cacheName, key, value, pinIds)) {
+            evict(cache, key, "stale_load");
+        }
+    }
+
+    private boolean changedSince(long loadGeneration, String cacheName, Object key, Object value,
+                                 Collection<Long> pinIds) {
+        if (forgottenGeneration.get() > loadGeneration) {
+            return true;
+        }
+        if (createdGeneration.get() > loadGeneration && affectedByCreate(cacheName, key, value)) {
+            return true;
+        }
+        for (Long pinId : pinIds) {
+            Long changed = changedAt.getIfPresent(pinId);
+            if (changed != null && changed > loadGeneration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Поколение изменения фиксируется до сброса записей: загрузка, записавшая значение после
+     * сброса, увидит его при проверке
+     */
+    private void markChanged(Long pinId) {
+        changedAt.put(pinId, generation.incrementAndGet());
+    }
+
+    private void tag(String cacheName, Object key, Collection<Long> pinIds) {
+        TaggedEntry entry = new TaggedEntry(cacheName, key);
+        for (Long pinId : pinIds) {
+            tags.asMap().compute(pinId, (id, entries) -> {
+                Set<TaggedEntry> set = entries != null ? entries : ConcurrentHashMap.newKeySet();
+                set.add(entry);
+                return set;
+            });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLikesChanged(PinLikesChangedEvent event) {
+        bus.runLocal(() -> applyLikes(event.getPinId(), event.getLikesCount()));
+        bus.publishImmediately(CacheInvalidationMessage.pin(CacheInvalidationMessage.Type.PIN_LIKES,
+                event.getPinId(), event.getLikesCount(), null, null));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentsChanged(PinCommentsChangedEvent event) {
+        bus.runLocal(() -> applyComments(event.getPinId(), event.getCommentsCount()));
+        bus.publishImmediately(CacheInvalidationMessage.pinComments(event.getPinId(), event.getCommentsCount()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinCreated(PinCreatedEvent event) {
+        Pin pin = event.getPin();
+        Long boardId = pin.getBoard() != null ? pin.getBoard().getId() : null;
+        String username = pin.getUser() != null ? pin.getUser().getUsername() : null;
+        bus.runLocal(this::applyCreated);
+        bus.publishImmediately(CacheInvalidationMessage.pin(CacheInvalidationMessage.Type.PIN_CREATED,
+                pin.getId(), null, boardId, username));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinUpdated(PinUpdatedEvent event) {
+        pinUpdated(event.getPin());
+    }
+
+    public void pinUpdated(Pin pin) {
+        pinChanged(pin.getId(), pin.getBoard() != null ? pin.getBoard().getId() : null,
+                pin.getUser() != null ? pin.getUser().getUsername() : null, "update");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinDeleted(PinDeletedEvent event) {
+        pinChanged(event.getPinId(), event.getBoardId(), event.getUsername(), "delete");
+    }
+
+    private void pinChanged(Long pinId, Long boardId, String username, String reason) {
+        bus.runLocal(() -> invalidatePin(pinId, reason));
+        // доска и автор остаются в сообщении для узлов предыдущей версии, где ещё кэшируются их списки
+        bus.publishImmediately(CacheInvalidationMessage.pin(CacheInvalidationMessage.Type.PIN_CHANGED,
+                pinId, null, boardId, username));
+    }
+
+    private void applyLikes(Long pinId, int likesCount) {
+        markChanged(pinId);
+        writeThrough(pinId, page -> page.withLikesCount(pinId, likesCount),
+                card -> card.toBuilder().likesCount(likesCount).build(), "like");
+    }
+
+    private void applyComments(Long pinId, int commentsCount) {
+        markChanged(pinId);
+        writeThrough(pinId, page -> page.withCommentsCount(pinId, commentsCount),
+                card -> card.toBuilder().commentsCount(commentsCount).build(), "comment");
+    }
+
+    /**
+     * Счётчик пина обновляется на месте: окна ленты и карточка остаются в кэше с новым значением.
+     * Одно окно правят поток лайков, запросы комментариев и шина, поэтому правка атомарна (computeIfPresent)
+     */
+    private void writeThrough(Long pinId, UnaryOperator<FeedPage> updatePage,
+                              UnaryOperator<PinSnapshot> updateCard, String reason) {
+        Set<TaggedEntry> entries = tags.getIfPresent(pinId);
+        if (entries != null) {
+            for (TaggedEntry entry : entries) {
+                Cache cache = cache(entry.cacheName());
+                if (cache == null) {
+                    continue;
+                }
+                boolean[] applied = new boolean[1];
+                computeIfPresent(cache, entry.key(), value -> {
+                    if (value instanceof FeedPage page && page.contains(pinId)) {
+                        applied[0] = true;
+                        return updatePage.apply(page);
+                    }
+                    return value;
+                });
+                if (applied[0]) {
+                    count(entry.cacheName(), reason + "_write_through");
+                } else {
+                    evict(cache, entry.key(), reason);
+                }
+            }
+        }
+        Cache pins = cache(PINS_CACHE);
+        if (pins != null && computeIfPresent(pins, pinId,
+                value -> value instanceof PinSnapshot card ? updateCard.apply(card) : value) != null) {
+            count(PINS_CACHE, reason + "_write_through");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object computeIfPresent(Cache cache, Object key, UnaryOperator<Object> update) {
+        if (cache instanceof ClusterCache cluster) {
+            return cluster.computeIfPresent(key, update);
+        }
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache)
+                    .asMap().computeIfPresent(key, (k, value) -> update.apply(value));
+        }
+        // кэш без атомарной правки: запись сбрасывается и перечитается
+        cache.evict(key);
+        return null;
+    }
+
+    private void applyCreated() {
+        createdGeneration.set(generation.incrementAndGet());
+        evictMatching(EXTENDED_PINS_CACHE, (key, value) -> affectedByCreate(EXTENDED_PINS_CACHE, key, value), "create");
+        evictMatching(SEARCH_CACHE, (key, value) -> affectedByCreate(SEARCH_CACHE, key, value), "create");
+    }
+
+    private static boolean affectedByCreate(String cacheName, Object key, Object value) {
+        if (EXTENDED_PINS_CACHE.equals(cacheName)) {
+            // keyset по id: новый пин попадает только в голову ленты по убыванию и в хвост по возрастанию
+            return key instanceof FeedWindowKey window
+                    && (window.isHead() || (!window.isDescending() && value instanceof FeedPage page && !page.isHasNext()));
+        }
+        return SEARCH_CACHE.equals(cacheName) && key instanceof String s && s.startsWith("pins_");
+    }
+
+    /**
+     * Сбрасывает все записи, помеченные пином, и сам пин
+     */
+    private void invalidatePin(Long pinId, String reason) {
+        markChanged(pinId);
+        Set<TaggedEntry> entries = tags.asMap().remove(pinId);
+        if (entries != null) {
+            for (TaggedEntry entry : entries) {
+                evict(cache(entry.cacheName()), entry.key(), reason);
+            }
+        }
+        evict(cache(PINS_CACHE), pinId, reason);
+    }
+
+    private void evictMatching(String cacheName, BiPredicate<Object, Object> predicate, String reason) {
+        Cache cache = cache(cacheName);
+        if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+            return;
+        }
+        nativeCache.asMap().forEach((key, value) -> {
+            if (predicate.test(key, value)) {
+                evict(cache, key, reason);
+            }
+        });
+    }
+
+    private void evict(Cache cache, Object key, String reason) {
+        if (cache != null && cache.evictIfPresent(key)) {
+            count(cache.getName(), reason);
+            logger.debug("Инвалидация {}[{}]: {}", cache.getName(), key, reason);
+        }
+    }
+
+    private void count(String cacheName, String reason) {
+        meterRegistry.counter("cache.invalidations", "cache", cacheName, "reason", reason).increment();
+    }
+
+    private Cache cache(String cacheName) {
+        return EXTENDED_PINS_CACHE.equals(cacheName)
+                ? extendedPinCacheManager.getCache(cacheName)
+                : cacheManager.getCache(cacheName);
+    }
+
+    private record TaggedEntry(String cacheName, Object key) {
+    }
+}
@@ -1,33 +1,28 @@
 package com.example.server.UsPinterest.service;
 
 import com.example.server.UsPinterest.dto.PinRequest;
+import com.example.server.UsPinterest.dto.UserSummary;
 import com.example.server.UsPinterest.model.Board;
 import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.model.User;
-import com.example.server.UsPinterest.model.Tag;
-import com.example.server.UsPinterest.entity.Like;
 import com.example.server.UsPinterest.exception.ResourceNotFoundException;
-import com.example.server.UsPinterest.repository.LikeRepository;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
 import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
-import com.example.server.UsPinterest.repository.TagRepository;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import com.example.server.UsPinterest.service.BoardService;
 import org.springframework.context.annotation.Lazy;
 import com.example.server.UsPinterest.repository.LocationRepository;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Transactional
@@ -38,18 +33,15 @@ public class PinCrudService {
     @Lazy
     private final BoardService boardService;
     private final UserRepository userRepository;
-    private final LikeRepository likeRepository;
     private final FileStorageService fileStorageService;
     private final ApplicationEventPublisher eventPublisher;
     @Lazy
     private final PinService pinService;
-    private final TagRepository tagRepository;
+    private final TextEntityExtractor textEntityExtractor;
     private final LocationRepository locationRepository;
+    private final LikeIngestService likeIngestService;
+    private final SnapshotCacheService snapshotCacheService;
 
-    @Caching(evict = {
-        @CacheEvict(value = {"pins", "search"}, allEntries = true),
-        @CacheEvict(cacheNames = "extended_pins", cacheManager = "extendedPinCacheManager", allEntries = true)
-    })
     public Pin createPin(PinRequest pinRequest, String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
@@ -65,16 +57,7 @@ public class PinCrudService {
             pin.setBoard(board);
         }
         if (pinRequest.getTags() != null && !pinRequest.getTags().isEmpty()) {
-            Set<Tag> tags = new HashSet<>();
-            for (String name : pinRequest.getTags()) {
-                String trimmed = name.trim();
-                tagRepository.findByNameIgnoreCase(trimmed)
-                    .ifPresentOrElse(
-                        tags::add,
-                        () -> tags.add(new Tag(trimmed))
-                    );
-            }
-            pin.setTags(tags);
+            pin.setTags(textEntityExtractor.resolveTags(pinRequest.getTags()));
         }
         calculateImageDimensions(pin);
         pin.setCommentsCount(0);
@@ -83,10 +66,6 @@ public class PinCrudService {
         return saved;
     }
 
-    @Caching(evict = {
-        @CacheEvict(value = {"pins", "search"}, allEntries = true),
-        @CacheEvict(cacheNames = "extended_pins", cacheManager = "extendedPinCacheManager", allEntries = true)
-    })
     public void deletePin(Long id) {
         Pin pin = pinRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Пин не найден с id: " + id));
@@ -98,62 +77,49 @@ public class PinCrudService {
         locationRepository.deleteAll(locationRepository.findByPinId(id));
         // удаляем сам пин и связанные комментарии/лайки (cascade)
         pinRepository.delete(pin);
+        eventPublisher.publishEvent(new com.example.server.UsPinterest.event.PinDeletedEvent(
+                id,
+                pin.getUser() != null ? pin.getUser().getId() : null,
+                pin.getUser() != null ? pin.getUser().getUsername() : null,
+                pin.getBoard() != null ? pin.getBoard().getId() : null));
     }
 
-    @CacheEvict(value = {"pins", "search"}, allEntries = true)
-    public Map<String, Object> likePin(Long pinId, String username) {
-        User user = userRepository.findByUsername(username)
+    /**
+     * Лайк уходит в групповую запись; future завершается после коммита пачки.
+     * Соединение с БД на время ожидания не держим.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<Map<String, Object>> likePin(Long pinId, String username) {
+        UserSummary user = snapshotCacheService.getUserSummary(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-        Pin pin = pinRepository.findById(pinId)
-                .orElseThrow(() -> new ResourceNotFoundException("Пин не найден"));
-        Optional<Like> exists = likeRepository.findByPinAndUser(pin, user);
-        Map<String, Object> response = new HashMap<>();
-        if (exists.isPresent()) {
-            response.put("message", "Лайк уже существует");
-            response.put("liked", true);
-            response.put("likesCount", pin.getLikesCount());
-            return response;
-        }
-        Like like = new Like();
-        like.setUser(user);
-        like.setPin(pin);
-        like.setCreatedAt(LocalDateTime.now());
-        likeRepository.save(like);
-        int total = likeRepository.countByPinId(pinId);
-        pin.setLikesCount(total);
-        pinRepository.save(pin);
-        response.put("message", "Лайк поставлен");
-        response.put("liked", true);
-        response.put("likesCount", total);
-        return response;
+        return likeIngestService.like(user.getId(), user.getUsername(), pinId)
+                .thenApply(outcome -> likeResponse(outcome,
+                        outcome.changed() ? "Лайк поставлен" : "Лайк уже существует"));
     }
 
-    @CacheEvict(value = {"pins", "search"}, allEntries = true)
-    public Map<String, Object> unlikePin(Long pinId, String username) {
-        User user = userRepository.findByUsername(username)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<Map<String, Object>> unlikePin(Long pinId, String username) {
+        UserSummary user = snapshotCacheService.getUserSummary(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-        Pin pin = pinRepository.findById(pinId)
-                .orElseThrow(() -> new ResourceNotFoundException("Пин не найден"));
+        return likeIngestService.unlike(user.getId(), user.getUsername(), pinId)
+                .thenApply(outcome -> likeResponse(outcome, "Лайк удалён"));
+    }
+
+    private static Map<String, Object> likeResponse(LikeIngestService.LikeOutcome outcome, String message) {
         Map<String, Object> response = new HashMap<>();
-        likeRepository.findByPinAndUser(pin, user).ifPresent(like -> {
-            likeRepository.delete(like);
-        });
-        int total = likeRepository.countByPinId(pinId);
-        pin.setLikesCount(total);
-        pinRepository.save(pin);
-        response.put("message", "Лайк удалён");
-        response.put("liked", false);
-        response.put("likesCount", total);
+        response.put("message", message);
+        response.put("liked", outcome.liked());
+        response.put("likesCount", outcome.likesCount());
         return response;
     }
 
-    @CacheEvict(value = {"pins", "search"}, allEntries = true)
     public String updatePinImageUrl(Pin pin) {
         if (pin == null || pin.getImageUrl() == null) return null;
         String updated = fileStorageService.updateImageUrl(pin.getImageUrl());
         if (!pin.getImageUrl().equals(updated)) {
             pin.setImageUrl(updated);
             pinRepository.save(pin);
+            eventPublisher.publishEvent(new PinUpdatedEvent(pin));
         }
         return updated;
     }
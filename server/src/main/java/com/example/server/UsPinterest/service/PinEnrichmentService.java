@@ -0,0 +1,181 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.PinResponse;
+import com.example.server.UsPinterest.dto.mapper.PinStructMapper;
+import com.example.server.UsPinterest.model.Location;
+import com.example.server.UsPinterest.model.Picture;
+import com.example.server.UsPinterest.model.Pin;
+import com.example.server.UsPinterest.model.User;
+import com.example.server.UsPinterest.repository.LocationRepository;
+import com.example.server.UsPinterest.repository.PictureRepository;
+import com.example.server.UsPinterest.repository.PinCardView;
+import com.example.server.UsPinterest.repository.PinRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетное обогащение страницы пинов: картинки, локации, теги и лайки
+ * загружаются одним IN-запросом на всю страницу, после чего PinResponse собираются в памяти.
+ */
+@Service
+@Transactional(readOnly = true)
+public class PinEnrichmentService {
+
+    private final PinStructMapper delegate;
+    private final PinRepository pinRepository;
+    private final PictureRepository pictureRepository;
+    private final LocationRepository locationRepository;
+    private final LikedPinIndex likedPinIndex;
+    private final FileStorageService fileStorageService;
+    private final EngagementCounterService engagementCounterService;
+
+    public PinEnrichmentService(@Qualifier("delegate") PinStructMapper delegate,
+                                PinRepository pinRepository,
+                                PictureRepository pictureRepository,
+                                LocationRepository locationRepository,
+                                LikedPinIndex likedPinIndex,
+                                FileStorageService fileStorageService,
+                                EngagementCounterService engagementCounterService) {
+        this.delegate = delegate;
+        this.pinRepository = pinRepository;
+        this.pictureRepository = pictureRepository;
+        this.locationRepository = locationRepository;
+        this.likedPinIndex = likedPinIndex;
+        this.fileStorageService = fileStorageService;
+        this.engagementCounterService = engagementCounterService;
+    }
+
+    public PinResponse enrich(Pin pin, User currentUser) {
+        return enrich(Collections.singletonList(pin), currentUser).get(0);
+    }
+
+    public List<PinResponse> enrich(List<Pin> pins, User currentUser) {
+        if (pins == null || pins.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<PinResponse> dtos = pins.stream()
+                .map(delegate::toDto)
+                .collect(Collectors.toList());
+        return enrichResponses(dtos, currentUser);
+    }
+
+    /**
+     * То же обогащение, но для карточек ленты, прочитанных лёгкой проекцией
+     */
+    public List<PinResponse> enrichCards(List<PinCardView> cards, User currentUser) {
+        if (cards == null || cards.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<PinResponse> dtos = cards.stream()
+                .map(delegate::toDto)
+                .collect(Collectors.toList());
+        return enrichResponses(dtos, currentUser);
+    }
+
+    private List<PinResponse> enrichResponses(List<PinResponse> dtos, User currentUser) {
+        List<Long> pinIds = dtos.stream()
+                .map(PinResponse::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (pinIds.isEmpty()) {
+            dtos.forEach(dto -> decorate(dto, null, null, Collections.emptyList(), false));
+            return dtos;
+        }
+
+        Map<Long, Picture> pictures = new HashMap<>();
+        for (Picture picture : pictureRepository.findByPinIdIn(pinIds)) {
+            pictures.putIfAbsent(picture.getPin().getId(), picture);
+        }
+
+        Map<Long, Location> locations = new HashMap<>();
+        for (Location location : locationRepository.findByPinIdInOrderByIdAsc(pinIds)) {
+            locations.putIfAbsent(location.getPin().getId(), location);
+        }
+
+        Map<Long, List<String>> tagNames = new HashMap<>();
+        for (Object[] row : pinRepository.findTagNamesByPinIds(pinIds)) {
+            tagNames.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        Set<Long> likedPinIds = currentUser != null && currentUser.getId() != null
+                ? likedPinIndex.likedAmong(currentUser.getId(), pinIds)
+                : Collections.emptySet();
+
+        for (PinResponse dto : dtos) {
+            // сохранённый счётчик может отставать от ещё не сброшенных кликов
+            dto.setLikesCount(engagementCounterService.pinLikes(dto.getId(), dto.getLikesCount()));
+            decorate(
+                    dto,
+                    pictures.get(dto.getId()),
+                    locations.get(dto.getId()),
+                    tagNames.getOrDefault(dto.getId(), Collections.emptyList()),
+                    likedPinIds.contains(dto.getId()));
+        }
+        return dtos;
+    }
+
+    private void decorate(PinResponse dto, Picture picture, Location loc, List<String> tags, boolean liked) {
+        if (dto.getImageUrl() != null && !dto.getImageUrl().isEmpty()) {
+            dto.setImageUrl(fileStorageService.updateImageUrl(dto.getImageUrl()));
+        }
+        if (dto.getFullhdImageUrl() != null && !dto.getFullhdImageUrl().isEmpty()) {
+            dto.setFullhdImageUrl(fileStorageService.updateImageUrl(dto.getFullhdImageUrl()));
+        }
+        if (dto.getThumbnailImageUrl() != null && !dto.getThumbnailImageUrl().isEmpty()) {
+            dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(dto.getThumbnailImageUrl()));
+        }
+        Integer w = dto.getImageWidth(), h = dto.getImageHeight();
+        dto.setAspectRatio(w != null && h != null && h > 0 ? w.doubleValue() / h : 1.0);
+        dto.setTags(new ArrayList<>(tags));
+        dto.setIsLikedByCurrentUser(liked);
+        if (dto.getUserProfileImageUrl() != null && !dto.getUserProfileImageUrl().isEmpty()) {
+            dto.setUserProfileImageUrl(fileStorageService.updateImageUrl(dto.getUserProfileImageUrl()));
+        }
+        if (picture != null) {
+            if (picture.getImageUrl() != null) {
+                dto.setImageUrl(fileStorageService.updateImageUrl(picture.getImageUrl()));
+            }
+            if (picture.getFullhdImageUrl() != null && !picture.getFullhdImageUrl().isEmpty()) {
+                dto.setFullhdImageUrl(fileStorageService.updateImageUrl(picture.getFullhdImageUrl()));
+            }
+            // Первая миниатюра приоритетнее агрегированной
+            String thumb1 = picture.getThumbnailImageUrl1();
+            if (thumb1 != null && !thumb1.isEmpty()) {
+                dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(thumb1));
+            } else if (picture.getThumbnailImageUrl() != null && !picture.getThumbnailImageUrl().isEmpty()) {
+                dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(picture.getThumbnailImageUrl()));
+            }
+            dto.setImageWidth(picture.getImageWidth());
+            dto.setImageHeight(picture.getImageHeight());
+            dto.setFullhdWidth(picture.getFullhdWidth());
+            dto.setFullhdHeight(picture.getFullhdHeight());
+            dto.setThumbnailWidth(picture.getThumbnailWidth());
+            dto.setThumbnailHeight(picture.getThumbnailHeight());
+            // Количество картинок для места
+            int count = 0;
+            if (picture.getImageUrl1() != null) count++;
+            if (picture.getImageUrl2() != null) count++;
+            if (picture.getImageUrl3() != null) count++;
+            if (picture.getImageUrl4() != null) count++;
+            if (picture.getImageUrl5() != null) count++;
+            dto.setPicturesCount(count);
+        }
+        if (loc != null) {
+            dto.setLatitude(loc.getLatitude());
+            dto.setLongitude(loc.getLongitude());
+            dto.setAddress(loc.getAddress());
+            dto.setPlaceName(loc.getNameplace());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.FeedPage;
+import com.example.server.UsPinterest.dto.FeedWindowKey;
+import com.example.server.UsPinterest.dto.PinSnapshot;
+import com.example.server.UsPinterest.repository.PinCardView;
+import com.example.server.UsPinterest.repository.PinRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Движок ленты: окно курсора разрешается в неизменяемую страницу снимков один раз,
+ * все представления (полное, fullhd, миниатюры) строятся из одной записи кэша.
+ * Промахи загружаются single-flight, головные окна обновляются в фоне до истечения срока.
+ */
+@Service
+public class PinFeedService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinFeedService.class);
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    // Размер окна входит в ключ кэша: без предела каждый размер из запроса — отдельное окно произвольной длины
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final PinRepository pinRepository;
+
+    private final PinEnrichmentService pinEnrichmentService;
+
+    private final CacheManager extendedPinCacheManager;
+
+    private final PinCacheInvalidator pinCacheInvalidator;
+
+    private final CacheLoadCoalescer cacheLoadCoalescer;
+
+    private final Executor cacheRefreshExecutor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final CachePersistenceService cachePersistenceService;
+
+    @Value("${app.feed.refresh-ahead-ms:600000}")
+    private long refreshAheadMs;
+
+    // Время загрузки головных окон: по нему решается, пора ли обновлять
+    private final Map<FeedWindowKey, Long> headLoadedAt = new ConcurrentHashMap<>();
+
+    public PinFeedService(PinRepository pinRepository,
+                          PinEnrichmentService pinEnrichmentService,
+                          @Qualifier("extendedPinCacheManager") CacheManager extendedPinCacheManager,
+                          PinCacheInvalidator pinCacheInvalidator,
+                          CacheLoadCoalescer cacheLoadCoalescer,
+                          @Qualifier("cacheRefreshExecutor") Executor cacheRefreshExecutor,
+                          MeterRegistry meterRegistry,
+                          CachePersistenceService cachePersistenceService) {
+        this.pinRepository = pinRepository;
+        this.pinEnrichmentService = pinEnrichmentService;
+        this.extendedPinCacheManager = extendedPinCacheManager;
+        this.pinCacheInvalidator = pinCacheInvalidator;
+        this.cacheLoadCoalescer = cacheLoadCoalescer;
+        this.cacheRefreshExecutor = cacheRefreshExecutor;
+        this.meterRegistry = meterRegistry;
+        this.cachePersistenceService = cachePersistenceService;
+    }
+
+    /**
+     * Вне транзакции: ожидающие чужой загрузки запросы не держат соединение из пула
+     */
+    public FeedPage getWindow(Long cursorId, int size, boolean descending) {
+        int pageSize = Math.min(size > 0 ? size : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        FeedWindowKey key = new FeedWindowKey(cursorId, pageSize, descending);
+        Cache cache = cache();
+        FeedPage cached = cache.get(key, FeedPage.class);
+        if (cached != null && cachePersistenceService.revalidateWindow(key, cached)) {
+            if (key.isHead()) {
+                headLoadedAt.putIfAbsent(key, System.currentTimeMillis());
+            }
+            return cached;
+        }
+        return cacheLoadCoalescer.load(PinCacheInvalidator.EXTENDED_PINS_CACHE, key, () -> {
+            // окно могло появиться, пока ждали своей очереди
+            FeedPage current = cache.get(key, FeedPage.class);
+            return current != null ? current : loadAndCache(key);
+        });
+    }
+
+    /**
+     * Упреждающее обновление головных окон: горячая голова ленты не истекает под нагрузкой
+     */
+    @Scheduled(fixedDelayString = "${app.feed.refresh-check-ms:30000}")
+    public void refreshHeadWindows() {
+        Cache cache = cache();
+        long now = System.currentTimeMillis();
+        headLoadedAt.forEach((key, loadedAt) -> {
+            if (cache.get(key) == null) {
+                // окно истекло или сброшено: следующий запрос загрузит его сам
+                headLoadedAt.remove(key, loadedAt);
+                return;
+            }
+            if (now - loadedAt < refreshAheadMs) {
+                return;
+            }
+            cacheLoadCoalescer.loadAsync(PinCacheInvalidator.EXTENDED_PINS_CACHE, key, () -> loadAndCache(key),
+                            cacheRefreshExecutor)
+                    .whenComplete((page, error) -> {
+                        String result = error == null ? "success" : "failure";
+                        meterRegistry.counter("cache.refresh.ahead", "cache", PinCacheInvalidator.EXTENDED_PINS_CACHE,
+                                "result", result).increment();
+                        if (error != null) {
+                            logger.warn("Не удалось обновить окно ленты {}: {}", key, error.getMessage());
+                        }
+                    });
+        });
+    }
+
+    private FeedPage loadAndCache(FeedWindowKey key) {
+        long loadGeneration = pinCacheInvalidator.generation();
+        FeedPage page = loadWindow(key.getCursorId(), key.getSize(), key.isDescending());
+        // Окно помечается id своих пинов для точечной инвалидации
+        pinCacheInvalidator.put(PinCacheInvalidator.EXTENDED_PINS_CACHE, key, page,
+                page.getItems().stream().map(PinSnapshot::getId).collect(Collectors.toList()), loadGeneration);
+        if (key.isHead()) {
+            headLoadedAt.put(key, System.currentTimeMillis());
+        }
+        return page;
+    }
+
+    private Cache cache() {
+        return extendedPinCacheManager.getCache(PinCacheInvalidator.EXTENDED_PINS_CACHE);
+    }
+
+    private FeedPage loadWindow(Long cursorId, int pageSize, boolean descending) {
+        List<PinCardView> raw = fetchFeedCards(cursorId, descending, pageSize + 1);
+        boolean hasNext = raw.size() > pageSize;
+        List<PinCardView> pageList = new ArrayList<>(hasNext ? raw.subList(0, pageSize) : raw);
+        List<PinSnapshot> items = pinEnrichmentService.enrichCards(pageList, null).stream()
+                .map(PinSnapshot::of)
+                .collect(Collectors.toUnmodifiableList());
+        Long nextCursor = hasNext ? pageList.get(pageList.size() - 1).getId() : null;
+        boolean hasPrevious = cursorId != null;
+        return new FeedPage(items, nextCursor, hasPrevious ? cursorId : null, hasNext, hasPrevious, pageSize);
+    }
+
+    /**
+     * Страница карточек ленты через лёгкую проекцию, без загрузки коллекций лайков и комментариев
+     */
+    private List<PinCardView> fetchFeedCards(Long cursorId, boolean descending, int fetchSize) {
+        PageRequest pageReq = PageRequest.of(0, fetchSize);
+        if (descending) {
+            return cursorId == null
+                    ? pinRepository.findFeedCardsDesc(pageReq)
+                    : pinRepository.findFeedCardsBefore(cursorId, pageReq);
+        }
+        return cursorId == null
+                ? pinRepository.findFeedCardsAsc(pageReq)
+                : pinRepository.findFeedCardsAfter(cursorId, pageReq);
+    }
+}
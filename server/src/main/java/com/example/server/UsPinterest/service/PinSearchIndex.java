@@ -0,0 +1,258 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.event.PinCreatedEvent;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Полнотекстовый поиск пинов по колонке pins.search_vector (GIN-индекс idx_pins_search_vector).
+ * Вектор взвешен: заголовок A, теги B, место C, описание D. Конфигурация russian разбирает
+ * кириллицу русским стеммером, а латиницу — английским (asciiword в ней отображён на english_stem),
+ * поэтому один вектор покрывает оба языка без дублирования лексем.
+ * Вектор пересчитывается после коммита создания или изменения пина, строки без вектора
+ * (старые данные, пропущенные пересчёты) дозаполняются по расписанию через пул обслуживания.
+ */
+@Service
+public class PinSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinSearchIndex.class);
+
+    public static final String CONFIG = "russian";
+
+    private static final String REFRESH_SQL =
+            "UPDATE pins p SET search_vector = " +
+            "setweight(to_tsvector('" + CONFIG + "', coalesce(p.title, '')), 'A') || " +
+            "setweight(to_tsvector('" + CONFIG + "', s.tags), 'B') || " +
+            "setweight(to_tsvector('" + CONFIG + "', s.place), 'C') || " +
+            "setweight(to_tsvector('" + CONFIG + "', coalesce(p.description, '')), 'D') " +
+            "FROM (SELECT x.id, " +
+            "coalesce((SELECT string_agg(t.name, ' ') FROM pin_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.pin_id = x.id), '') AS tags, " +
+            "coalesce((SELECT string_agg(l.nameplace, ' ') FROM locations l WHERE l.pin_id = x.id), '') AS place " +
+            "FROM pins x WHERE %s) s WHERE p.id = s.id";
+
+    private static final String TAG_FILTER =
+            " AND EXISTS (SELECT 1 FROM pin_tags pt JOIN tags t ON t.id = pt.tag_id " +
+            "WHERE pt.pin_id = p.id AND lower(t.name) IN (%s))";
+
+    // Поля сортировки выдачи без запроса: имя из API — столбец pins (в SQL только значения из этой таблицы)
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "p.createdAt",
+            "id", "p.id",
+            "title", "p.title",
+            "likesCount", "p.likes_count",
+            "commentsCount", "p.comments_count");
+
+    /**
+     * Найденный пин: id и релевантность (0 для выборки без запроса)
+     */
+    public record Hit(long id, float rank) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate maintenanceJdbcTemplate;
+    private final TransactionTemplate refreshTransaction;
+    private final MeterRegistry meterRegistry;
+    private final Executor maintenanceExecutor;
+    // проход уже стоит в очереди или выполняется: следующий тик планировщика его не дублирует
+    private final AtomicBoolean backfillQueued = new AtomicBoolean();
+
+    @Value("${app.search.backfill-batch-size:1000}")
+    private int backfillBatchSize;
+
+    public PinSearchIndex(JdbcTemplate jdbcTemplate,
+                          @Qualifier("maintenanceDataSource") DataSource maintenanceDataSource,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Qualifier("maintenanceExecutor") Executor maintenanceExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maintenanceJdbcTemplate = new JdbcTemplate(maintenanceDataSource);
+        // слушатели после коммита всё ещё привязаны к завершённой транзакции: пересчёт идёт в новой
+        this.refreshTransaction = new TransactionTemplate(transactionManager);
+        this.refreshTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinCreated(PinCreatedEvent event) {
+        refresh(event.getPin().getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinUpdated(PinUpdatedEvent event) {
+        refresh(event.getPin().getId());
+    }
+
+    /**
+     * Пересчитывает вектор одного пина; ошибка не откатывает уже закоммиченное изменение
+     */
+    public void refresh(Long pinId) {
+        if (pinId == null) {
+            return;
+        }
+        try {
+            refreshTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.update(String.format(REFRESH_SQL, "x.id = ?"), pinId));
+        } catch (DataAccessException e) {
+            meterRegistry.counter("search.index.errors").increment();
+            logger.warn("Не удалось обновить поисковый вектор пина {}: {}", pinId, e.getMessage());
+        }
+    }
+
+    /**
+     * Планировщик только ставит дозаполнение в очередь обслуживания: проход по таблице не занимает его поток
+     */
+    @Scheduled(initialDelayString = "${app.search.backfill-initial-delay-ms:10000}",
+            fixedDelayString = "${app.search.backfill-interval-ms:300000}")
+    public void scheduleBackfill() {
+        if (!backfillQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            maintenanceExecutor.execute(() -> {
+                try {
+                    backfill();
+                } finally {
+                    backfillQueued.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backfillQueued.set(false);
+            logger.debug("Очередь задач обслуживания заполнена, дозаполнение векторов отложено");
+        }
+    }
+
+    /**
+     * Дозаполняет вектор у пинов, где его нет, пачками по backfill-batch-size
+     */
+    public void backfill() {
+        String sql = String.format(REFRESH_SQL,
+                "x.id IN (SELECT id FROM pins WHERE search_vector IS NULL ORDER BY id LIMIT ?)");
+        long total = 0;
+        try {
+            int updated;
+            do {
+                updated = maintenanceJdbcTemplate.update(sql, backfillBatchSize);
+                total += updated;
+            } while (updated >= backfillBatchSize);
+        } catch (DataAccessException e) {
+            meterRegistry.counter("search.index.errors").increment();
+            logger.warn("Дозаполнение поисковых векторов прервано: {}", e.getMessage());
+        }
+        if (total > 0) {
+            meterRegistry.counter("search.index.backfilled").increment(total);
+            logger.info("Поисковые векторы дозаполнены у {} пинов", total);
+        }
+    }
+
+    /**
+     * Страница по релевантности с keyset-продолжением после (afterRank, afterId).
+     * Без запроса — все пины (или пины с тегами) по убыванию id, продолжение после afterId
+     */
+    public List<Hit> search(String query, Collection<String> tags, Float afterRank, Long afterId, int offset, int limit) {
+        List<Object> args = new ArrayList<>();
+        String tagFilter = tagFilter(tags, args);
+        String sql;
+        if (hasText(query)) {
+            args.add(0, query);
+            String keyset = "";
+            if (afterRank != null && afterId != null) {
+                keyset = " WHERE r.rank < ? OR (r.rank = ? AND r.id < ?)";
+                Collections.addAll(args, afterRank, afterRank, afterId);
+            }
+            sql = "SELECT r.id, r.rank FROM (SELECT p.id, ts_rank(p.search_vector, q.query) AS rank " +
+                    "FROM pins p CROSS JOIN websearch_to_tsquery('" + CONFIG + "', ?) AS q(query) " +
+                    "WHERE p.search_vector @@ q.query" + tagFilter + ") r" + keyset +
+                    " ORDER BY r.rank DESC, r.id DESC LIMIT ? OFFSET ?";
+        } else {
+            String keyset = "";
+            if (afterId != null) {
+                keyset = " AND p.id < ?";
+                args.add(afterId);
+            }
+            sql = "SELECT p.id, 0 AS rank FROM pins p WHERE TRUE" + tagFilter + keyset +
+                    " ORDER BY p.id DESC LIMIT ? OFFSET ?";
+        }
+        args.add(limit);
+        args.add(offset);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Hit(rs.getLong(1), rs.getFloat(2)), args.toArray());
+    }
+
+    /**
+     * Постраничная выборка без запроса в заданном порядке (sortBy/sortDirection API поиска).
+     * Неизвестное поле сортировки — по дате создания; при равенстве порядок по id
+     */
+    public List<Hit> browse(Collection<String> tags, String sortBy, String sortDirection, int offset, int limit) {
+        List<Object> args = new ArrayList<>();
+        String tagFilter = tagFilter(tags, args);
+        String column = SORT_COLUMNS.getOrDefault(sortBy != null ? sortBy : "", "p.createdAt");
+        String direction = "asc".equalsIgnoreCase(sortDirection) ? "ASC" : "DESC";
+        args.add(limit);
+        args.add(offset);
+        String sql = "SELECT p.id, 0 AS rank FROM pins p WHERE TRUE" + tagFilter +
+                " ORDER BY " + column + " " + direction + " NULLS LAST, p.id " + direction + " LIMIT ? OFFSET ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Hit(rs.getLong(1), rs.getFloat(2)), args.toArray());
+    }
+
+    /**
+     * Число совпадений для постраничного режима
+     */
+    public long count(String query, Collection<String> tags) {
+        List<Object> args = new ArrayList<>();
+        String tagFilter = tagFilter(tags, args);
+        String sql;
+        if (hasText(query)) {
+            args.add(0, query);
+            sql = "SELECT count(*) FROM pins p WHERE p.search_vector @@ websearch_to_tsquery('" + CONFIG + "', ?)" + tagFilter;
+        } else {
+            sql = "SELECT count(*) FROM pins p WHERE TRUE" + tagFilter;
+        }
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args.toArray());
+        return count != null ? count : 0;
+    }
+
+    private static String tagFilter(Collection<String> tags, List<Object> args) {
+        Set<String> names = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null && !tag.isBlank()) {
+                    names.add(tag.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return "";
+        }
+        args.addAll(names);
+        return String.format(TAG_FILTER, String.join(", ", Collections.nCopies(names.size(), "?")));
+    }
+
+    private static boolean hasText(String query) {
+        return query != null && !query.isBlank();
+    }
+}
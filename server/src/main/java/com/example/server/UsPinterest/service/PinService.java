@@ -4,31 +4,25 @@ import com.example.server.UsPinterest.dto.MessageResponse;
 import com.example.server.UsPinterest.dto.PageResponse;
 import com.example.server.UsPinterest.dto.PinRequest;
 import com.example.server.UsPinterest.dto.PinResponse;
-import com.example.server.UsPinterest.dto.PinFullHdResponse;
-import com.example.server.UsPinterest.dto.PinThumbnailResponse;
+import com.example.server.UsPinterest.dto.PinSnapshot;
+import com.example.server.UsPinterest.event.PinDeletedEvent;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
 import com.example.server.UsPinterest.exception.ResourceNotFoundException;
 import com.example.server.UsPinterest.model.Board;
-import com.example.server.UsPinterest.entity.Like;
 import com.example.server.UsPinterest.model.Pin;
 import com.example.server.UsPinterest.model.User;
-import com.example.server.UsPinterest.repository.LikeRepository;
 import com.example.server.UsPinterest.repository.PinRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import io.micrometer.core.annotation.Timed;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,8 +32,6 @@ import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.nio.file.Path;
 import com.example.server.UsPinterest.repository.CommentRepository;
-import com.example.server.UsPinterest.dto.CursorPageResponse;
-import com.example.server.UsPinterest.service.PaginationService;
 import java.net.URL;
 import com.drew.imaging.ImageMetadataReader;
 import com.drew.metadata.Metadata;
@@ -52,9 +44,6 @@ import java.io.FileInputStream;
 import java.nio.file.Files;
 import net.coobird.thumbnailator.Thumbnails;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
-import com.example.server.UsPinterest.dto.mapper.PinStructMapper;
-import com.example.server.UsPinterest.dto.mapper.PinFullHdStructMapper;
-import com.example.server.UsPinterest.dto.mapper.PinThumbnailStructMapper;
 import org.springframework.context.ApplicationEventPublisher;
 import lombok.RequiredArgsConstructor;
 import com.example.server.UsPinterest.service.ImageProcessor;
@@ -74,40 +63,34 @@ public class PinService {
 
     private final UserRepository userRepository;
 
-    private final LikeRepository likeRepository;
-
     private final FileStorageService fileStorageService;
 
     private final CommentRepository commentRepository;
 
-    private final PaginationService paginationService;
-
-    private final PinStructMapper pinStructMapper;
-
-    private final PinFullHdStructMapper pinFullHdStructMapper;
-
-    private final PinThumbnailStructMapper pinThumbnailStructMapper;
-
     private final ApplicationEventPublisher eventPublisher;
 
     private final ImageProcessor imageProcessor;
 
-    @Cacheable(value = "pins", key = "#id")
-    public Optional<Pin> getPinById(Long id) {
-        logger.debug("Загрузка пина с ID {} из базы данных", id);
-        return pinRepository.findById(id);
-    }
+    private final PinEnrichmentService pinEnrichmentService;
+
+    private final ContentCountsService contentCountsService;
 
-    @Cacheable(value = "pins", key = "'board_' + #boardId")
-    public List<Pin> getPinsByBoardId(Long boardId) {
-        logger.debug("Загрузка пинов для доски с ID {}", boardId);
-        return pinRepository.findByBoardId(boardId);
+    private final SnapshotCacheService snapshotCacheService;
+
+    public Optional<PinSnapshot> getPinById(Long id) {
+        return snapshotCacheService.getPinCard(id);
     }
 
-    @CacheEvict(value = "pins", allEntries = true)
     public void deletePin(Long id) {
         logger.info("Удаление пина с ID {}", id);
-        pinRepository.deleteById(id);
+        pinRepository.findById(id).ifPresent(pin -> {
+            pinRepository.delete(pin);
+            eventPublisher.publishEvent(new PinDeletedEvent(
+                    id,
+                    pin.getUser() != null ? pin.getUser().getId() : null,
+                    pin.getUser() != null ? pin.getUser().getUsername() : null,
+                    pin.getBoard() != null ? pin.getBoard().getId() : null));
+        });
     }
 
     public PageResponse<Pin> getPins(String search, int pageNo, int pageSize) {
@@ -196,7 +179,6 @@ public class PinService {
         }
     }
 
-    @CacheEvict(value = "pins", allEntries = true)
     public Pin createPin(PinRequest pinRequest, String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
@@ -223,72 +205,6 @@ public class PinService {
         return savedPin;
     }
 
-    @Cacheable(value = "pins", key = "'user_' + #username")
-    public List<Pin> getPinsByUser(String username) {
-        return pinRepository.findByUserUsername(username);
-    }
-
-    @Transactional
-    @CacheEvict(value = {"pins", "search"}, allEntries = true)
-    public Map<String, Object> likePin(Long pinId, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-        Pin pin = pinRepository.findById(pinId)
-                .orElseThrow(() -> new ResourceNotFoundException("Пин не найден"));
-
-        Optional<Like> likeOptional = likeRepository.findByPinAndUser(pin, user);
-        Map<String, Object> responseMap = new HashMap<>();
-
-        if (likeOptional.isPresent()) {
-            responseMap.put("message", "Лайк уже существует");
-            responseMap.put("liked", true);
-            responseMap.put("likesCount", pin.getLikesCount());
-            return responseMap;
-        }
-
-        Like like = new Like();
-        like.setUser(user);
-        like.setPin(pin);
-        like.setCreatedAt(LocalDateTime.now());
-        likeRepository.save(like);
-        int totalLikes = likeRepository.countByPinId(pinId);
-        pin.setLikesCount(totalLikes);
-        pinRepository.save(pin);
-        responseMap.put("message", "Лайк поставлен");
-        responseMap.put("liked", true);
-        responseMap.put("likesCount", totalLikes);
-        return responseMap;
-    }
-
-    @Transactional
-    @CacheEvict(value = {"pins", "search"}, allEntries = true)
-    public Map<String, Object> unlikePin(Long pinId, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
-        Pin pin = pinRepository.findById(pinId)
-                .orElseThrow(() -> new ResourceNotFoundException("Пин не найден"));
-
-        Optional<Like> likeOptional = likeRepository.findByPinAndUser(pin, user);
-        Map<String, Object> responseMap = new HashMap<>();
-
-        if (likeOptional.isPresent()) {
-            likeRepository.delete(likeOptional.get());
-            int totalLikes = likeRepository.countByPinId(pinId);
-            pin.setLikesCount(totalLikes);
-            pinRepository.save(pin);
-            responseMap.put("message", "Лайк удалён");
-            responseMap.put("liked", false);
-            responseMap.put("likesCount", totalLikes);
-            return responseMap;
-        }
-
-        responseMap.put("message", "Лайк не найден");
-        responseMap.put("liked", false);
-        responseMap.put("likesCount", pin.getLikesCount());
-        return responseMap;
-    }
-
-    @CacheEvict(value = {"pins", "search"}, allEntries = true)
     public String updatePinImageUrl(Pin pin) {
         if (pin == null || pin.getImageUrl() == null) {
             return null;
@@ -301,6 +217,7 @@ public class PinService {
             if (!imageUrl.equals(updatedImageUrl)) {
                 pin.setImageUrl(updatedImageUrl);
                 pinRepository.save(pin);
+                eventPublisher.publishEvent(new PinUpdatedEvent(pin));
             }
 
             return updatedImageUrl;
@@ -310,199 +227,29 @@ public class PinService {
         }
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public PinResponse convertToPinResponse(Pin pin, User currentUser) {
-        // Базовое маппирование статических полей через MapStruct
-        PinResponse response = pinStructMapper.toDto(pin);
-
-        // Обновляем URL картинки
-        if (pin.getImageUrl() != null && !pin.getImageUrl().isEmpty()) {
-            response.setImageUrl(fileStorageService.updateImageUrl(pin.getImageUrl()));
-        }
-
-        // Подсчитываем и устанавливаем статистику
-        response.setLikesCount(pin.getLikesCount() != null ? pin.getLikesCount() : 0);
-        long commentCount = commentRepository.countByPinId(pin.getId());
-        response.setCommentsCount((int) commentCount);
-
-        // Проверяем, лайкнул ли текущий пользователь
-        boolean isLiked = currentUser != null && pin.getLikes().stream()
-                .anyMatch(like -> like.getUser() != null && currentUser.getId().equals(like.getUser().getId()));
-        response.setIsLikedByCurrentUser(isLiked);
-
-        // Устанавливаем соотношение сторон
-        Integer w = pin.getImageWidth(), h = pin.getImageHeight();
-        response.setAspectRatio(w != null && h != null && h > 0 ? w.doubleValue() / h : 1.0);
-
-        return response;
-    }
-
-    @Cacheable(cacheManager = "extendedPinCacheManager", value = "extended_pins", key = "'cursor_lt_' + #cursorId + '_' + #limit")
-    public List<Pin> findPinsLessThan(Long cursorId, int limit) {
-        return pinRepository.findByIdLessThanOrderByIdDesc(cursorId, PageRequest.of(0, limit));
+        // Статические поля, счётчики, картинки и локация собираются пакетным обогащением
+        return pinEnrichmentService.enrich(pin, currentUser);
     }
 
-    @Cacheable(cacheManager = "extendedPinCacheManager", value = "extended_pins", key = "'cursor_gt_' + #cursorId + '_' + #limit")
-    public List<Pin> findPinsGreaterThan(Long cursorId, int limit) {
-        return pinRepository.findByIdGreaterThanOrderByIdAsc(cursorId, PageRequest.of(0, limit));
+    @Transactional(readOnly = true)
+    public List<PinResponse> convertToPinResponses(List<Pin> pins, User currentUser) {
+        return pinEnrichmentService.enrich(pins, currentUser);
     }
 
     public long count() {
-        return pinRepository.count();
+        return contentCountsService.getTotalPins();
     }
 
     @Transactional(readOnly = true)
-    public Pin getPinWithLikesAndComments(Long pinId) {
-        // Подгружаем пин вместе с лайками и комментариями через EntityGraph
+    public Pin getPinEntity(Long pinId) {
+        // Коллекции лайков и комментариев не подгружаем: агрегаты и превью собираются проекциями
         return pinRepository.findById(pinId)
                 .orElseThrow(() -> new ResourceNotFoundException("Пин не найден с id: " + pinId));
     }
 
 
-    @Cacheable(cacheManager = "extendedPinCacheManager", value = "extended_pins", key = "'cursorPage_' + #cursor + '_' + #size + '_' + #sortDirection")
-    @Transactional(readOnly = true)
-    public CursorPageResponse<PinResponse, String> getPinsCursor(String cursor, int size, String sortDirection) {
-        // Декодируем курсор и определяем fetchSize, направление сортировки
-        Long cursorId = paginationService.decodeCursor(cursor, Long.class);
-        boolean isDesc = sortDirection == null || !sortDirection.equalsIgnoreCase("asc");
-        int fetchSize = size > 0 ? size + 1 : DEFAULT_PAGE_SIZE + 1;
-
-        List<Pin> raw;
-        if (isDesc) {
-            if (cursorId == null) {
-                raw = pinRepository.findAll(PageRequest.of(0, fetchSize, Sort.by("id").descending())).getContent();
-            } else {
-                raw = pinRepository.findByIdLessThanOrderByIdDesc(cursorId, PageRequest.of(0, fetchSize));
-            }
-        } else {
-            if (cursorId == null) {
-                raw = pinRepository.findAll(PageRequest.of(0, fetchSize, Sort.by("id").ascending())).getContent();
-            } else {
-                raw = pinRepository.findByIdGreaterThanOrderByIdAsc(cursorId, PageRequest.of(0, fetchSize));
-            }
-        }
-
-        boolean hasNext = raw.size() > size;
-        if (hasNext) {
-            raw.remove(raw.size() - 1);
-        }
-
-        // Преобразуем в DTO
-        // Текущий пользователь на уровне контроллера
-        User currentUser = null;
-        List<PinResponse> content = raw.stream()
-                .map(pin -> convertToPinResponse(pin, currentUser))
-                .collect(Collectors.toList());
-
-        // Генерация курсоров
-        String nextCursor = hasNext ? paginationService.encodeCursor(raw.get(raw.size() - 1).getId()) : null;
-        boolean hasPrevious = cursorId != null;
-        String prevCursor = hasPrevious ? paginationService.encodeCursor(cursorId) : null;
-
-        // Общее число элементов
-        long totalElements = pinRepository.count();
-
-        return paginationService.createCursorPageResponse(
-                content,
-                nextCursor,
-                prevCursor,
-                hasNext,
-                hasPrevious,
-                size,
-                totalElements
-        );
-    }
-
-    // Новый метод: получение FullHD изображений пинов с курсорной пагинацией
-    @Cacheable(cacheManager = "extendedPinCacheManager", value = "extended_pins", key = "'cursorFullhd_' + #cursor + '_' + #size + '_' + #sortDirection")
-    @Transactional(readOnly = true)
-    public CursorPageResponse<PinFullHdResponse, String> getPinsFullhdCursor(String cursor, int size, String sortDirection) {
-        Long cursorId = paginationService.decodeCursor(cursor, Long.class);
-        boolean isDesc = sortDirection == null || !sortDirection.equalsIgnoreCase("asc");
-        int fetchSize = size > 0 ? size + 1 : DEFAULT_PAGE_SIZE + 1;
-        List<Pin> raw;
-        if (isDesc) {
-            if (cursorId == null) {
-                raw = pinRepository.findAll(PageRequest.of(0, fetchSize, Sort.by("id").descending())).getContent();
-            } else {
-                raw = pinRepository.findByIdLessThanOrderByIdDesc(cursorId, PageRequest.of(0, fetchSize));
-            }
-        } else {
-            if (cursorId == null) {
-                raw = pinRepository.findAll(PageRequest.of(0, fetchSize, Sort.by("id").ascending())).getContent();
-            } else {
-                raw = pinRepository.findByIdGreaterThanOrderByIdAsc(cursorId, PageRequest.of(0, fetchSize));
-            }
-        }
-        boolean hasNext = raw.size() > size;
-        if (hasNext) raw.remove(raw.size() - 1);
-        List<PinFullHdResponse> content = raw.stream()
-                .map(pin -> {
-                    // MapStruct-меппинг основного DTO
-                    PinFullHdResponse dto = pinFullHdStructMapper.toDto(pin);
-                    // Обновляем URL и aspectRatio
-                    if (dto.getFullhdImageUrl() != null && !dto.getFullhdImageUrl().isEmpty()) {
-                        dto.setFullhdImageUrl(fileStorageService.updateImageUrl(dto.getFullhdImageUrl()));
-                    }
-                    Integer w = pin.getImageWidth(), h = pin.getImageHeight();
-                    dto.setAspectRatio(w != null && h != null && h > 0 ? w.doubleValue() / h : 1.0);
-                    return dto;
-                }).collect(Collectors.toList());
-        String nextCursor = hasNext ? paginationService.encodeCursor(raw.get(raw.size() - 1).getId()) : null;
-        boolean hasPrevious = cursorId != null;
-        String prevCursor = hasPrevious ? paginationService.encodeCursor(cursorId) : null;
-        long totalElements = pinRepository.count();
-        return paginationService.createCursorPageResponse(
-                content,
-                nextCursor,
-                prevCursor,
-                hasNext,
-                hasPrevious,
-                size,
-                totalElements
-        );
-    }
-
-    // Новый метод: получение миниатюр WebP изображений пинов с курсорной пагинацией
-    @Cacheable(cacheManager = "extendedPinCacheManager", value = "extended_pins", key = "'cursorThumbnail_' + #cursor + '_' + #size + '_' + #sortDirection")
-    @Transactional(readOnly = true)
-    public CursorPageResponse<PinThumbnailResponse, String> getPinsThumbnailCursor(String cursor, int size, String sortDirection) {
-        Long cursorId = paginationService.decodeCursor(cursor, Long.class);
-        boolean isDesc = sortDirection == null || !sortDirection.equalsIgnoreCase("asc");
-        int fetchSize = size > 0 ? size + 1 : DEFAULT_PAGE_SIZE + 1;
-        List<Pin> raw;
-        if (isDesc) {
-            if (cursorId == null) {
-                raw = pinRepository.findAll(PageRequest.of(0, fetchSize, Sort.by("id").descending())).getContent();
-            } else {
-                raw = pinRepository.findByIdLessThanOrderByIdDesc(cursorId, PageRequest.of(0, fetchSize));
-            }
-        } else {
-            if (cursorId == null) {
-                raw = pinRepository.findAll(PageRequest.of(0, fetchSize, Sort.by("id").ascending())).getContent();
-            } else {
-                raw = pinRepository.findByIdGreaterThanOrderByIdAsc(cursorId, PageRequest.of(0, fetchSize));
-            }
-        }
-        boolean hasNext = raw.size() > size;
-        if (hasNext) raw.remove(raw.size() - 1);
-        List<PinThumbnailResponse> content = raw.stream()
-                .map(pin -> {
-                    PinThumbnailResponse dto = pinThumbnailStructMapper.toDto(pin);
-                    if (dto.getThumbnailImageUrl() != null && !dto.getThumbnailImageUrl().isEmpty()) {
-                        dto.setThumbnailImageUrl(fileStorageService.updateImageUrl(dto.getThumbnailImageUrl()));
-                    }
-                    Integer w2 = pin.getImageWidth(), h2 = pin.getImageHeight();
-                    dto.setAspectRatio(w2 != null && h2 != null && h2 > 0 ? w2.doubleValue() / h2 : 1.0);
-                    return dto;
-                }).collect(Collectors.toList());
-        String nextCursor2 = hasNext ? paginationService.encodeCursor(raw.get(raw.size() - 1).getId()) : null;
-        boolean hasPrev2 = cursorId != null;
-        String prevCursor2 = hasPrev2 ? paginationService.encodeCursor(cursorId) : null;
-        long totalEl = pinRepository.count();
-        return paginationService.createCursorPageResponse(content, nextCursor2, prevCursor2, hasNext, hasPrev2, size, totalEl);
-    }
-
     @Transactional
     @CacheEvict(value = {"pins", "search"}, allEntries = true)
     public void recalcImageDimensionsForAllPins() {
@@ -0,0 +1,79 @@
+package com.example.server.UsPinterest.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Разбор текста пина и поискового запроса на термы: слова в нижнем регистре, ё → е,
+ * кириллица через {@link RussianStemmer}, латиница — снятие множественного числа.
+ * Предлоги и союзы отбрасываются: в запросе все термы обязательны.
+ */
+public final class PinTextAnalyzer {
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "на", "по", "из", "за", "от", "до", "для", "не", "что", "как", "это", "или", "со", "во", "об", "же",
+            "the", "and", "for", "with", "of", "in", "on", "to", "an", "is", "at", "or");
+
+    private PinTextAnalyzer() {
+    }
+
+    /**
+     * Основы слов текста по порядку, с повторами
+     */
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c == 'Ё' || c == 'ё' ? 'е' : Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                if (token.length() >= MIN_TOKEN_LENGTH && token.length() <= MAX_TOKEN_LENGTH
+                        && !STOP_WORDS.contains(token.toString())) {
+                    terms.add(stem(token.toString()));
+                }
+                token.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    static String stem(String token) {
+        boolean cyrillic = false;
+        boolean latin = true;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (Character.UnicodeBlock.of(c) == Character.UnicodeBlock.CYRILLIC) {
+                cyrillic = true;
+            }
+            if (c < 'a' || c > 'z') {
+                latin = false;
+            }
+        }
+        if (cyrillic) {
+            return RussianStemmer.stem(token);
+        }
+        return latin ? stripPlural(token) : token;
+    }
+
+    private static String stripPlural(String token) {
+        int n = token.length();
+        if (n > 4 && token.endsWith("ies") && !token.endsWith("eies") && !token.endsWith("aies")) {
+            return token.substring(0, n - 3) + "y";
+        }
+        if (n > 3 && token.endsWith("es") && !token.endsWith("aes") && !token.endsWith("ees") && !token.endsWith("oes")) {
+            return token.substring(0, n - 1);
+        }
+        if (n > 3 && token.endsWith("s") && !token.endsWith("us") && !token.endsWith("ss")) {
+            return token.substring(0, n - 1);
+        }
+        return token;
+    }
+}
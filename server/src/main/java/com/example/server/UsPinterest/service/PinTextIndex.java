@@ -0,0 +1,784 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.CacheInvalidationMessage;
+import com.example.server.UsPinterest.event.PinCreatedEvent;
+import com.example.server.UsPinterest.event.PinDeletedEvent;
+import com.example.server.UsPinterest.event.PinLikesChangedEvent;
+import com.example.server.UsPinterest.event.PinUpdatedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс пинов в памяти узла: заголовок, описание, теги и место.
+ * Списки вхождений терма хранятся сжатыми (дельты номеров документов и частоты в varint),
+ * новые вхождения копятся в хвосте int[] и периодически дожимаются в сжатую часть.
+ * Ранжирование: BM25 по взвешенным полям плюс вклад лайков и свежести.
+ * Строится при старте чтением пинов диапазонами id, затем поддерживается событиями пинов
+ * (свои — из слушателей, чужих узлов — из шины инвалидации). Проверка согласованности
+ * периодически сверяет индекс с БД; при большом числе удалённых документов индекс перестраивается.
+ */
+@Service
+public class PinTextIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinTextIndex.class);
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 2;
+    private static final int PLACE_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // терм фильтра по тегу: точное имя тега, анализатор таких термов не порождает
+    private static final String TAG_PREFIX = "#";
+    private static final String TAG_SEPARATOR = "\u001f";
+    private static final int DRAIN_BATCH = 500;
+    private static final long HOUR_MS = 3_600_000L;
+
+    private static final String DOCUMENT_SELECT =
+            "SELECT p.id, p.title, p.description, p.likes_count, p.createdAt, " +
+            "(SELECT string_agg(t.name, chr(31) ORDER BY t.name) FROM pin_tags pt JOIN tags t ON t.id = pt.tag_id WHERE pt.pin_id = p.id), " +
+            "(SELECT string_agg(l.nameplace, ' ' ORDER BY l.id) FROM locations l WHERE l.pin_id = p.id) " +
+            "FROM pins p ";
+
+    private static final RowMapper<Document> DOCUMENT_MAPPER = (rs, rowNum) -> {
+        Timestamp createdAt = rs.getTimestamp(5);
+        return new Document(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                createdAt != null ? createdAt.getTime() : 0L, rs.getString(6), rs.getString(7));
+    };
+
+    /**
+     * Страница найденных пинов и общее число совпадений
+     */
+    public record Result(List<PinSearchIndex.Hit> hits, long total) {
+    }
+
+    record Document(long pinId, String title, String description, int likes, long createdAt, String tags, String place) {
+        int contentHash() {
+            return Objects.hash(title, description, tags, place);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate maintenanceJdbcTemplate;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+
+    private volatile Index index;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+
+    @Value("${app.search.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.search.index.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.search.index.likes-weight:0.3}")
+    private double likesWeight;
+
+    @Value("${app.search.index.recency-weight:1.0}")
+    private double recencyWeight;
+
+    @Value("${app.search.index.recency-half-life-days:30}")
+    private double recencyHalfLifeDays;
+
+    public PinTextIndex(JdbcTemplate jdbcTemplate,
+                        @Qualifier("maintenanceDataSource") DataSource maintenanceDataSource,
+                        @Qualifier("searchIndexExecutor") Executor executor,
+                        CacheInvalidationBus bus,
+                        MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maintenanceJdbcTemplate = new JdbcTemplate(maintenanceDataSource);
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("search.index.documents", this, s -> {
+            Index current = s.index;
+            return current != null ? current.liveCount : 0;
+        });
+        bus.register(CacheInvalidationMessage.Type.PIN_CREATED, m -> markDirty(m.getPinId()));
+        bus.register(CacheInvalidationMessage.Type.PIN_CHANGED, m -> markDirty(m.getPinId()));
+        bus.register(CacheInvalidationMessage.Type.PIN_LIKES,
+                m -> updateLikes(m.getPinId(), m.getLikesCount() != null ? m.getLikesCount() : 0));
+        // сообщения могли потеряться: индекс перечитывается целиком
+        bus.onResync(this::scheduleRebuild);
+    }
+
+    public boolean isReady() {
+        return enabled && index != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            scheduleRebuild();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinCreated(PinCreatedEvent event) {
+        markDirty(event.getPin().getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinUpdated(PinUpdatedEvent event) {
+        markDirty(event.getPin().getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPinDeleted(PinDeletedEvent event) {
+        markDirty(event.getPinId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLikesChanged(PinLikesChangedEvent event) {
+        updateLikes(event.getPinId(), event.getLikesCount());
+    }
+
+    /**
+     * Поиск по индексу: все термы запроса обязательны, теги (если заданы) сужают выдачу.
+     * null — запрос не разобрался на термы или индекс не готов, искать нужно в БД
+     */
+    public Result search(String query, Collection<String> tags, Float afterRank, Long afterId, int offset, int limit) {
+        Index current = index;
+        if (!enabled || current == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(PinTextAnalyzer.terms(query)));
+        if (terms.isEmpty()) {
+            return null;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            current.lock.readLock().lock();
+            try {
+                return current.search(terms, tagTerms(tags), afterRank, afterId, offset, limit,
+                        System.currentTimeMillis() / HOUR_MS * HOUR_MS);
+            } finally {
+                current.lock.readLock().unlock();
+            }
+        } finally {
+            sample.stop(meterRegistry.timer("search.index.query"));
+        }
+    }
+
+    /**
+     * Планировщик только ставит сверку в searchIndexExecutor: полный проход по pins не занимает его поток,
+     * а пополнения индекса, пришедшие во время сверки, применяются следом за ней
+     */
+    @Scheduled(initialDelayString = "${app.search.index.check-interval-ms:3600000}",
+            fixedDelayString = "${app.search.index.check-interval-ms:3600000}")
+    public void scheduleConsistencyCheck() {
+        if (!enabled || !checkScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    checkConsistency();
+                } finally {
+                    checkScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            checkScheduled.set(false);
+            logger.warn("Проверка поискового индекса не запланирована: очередь заполнена");
+        }
+    }
+
+    /**
+     * Сверка с БД: пины с другим содержимым или отсутствующие в индексе переиндексируются,
+     * документы удалённых пинов убираются
+     */
+    public void checkConsistency() {
+        Index current = index;
+        if (!enabled || current == null) {
+            return;
+        }
+        if (current.garbage() > current.liveCount / 4 + 1000) {
+            logger.info("Поисковый индекс: {} удалённых документов из {}, перестроение", current.garbage(), current.docCount);
+            scheduleRebuild();
+            return;
+        }
+        BitSet seen = new BitSet();
+        int repaired = 0;
+        long lastId = 0;
+        try {
+            List<Document> chunk;
+            do {
+                chunk = maintenanceJdbcTemplate.query(DOCUMENT_SELECT + "WHERE p.id > ? ORDER BY p.id LIMIT ?",
+                        DOCUMENT_MAPPER, lastId, chunkSize);
+                current.lock.readLock().lock();
+                try {
+                    for (Document doc : chunk) {
+                        int docId = current.docsByPin.get(doc.pinId());
+                        if (docId >= 0) {
+                            seen.set(docId);
+                        }
+                        if (docId < 0 || current.hashes[docId] != doc.contentHash()) {
+                            markDirty(doc.pinId());
+                            repaired++;
+                        }
+                    }
+                } finally {
+                    current.lock.readLock().unlock();
+                }
+                if (!chunk.isEmpty()) {
+                    lastId = chunk.get(chunk.size() - 1).pinId();
+                }
+            } while (chunk.size() >= chunkSize);
+        } catch (DataAccessException e) {
+            logger.warn("Проверка поискового индекса прервана: {}", e.getMessage());
+            return;
+        }
+        // документы, которых нет в БД (или пины, созданные во время проверки: их перечитывание безвредно)
+        List<Long> stale = new ArrayList<>();
+        current.lock.readLock().lock();
+        try {
+            for (int docId = 0; docId < current.docCount; docId++) {
+                if (!current.deleted.get(docId) && !seen.get(docId)) {
+                    stale.add(current.pinIds[docId]);
+                }
+            }
+        } finally {
+            current.lock.readLock().unlock();
+        }
+        stale.forEach(this::markDirty);
+        repaired += stale.size();
+        if (repaired > 0) {
+            meterRegistry.counter("search.index.repaired").increment(repaired);
+            logger.warn("Поисковый индекс расходился с БД: {} пинов поставлено на переиндексацию", repaired);
+        }
+    }
+
+    private void updateLikes(Long pinId, int likesCount) {
+        Index current = index;
+        if (pinId == null || current == null) {
+            return;
+        }
+        // массивы заменяются только под блокировкой записи: под чтением ячейка стабильна, запись int атомарна
+        current.lock.readLock().lock();
+        try {
+            int docId = current.docsByPin.get(pinId);
+            if (docId >= 0) {
+                current.likes[docId] = likesCount;
+            }
+        } finally {
+            current.lock.readLock().unlock();
+        }
+    }
+
+    private void markDirty(Long pinId) {
+        if (!enabled || pinId == null) {
+            return;
+        }
+        dirty.add(pinId);
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+            }
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (!enabled || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildScheduled.set(false);
+            logger.warn("Перестроение поискового индекса не запланировано: очередь заполнена");
+        }
+    }
+
+    /**
+     * Выполняется в однопоточном searchIndexExecutor, как и drain: изменения, пришедшие во время
+     * построения, применяются к новому индексу после его публикации
+     */
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        Index built = new Index();
+        long lastId = 0;
+        try {
+            List<Document> chunk;
+            do {
+                chunk = maintenanceJdbcTemplate.query(DOCUMENT_SELECT + "WHERE p.id > ? ORDER BY p.id LIMIT ?",
+                        DOCUMENT_MAPPER, lastId, chunkSize);
+                for (Document doc : chunk) {
+                    built.add(doc);
+                }
+                if (!chunk.isEmpty()) {
+                    lastId = chunk.get(chunk.size() - 1).pinId();
+                }
+            } while (chunk.size() >= chunkSize);
+        } catch (DataAccessException e) {
+            logger.error("Не удалось построить поисковый индекс, поиск идёт через БД: {}", e.getMessage());
+            return;
+        }
+        built.pack();
+        index = built;
+        meterRegistry.counter("search.index.rebuilds").increment();
+        logger.info("Поисковый индекс построен: {} пинов, {} термов за {} мс",
+                built.liveCount, built.terms.size(), System.currentTimeMillis() - started);
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        Index current = index;
+        if (current == null) {
+            // индекс ещё не построен или не построился: при построении пины прочитаются из БД
+            dirty.clear();
+            return;
+        }
+        while (!dirty.isEmpty()) {
+            List<Long> batch = new ArrayList<>(DRAIN_BATCH);
+            Iterator<Long> it = dirty.iterator();
+            while (it.hasNext() && batch.size() < DRAIN_BATCH) {
+                batch.add(it.next());
+                it.remove();
+            }
+            List<Document> docs;
+            try {
+                docs = jdbcTemplate.query(DOCUMENT_SELECT + "WHERE p.id = ANY (?::bigint[])", DOCUMENT_MAPPER,
+                        batch.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}")));
+            } catch (DataAccessException e) {
+                // пропущенные пины исправит проверка согласованности
+                logger.warn("Не удалось переиндексировать {} пинов: {}", batch.size(), e.getMessage());
+                return;
+            }
+            Map<Long, Document> found = new HashMap<>();
+            docs.forEach(doc -> found.put(doc.pinId(), doc));
+            current.lock.writeLock().lock();
+            try {
+                for (Long pinId : batch) {
+                    Document doc = found.get(pinId);
+                    if (doc != null) {
+                        current.add(doc);
+                    } else {
+                        current.remove(pinId);
+                    }
+                }
+            } finally {
+                current.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static Set<String> tagTerms(Collection<String> tags) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null && !tag.isBlank()) {
+                    terms.add(TAG_PREFIX + tag.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Документы индекса живут в параллельных массивах по номеру документа; номер выдаётся
+     * по возрастанию, поэтому списки вхождений упорядочены без сортировки. Изменённый пин
+     * получает новый номер, старый помечается удалённым до перестроения.
+     */
+    private final class Index {
+
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<String, Postings> terms = new HashMap<>();
+        final LongIntMap docsByPin = new LongIntMap();
+        final BitSet deleted = new BitSet();
+
+        long[] pinIds = new long[1024];
+        int[] lengths = new int[1024];
+        int[] likes = new int[1024];
+        int[] hashes = new int[1024];
+        long[] createdAt = new long[1024];
+        int docCount;
+        int liveCount;
+        long totalLength;
+
+        void add(Document doc) {
+            remove(doc.pinId());
+            Map<String, int[]> frequencies = new HashMap<>();
+            int length = count(frequencies, doc.title(), TITLE_WEIGHT)
+                    + count(frequencies, doc.description(), DESCRIPTION_WEIGHT)
+                    + count(frequencies, doc.place(), PLACE_WEIGHT);
+            if (doc.tags() != null) {
+                for (String tag : doc.tags().split(TAG_SEPARATOR)) {
+                    length += count(frequencies, tag, TAG_WEIGHT);
+                    frequencies.putIfAbsent(TAG_PREFIX + tag.trim().toLowerCase(Locale.ROOT), new int[]{1});
+                }
+            }
+            int docId = docCount++;
+            if (docId == pinIds.length) {
+                int capacity = pinIds.length * 2;
+                pinIds = Arrays.copyOf(pinIds, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                likes = Arrays.copyOf(likes, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+                createdAt = Arrays.copyOf(createdAt, capacity);
+            }
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> new Postings()).append(docId, entry.getValue()[0]);
+            }
+            pinIds[docId] = doc.pinId();
+            lengths[docId] = length;
+            likes[docId] = doc.likes();
+            hashes[docId] = doc.contentHash();
+            createdAt[docId] = doc.createdAt();
+            docsByPin.put(doc.pinId(), docId);
+            liveCount++;
+            totalLength += length;
+        }
+
+        void remove(long pinId) {
+            int docId = docsByPin.remove(pinId);
+            if (docId >= 0) {
+                deleted.set(docId);
+                liveCount--;
+                totalLength -= lengths[docId];
+            }
+        }
+
+        int garbage() {
+            return docCount - liveCount;
+        }
+
+        void pack() {
+            terms.values().forEach(Postings::packAndTrim);
+        }
+
+        Result search(List<String> queryTerms, Set<String> tagTerms, Float afterRank, Long afterId,
+                      int offset, int limit, long now) {
+            List<Postings> postings = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Postings p = terms.get(term);
+                if (p == null) {
+                    return new Result(new ArrayList<>(), 0);
+                }
+                postings.add(p);
+            }
+            // пересечение начинается с самого редкого терма
+            postings.sort(Comparator.comparingInt(Postings::df));
+            double avgLength = liveCount > 0 ? (double) totalLength / liveCount : 1;
+
+            Postings first = postings.get(0);
+            int[] docs = new int[first.df()];
+            int[] tfs = new int[first.df()];
+            int n = first.decode(docs, tfs);
+            double[] scores = new double[n];
+            addBm25(scores, docs, tfs, n, first.df(), avgLength);
+
+            for (int t = 1; t < postings.size() && n > 0; t++) {
+                Postings next = postings.get(t);
+                int[] otherDocs = new int[next.df()];
+                int[] otherTfs = new int[next.df()];
+                int m = next.decode(otherDocs, otherTfs);
+                int kept = 0;
+                for (int i = 0, j = 0; i < n && j < m; ) {
+                    if (docs[i] < otherDocs[j]) {
+                        i++;
+                    } else if (docs[i] > otherDocs[j]) {
+                        j++;
+                    } else {
+                        docs[kept] = docs[i];
+                        tfs[kept] = otherTfs[j];
+                        scores[kept] = scores[i];
+                        kept++;
+                        i++;
+                        j++;
+                    }
+                }
+                n = kept;
+                addBm25(scores, docs, tfs, n, next.df(), avgLength);
+            }
+
+            BitSet tagged = null;
+            if (!tagTerms.isEmpty()) {
+                tagged = new BitSet();
+                for (String tagTerm : tagTerms) {
+                    Postings p = terms.get(tagTerm);
+                    if (p != null) {
+                        int[] tagDocs = new int[p.df()];
+                        int m = p.decode(tagDocs, new int[p.df()]);
+                        for (int i = 0; i < m; i++) {
+                            tagged.set(tagDocs[i]);
+                        }
+                    }
+                }
+            }
+
+            double halfLifeMs = recencyHalfLifeDays * 24 * HOUR_MS;
+            Comparator<PinSearchIndex.Hit> order = Comparator.comparingDouble(PinSearchIndex.Hit::rank)
+                    .thenComparingLong(PinSearchIndex.Hit::id);
+            int keep = offset + limit;
+            PriorityQueue<PinSearchIndex.Hit> top = new PriorityQueue<>(Math.max(1, keep), order);
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                int docId = docs[i];
+                if (deleted.get(docId) || (tagged != null && !tagged.get(docId))) {
+                    continue;
+                }
+                total++;
+                double age = Math.max(0, now - createdAt[docId]);
+                float rank = (float) (scores[i]
+                        + likesWeight * Math.log1p(Math.max(0, likes[docId]))
+                        + recencyWeight * Math.pow(0.5, age / halfLifeMs));
+                long pinId = pinIds[docId];
+                if (afterRank != null && afterId != null
+                        && (rank > afterRank || (rank == afterRank && pinId >= afterId))) {
+                    continue;
+                }
+                PinSearchIndex.Hit hit = new PinSearchIndex.Hit(pinId, rank);
+                if (top.size() < keep) {
+                    top.add(hit);
+                } else if (keep > 0 && order.compare(hit, top.peek()) > 0) {
+                    top.poll();
+                    top.add(hit);
+                }
+            }
+            List<PinSearchIndex.Hit> hits = new ArrayList<>(top);
+            hits.sort(order.reversed());
+            return new Result(offset < hits.size() ? hits.subList(offset, hits.size()) : new ArrayList<>(), total);
+        }
+
+        private void addBm25(double[] scores, int[] docs, int[] tfs, int n, int df, double avgLength) {
+            double idf = Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+            for (int i = 0; i < n; i++) {
+                double tf = tfs[i];
+                double norm = 1 - B + B * lengths[docs[i]] / avgLength;
+                scores[i] += idf * tf * (K1 + 1) / (tf + K1 * norm);
+            }
+        }
+
+        private int count(Map<String, int[]> frequencies, String text, int weight) {
+            List<String> tokens = PinTextAnalyzer.terms(text);
+            for (String token : tokens) {
+                frequencies.computeIfAbsent(token, term -> new int[1])[0] += weight;
+            }
+            return tokens.size() * weight;
+        }
+    }
+
+    /**
+     * Список вхождений терма: сжатая часть (varint: приращение номера документа, частота) и несжатый хвост
+     */
+    static final class Postings {
+
+        private static final byte[] EMPTY = new byte[0];
+
+        private byte[] packed = EMPTY;
+        private int packedBytes;
+        private int packedDocs;
+        private int lastPackedDoc = -1;
+        private int[] tail = new int[4];
+        private int tailSize;
+
+        int df() {
+            return packedDocs + tailSize / 2;
+        }
+
+        void append(int docId, int tf) {
+            if (tailSize + 2 > tail.length) {
+                tail = Arrays.copyOf(tail, tail.length * 2);
+            }
+            tail[tailSize++] = docId;
+            tail[tailSize++] = tf;
+            // хвост дожимается, когда он сравним с сжатой частью: перепаковка амортизирована
+            if (tailSize / 2 >= Math.max(32, packedDocs / 8)) {
+                pack();
+            }
+        }
+
+        int decode(int[] docs, int[] tfs) {
+            int n = 0;
+            int pos = 0;
+            int doc = -1;
+            for (int i = 0; i < packedDocs; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = packed[pos++];
+                    delta |= (b & 0x7f) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                int tf = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = packed[pos++];
+                    tf |= (b & 0x7f) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                doc += delta;
+                docs[n] = doc;
+                tfs[n] = tf;
+                n++;
+            }
+            for (int i = 0; i < tailSize; i += 2) {
+                docs[n] = tail[i];
+                tfs[n] = tail[i + 1];
+                n++;
+            }
+            return n;
+        }
+
+        void pack() {
+            if (tailSize == 0) {
+                return;
+            }
+            int needed = packedBytes + tailSize / 2 * 10;
+            if (needed > packed.length) {
+                packed = Arrays.copyOf(packed, Math.max(needed, packed.length * 2));
+            }
+            for (int i = 0; i < tailSize; i += 2) {
+                writeVarint(tail[i] - lastPackedDoc);
+                writeVarint(tail[i + 1]);
+                lastPackedDoc = tail[i];
+                packedDocs++;
+            }
+            tailSize = 0;
+            if (tail.length > 64) {
+                tail = new int[4];
+            }
+        }
+
+        void packAndTrim() {
+            pack();
+            if (packed.length > packedBytes) {
+                packed = Arrays.copyOf(packed, packedBytes);
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                packed[packedBytes++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            packed[packedBytes++] = (byte) value;
+        }
+    }
+
+    /**
+     * id пина → номер документа, открытая адресация без упаковки ключей; 0 — пустая ячейка (id пинов > 0)
+     */
+    static final class LongIntMap {
+
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return -1;
+                }
+                i = (i + 1) & mask;
+            }
+            int value = values[i];
+            // сдвиг следующих ключей цепочки на освободившееся место вместо надгробий
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!stays) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+            size--;
+            return value;
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.example.server.UsPinterest.dto.PostRequest;
 import com.example.server.UsPinterest.dto.PostResponse;
 import com.example.server.UsPinterest.dto.CursorPageResponse;
 import com.example.server.UsPinterest.dto.mapper.PostStructMapper;
+import com.example.server.UsPinterest.event.PostCreatedEvent;
+import com.example.server.UsPinterest.event.PostDeletedEvent;
 import com.example.server.UsPinterest.model.Post;
 import com.example.server.UsPinterest.model.User;
 import com.example.server.UsPinterest.repository.PostRepository;
@@ -12,6 +14,7 @@ import com.example.server.UsPinterest.repository.LikeRepository;
 import com.example.server.UsPinterest.service.NotificationService;
 import com.example.server.UsPinterest.security.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
@@ -31,6 +34,7 @@ public class PostService {
     private final NotificationRepository notificationRepository;
     private final LikeRepository likeRepository;
     private final PaginationService paginationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public PostService(PostRepository postRepository,
@@ -39,7 +43,8 @@ public class PostService {
                        NotificationService notificationService,
                        NotificationRepository notificationRepository,
                        LikeRepository likeRepository,
-                       PaginationService paginationService) {
+                       PaginationService paginationService,
+                       ApplicationEventPublisher eventPublisher) {
         this.postRepository = postRepository;
         this.userService = userService;
         this.postStructMapper = postStructMapper;
@@ -47,6 +52,7 @@ public class PostService {
         this.notificationRepository = notificationRepository;
         this.likeRepository = likeRepository;
         this.paginationService = paginationService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -56,6 +62,7 @@ public class PostService {
         post.setUser(user);
 
         Post savedPost = postRepository.save(post);
+        eventPublisher.publishEvent(new PostCreatedEvent(savedPost.getId(), user.getId()));
         return postStructMapper.toDto(savedPost);
     }
 
@@ -150,12 +157,14 @@ public class PostService {
 
     @Transactional
     public void deletePost(Long postId) {
+        Long ownerId = postRepository.findUserIdById(postId).orElse(null);
         // Удаляем уведомления, связанные с постом
         notificationRepository.deleteByPostId(postId);
         // Удаляем лайки, связанные с постом
         likeRepository.deleteByPostId(postId);
         // Удаляем сам пост
         postRepository.deleteById(postId);
+        eventPublisher.publishEvent(new PostDeletedEvent(postId, ownerId));
     }
 
     @Transactional
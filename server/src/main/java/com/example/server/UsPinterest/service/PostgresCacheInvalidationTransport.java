@@ -0,0 +1,134 @@
+package com.example.server.UsPinterest.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+
+/**
+ * Инвалидация через Postgres LISTEN/NOTIFY: отдельное соединение слушает канал в фоновом потоке,
+ * отправка — pg_notify через пул. После обрыва соединения узел переподключается и сбрасывает кэши.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.cluster.transport", havingValue = "postgres")
+public class PostgresCacheInvalidationTransport implements CacheInvalidationTransport, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresCacheInvalidationTransport.class);
+
+    private static final String CHANNEL = "cache_invalidation";
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresCacheInvalidationTransport(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void start(Consumer<String> onMessage, Runnable onResync) {
+        running = true;
+        listener = new Thread(() -> listen(onMessage, onResync), "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void send(String payload) {
+        jdbcTemplate.query("select pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null, CHANNEL, payload);
+    }
+
+    private void listen(Consumer<String> onMessage, Runnable onResync) {
+        boolean reconnect = false;
+        while (running) {
+            Connection conn = null;
+            try {
+                conn = dataSource.getConnection();
+                conn.setAutoCommit(true);
+                try (Statement statement = conn.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnect) {
+                    // за время обрыва сообщения не доставлялись
+                    onResync.run();
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        onMessage.accept(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("Соединение LISTEN {} потеряно: {}", CHANNEL, e.getMessage());
+                reconnect = true;
+                sleep();
+            } finally {
+                release(conn);
+            }
+        }
+    }
+
+    /**
+     * Соединение возвращается в пул: подписку снимаем, чтобы уведомления не копились у других владельцев
+     */
+    private void release(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("UNLISTEN *");
+        } catch (SQLException e) {
+            logger.debug("Ошибка UNLISTEN: {}", e.getMessage());
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            logger.debug("Ошибка закрытия соединения LISTEN: {}", e.getMessage());
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (listener != null) {
+            try {
+                // поток сам снимет подписку и вернёт соединение после очередного опроса
+                listener.join(POLL_TIMEOUT_MS * 4L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
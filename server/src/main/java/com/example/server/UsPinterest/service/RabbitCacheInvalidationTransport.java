@@ -0,0 +1,70 @@
+package com.example.server.UsPinterest.service;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Инвалидация через RabbitMQ: fanout-обменник, у каждого узла своя временная очередь
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.cluster.transport", havingValue = "rabbit")
+public class RabbitCacheInvalidationTransport implements CacheInvalidationTransport, DisposableBean {
+
+    public static final String EXCHANGE = "cache.invalidation";
+
+    private final ConnectionFactory connectionFactory;
+    private final RabbitTemplate rabbitTemplate;
+
+    private SimpleMessageListenerContainer container;
+
+    public RabbitCacheInvalidationTransport(ConnectionFactory connectionFactory, RabbitTemplate rabbitTemplate) {
+        this.connectionFactory = connectionFactory;
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @Override
+    public void start(Consumer<String> onMessage, Runnable onResync) {
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        FanoutExchange exchange = new FanoutExchange(EXCHANGE, false, false);
+        Queue queue = new AnonymousQueue();
+        admin.declareExchange(exchange);
+        admin.declareQueue(queue);
+        admin.declareBinding(BindingBuilder.bind(queue).to(exchange));
+
+        container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(queue.getName());
+        container.setAmqpAdmin(admin);
+        container.setMessageListener(message -> onMessage.accept(new String(message.getBody(), StandardCharsets.UTF_8)));
+        container.start();
+        // при восстановлении соединения очередь объявляется заново, пропущенные сообщения не вернуть
+        connectionFactory.addConnectionListener(connection -> onResync.run());
+    }
+
+    @Override
+    public void send(String payload) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        rabbitTemplate.send(EXCHANGE, "", new Message(payload.getBytes(StandardCharsets.UTF_8), properties));
+    }
+
+    @Override
+    public void destroy() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.server.UsPinterest.service;
+
+/**
+ * Стеммер Портера (Snowball) для русского языка: отсекает окончания деепричастий, прилагательных,
+ * причастий, глаголов и существительных, так что «котики», «котиков» и «котик» дают одну основу.
+ * Слово ожидается в нижнем регистре, ё заменяется на е.
+ */
+public final class RussianStemmer {
+
+    private static final String VOWELS = "аеиоуыэюя";
+
+    private static final String[] PERFECTIVE_GERUND_1 = {"вшись", "вши", "в"};
+    private static final String[] PERFECTIVE_GERUND_2 = {"ившись", "ывшись", "ивши", "ывши", "ив", "ыв"};
+    private static final String[] ADJECTIVE = {
+            "ими", "ыми", "его", "ого", "ему", "ому",
+            "ее", "ие", "ые", "ое", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом",
+            "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею"};
+    private static final String[] PARTICIPLE_1 = {"ем", "нн", "вш", "ющ", "щ"};
+    private static final String[] PARTICIPLE_2 = {"ивш", "ывш", "ующ"};
+    private static final String[] REFLEXIVE = {"ся", "сь"};
+    private static final String[] VERB_1 = {
+            "ете", "йте", "ешь", "нно", "ла", "на", "ли", "ем", "ло", "но", "ет", "ют", "ны", "ть", "й", "л", "н"};
+    private static final String[] VERB_2 = {
+            "ейте", "уйте", "ила", "ыла", "ена", "ите", "или", "ыли", "ило", "ыло", "ено", "ует", "уют",
+            "ены", "ить", "ыть", "ишь", "ей", "уй", "ил", "ыл", "им", "ым", "ен", "ят", "ит", "ыт", "ую", "ю"};
+    private static final String[] NOUN = {
+            "иями", "ями", "ами", "ией", "иям", "ием", "иях",
+            "ев", "ов", "ие", "ье", "еи", "ии", "ей", "ой", "ий", "ям", "ем", "ам", "ом", "ах", "ях", "ию", "ью", "ия", "ья",
+            "а", "е", "и", "й", "о", "у", "ы", "ь", "ю", "я"};
+    private static final String[] SUPERLATIVE = {"ейше", "ейш"};
+    private static final String[] DERIVATIONAL = {"ость", "ост"};
+
+    private RussianStemmer() {
+    }
+
+    public static String stem(String word) {
+        String w = word.replace('ё', 'е');
+        int rv = regionAfterVowel(w, 0);
+        if (rv >= w.length()) {
+            return w;
+        }
+        int r1 = regionAfterConsonant(w, 0);
+        int r2 = regionAfterConsonant(w, r1);
+        StringBuilder sb = new StringBuilder(w);
+
+        // шаг 1
+        if (!removeGrouped(sb, rv, PERFECTIVE_GERUND_1, PERFECTIVE_GERUND_2)) {
+            remove(sb, rv, REFLEXIVE);
+            if (removeAdjectival(sb, rv)) {
+                // окончание прилагательного или причастия снято
+            } else if (!removeGrouped(sb, rv, VERB_1, VERB_2)) {
+                remove(sb, rv, NOUN);
+            }
+        }
+        // шаг 2
+        if (sb.length() > rv && sb.charAt(sb.length() - 1) == 'и') {
+            sb.setLength(sb.length() - 1);
+        }
+        // шаг 3: словообразовательный суффикс целиком в R2
+        remove(sb, Math.max(rv, r2), DERIVATIONAL);
+        // шаг 4
+        if (endsWith(sb, rv, "нн")) {
+            sb.setLength(sb.length() - 1);
+        } else if (remove(sb, rv, SUPERLATIVE)) {
+            if (endsWith(sb, rv, "нн")) {
+                sb.setLength(sb.length() - 1);
+            }
+        } else if (endsWith(sb, rv, "ь")) {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    private static boolean removeAdjectival(StringBuilder sb, int rv) {
+        if (!remove(sb, rv, ADJECTIVE)) {
+            return false;
+        }
+        removeGrouped(sb, rv, PARTICIPLE_1, PARTICIPLE_2);
+        return true;
+    }
+
+    /**
+     * Окончания первой группы снимаются только после «а» или «я», второй — в любом случае;
+     * выбирается самое длинное совпадение
+     */
+    private static boolean removeGrouped(StringBuilder sb, int rv, String[] afterAYa, String[] any) {
+        String best = null;
+        for (String suffix : afterAYa) {
+            int start = sb.length() - suffix.length();
+            if (start - 1 >= rv && endsWith(sb, rv, suffix)
+                    && (sb.charAt(start - 1) == 'а' || sb.charAt(start - 1) == 'я')) {
+                best = suffix;
+                break;
+            }
+        }
+        for (String suffix : any) {
+            if (endsWith(sb, rv, suffix) && (best == null || suffix.length() > best.length())) {
+                best = suffix;
+                break;
+            }
+        }
+        if (best == null) {
+            return false;
+        }
+        sb.setLength(sb.length() - best.length());
+        return true;
+    }
+
+    private static boolean remove(StringBuilder sb, int from, String[] suffixes) {
+        String best = null;
+        for (String suffix : suffixes) {
+            if (endsWith(sb, from, suffix) && (best == null || suffix.length() > best.length())) {
+                best = suffix;
+            }
+        }
+        if (best == null) {
+            return false;
+        }
+        sb.setLength(sb.length() - best.length());
+        return true;
+    }
+
+    private static boolean endsWith(StringBuilder sb, int from, String suffix) {
+        int start = sb.length() - suffix.length();
+        if (start < from) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(start + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int regionAfterVowel(String w, int from) {
+        for (int i = from; i < w.length(); i++) {
+            if (isVowel(w.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return w.length();
+    }
+
+    private static int regionAfterConsonant(String w, int from) {
+        for (int i = from + 1; i < w.length(); i++) {
+            if (!isVowel(w.charAt(i)) && isVowel(w.charAt(i - 1))) {
+                return i + 1;
+            }
+        }
+        return w.length();
+    }
+
+    private static boolean isVowel(char c) {
+        return VOWELS.indexOf(c) >= 0;
+    }
+}
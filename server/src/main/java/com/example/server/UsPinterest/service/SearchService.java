@@ -1,61 +1,300 @@
 package com.example.server.UsPinterest.service;
 
+import com.example.server.UsPinterest.dto.CursorPageResponse;
 import com.example.server.UsPinterest.dto.PageResponse;
 import com.example.server.UsPinterest.dto.PinResponse;
-import com.example.server.UsPinterest.dto.ProfileResponse;
-import com.example.server.UsPinterest.dto.mapper.PinStructMapper;
-import com.example.server.UsPinterest.dto.mapper.UserStructMapper;
-import com.example.server.UsPinterest.model.Pin;
-import com.example.server.UsPinterest.model.User;
+import com.example.server.UsPinterest.dto.UserSearchResponse;
+import com.example.server.UsPinterest.repository.PinCardView;
 import com.example.server.UsPinterest.repository.PinRepository;
-import com.example.server.UsPinterest.repository.UserRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class SearchService {
 
-    private final PinRepository pinRepository;
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+
+    private static final int TRIGRAM_LENGTH = 3;
 
-    private final UserRepository userRepository;
+    // Источник оценки в курсоре поиска: индекс в памяти или ts_rank БД, шкалы несравнимы
+    private static final String CURSOR_INDEX = "i";
+    private static final String CURSOR_SQL = "s";
+
+    private final PinRepository pinRepository;
 
     private final PaginationService paginationService;
 
-    private final PinStructMapper pinStructMapper;
+    private final PinSearchIndex pinSearchIndex;
 
-    private final UserStructMapper userStructMapper;
+    private final PinTextIndex pinTextIndex;
+
+    private final PinEnrichmentService pinEnrichmentService;
+
+    private final JdbcTemplate jdbcTemplate;
 
     private final UserService userService;
 
+    private final CacheManager cacheManager;
+
+    private final PinCacheInvalidator pinCacheInvalidator;
+
+    // pg_trgm ставит indices.sql, но CREATE EXTENSION требует прав: без расширения поиск пользователей только по LIKE
+    private volatile boolean trigramAvailable;
+
+    @Value("${app.search.users.min-length:2}")
+    private int userSearchMinLength;
+
     @Transactional(readOnly = true)
-    @Cacheable(value = "search", key = "'pins_' + #keyword + '_' + #tags + '_' + #page + '_' + #size + '_' + #sortBy + '_' + #sortDirection")
+    public PageResponse<PinResponse> searchPins(String keyword, List<String> tags, int page, int size) {
+        return searchPins(keyword, tags, page, size, null, null);
+    }
+
+    /**
+     * Поиск пинов по релевантности (полнотекстовый индекс), теги сужают выдачу; sortBy/sortDirection
+     * при запросе не применяются. Без запроса — в порядке sortBy/sortDirection, по умолчанию новые сначала
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
     public PageResponse<PinResponse> searchPins(String keyword, List<String> tags, int page, int size,
                                                 String sortBy, String sortDirection) {
-        String searchKeyword = (keyword != null && !keyword.trim().isEmpty()) ? keyword.trim() : "";
+        String searchKeyword = keyword != null ? keyword.trim() : "";
+        boolean sorted = searchKeyword.isEmpty() && (sortBy != null || sortDirection != null);
+        // Кэшируем вручную, чтобы пометить запись id найденных пинов
+        String cacheKey = "pins_" + keyword + "_" + tags + "_" + page + "_" + size
+                + (sorted ? "_" + sortBy + "_" + sortDirection : "");
+        Cache cache = cacheManager.getCache(PinCacheInvalidator.SEARCH_CACHE);
+        PageResponse<PinResponse> cached = cache.get(cacheKey, PageResponse.class);
+        if (cached != null) {
+            return cached;
+        }
 
-        Pageable pageable = paginationService.createPageable(page, size, sortBy, sortDirection);
-        List<String> searchTags = (tags != null && !tags.isEmpty()) ? tags : Collections.emptyList();
-        Page<Pin> pinsPage = pinRepository.searchByDescriptionOrTags(searchKeyword, searchTags, pageable);
+        long loadGeneration = pinCacheInvalidator.generation();
+        int pageSize = paginationService.createPageable(page, size).getPageSize();
+        int pageNo = Math.max(page, 0);
+        List<PinSearchIndex.Hit> hits;
+        long total;
+        PinTextIndex.Result indexed = searchIndexed(searchKeyword, tags, null, null, pageNo * pageSize, pageSize);
+        if (sorted) {
+            hits = pinSearchIndex.browse(tags, sortBy, sortDirection, pageNo * pageSize, pageSize);
+            total = pinSearchIndex.count(searchKeyword, tags);
+        } else if (indexed != null) {
+            hits = indexed.hits();
+            total = indexed.total();
+        } else {
+            hits = pinSearchIndex.search(searchKeyword, tags, null, null, pageNo * pageSize, pageSize);
+            total = pinSearchIndex.count(searchKeyword, tags);
+        }
+        int totalPages = (int) ((total + pageSize - 1) / pageSize);
 
-        return paginationService.createPageResponse(pinsPage, pin -> pinStructMapper.toDto(pin));
+        List<PinResponse> content = loadCards(hits);
+        PageResponse<PinResponse> result = new PageResponse<>(
+                content,
+                pageNo,
+                pageSize,
+                total,
+                totalPages,
+                pageNo >= totalPages - 1
+        );
+        pinCacheInvalidator.put(PinCacheInvalidator.SEARCH_CACHE, cacheKey, result,
+                content.stream().map(PinResponse::getId).collect(Collectors.toList()), loadGeneration);
+        return result;
     }
 
+    /**
+     * Тот же поиск с keyset-продолжением: курсор — (источник, релевантность, id) последнего пина страницы,
+     * глубокие страницы не пересчитывают пропущенные строки. Курсор БД продолжается в БД; курсор индекса,
+     * когда индекс на этом узле недоступен, начинает выдачу заново
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public CursorPageResponse<PinResponse, String> searchPinsCursor(String keyword, List<String> tags, String cursor, int size) {
+        String cacheKey = "pins_cursor_" + keyword + "_" + tags + "_" + cursor + "_" + size;
+        Cache cache = cacheManager.getCache(PinCacheInvalidator.SEARCH_CACHE);
+        CursorPageResponse<PinResponse, String> cached = cache.get(cacheKey, CursorPageResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadGeneration = pinCacheInvalidator.generation();
+        String searchKeyword = keyword != null ? keyword.trim() : "";
+        int pageSize = paginationService.createPageable(0, size).getPageSize();
+        Float afterRank = null;
+        Long afterId = null;
+        String source = null;
+        String decoded = paginationService.decodeCursor(cursor, String.class);
+        if (decoded != null) {
+            try {
+                if (searchKeyword.isEmpty()) {
+                    // без запроса порядок только по id, источник не важен
+                    afterRank = 0f;
+                    afterId = Long.valueOf(decoded);
+                } else {
+                    String[] parts = decoded.split(":", 3);
+                    if (parts.length == 3 && (CURSOR_INDEX.equals(parts[0]) || CURSOR_SQL.equals(parts[0]))) {
+                        afterRank = Float.valueOf(parts[1]);
+                        afterId = Long.valueOf(parts[2]);
+                        source = parts[0];
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // неразборчивый курсор — первая страница
+                afterRank = null;
+                afterId = null;
+                source = null;
+            }
+        }
+
+        PinTextIndex.Result indexed = null;
+        if (!CURSOR_SQL.equals(source)) {
+            indexed = searchIndexed(searchKeyword, tags, afterRank, afterId, 0, pageSize + 1);
+            if (indexed == null && CURSOR_INDEX.equals(source)) {
+                // оценка индекса несравнима с ts_rank: выдача из БД начинается с первой страницы
+                logger.debug("Курсор индекса поиска без индекса на узле, выдача начинается заново");
+                afterRank = null;
+                afterId = null;
+            }
+        }
+        List<PinSearchIndex.Hit> hits = indexed != null ? indexed.hits()
+                : pinSearchIndex.search(searchKeyword, tags, afterRank, afterId, 0, pageSize + 1);
+        boolean hasNext = hits.size() > pageSize;
+        List<PinSearchIndex.Hit> pageHits = hasNext ? hits.subList(0, pageSize) : hits;
+        PinSearchIndex.Hit last = pageHits.isEmpty() ? null : pageHits.get(pageHits.size() - 1);
+        String nextCursor = last == null ? null
+                : searchKeyword.isEmpty() ? String.valueOf(last.id())
+                : (indexed != null ? CURSOR_INDEX : CURSOR_SQL) + ":" + last.rank() + ":" + last.id();
+
+        List<PinResponse> content = loadCards(pageHits);
+        CursorPageResponse<PinResponse, String> result = paginationService.createCursorPageResponse(
+                content, nextCursor, null, hasNext, false, pageSize, PinQueryService.TOTAL_NOT_REQUESTED);
+        pinCacheInvalidator.put(PinCacheInvalidator.SEARCH_CACHE, cacheKey, result,
+                content.stream().map(PinResponse::getId).collect(Collectors.toList()), loadGeneration);
+        return result;
+    }
+
+    /**
+     * Поиск по индексу в памяти; null — индекс выключен, не построен или не справился, ищем в БД
+     */
+    private PinTextIndex.Result searchIndexed(String keyword, List<String> tags, Float afterRank, Long afterId,
+                                              int offset, int limit) {
+        if (keyword.isEmpty() || !pinTextIndex.isReady()) {
+            return null;
+        }
+        try {
+            return pinTextIndex.search(keyword, tags, afterRank, afterId, offset, limit);
+        } catch (RuntimeException e) {
+            logger.warn("Поиск по индексу в памяти не удался, запрос уходит в БД: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Карточки найденных пинов лёгкой проекцией, в порядке выдачи
+     */
+    private List<PinResponse> loadCards(List<PinSearchIndex.Hit> hits) {
+        if (hits.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = hits.stream().map(PinSearchIndex.Hit::id).collect(Collectors.toList());
+        Map<Long, PinCardView> cards = new HashMap<>();
+        for (PinCardView card : pinRepository.findCardsByIds(ids)) {
+            cards.put(card.getId(), card);
+        }
+        List<PinCardView> ordered = ids.stream()
+                .map(cards::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return pinEnrichmentService.enrichCards(ordered, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectTrigram() {
+        try {
+            trigramAvailable = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')", Boolean.class));
+        } catch (DataAccessException e) {
+            trigramAvailable = false;
+        }
+        if (!trigramAvailable) {
+            logger.warn("Расширение pg_trgm не установлено: поиск пользователей только по подстроке, без опечаток");
+        }
+    }
+
+    /**
+     * Поиск пользователей по имени: короткий запрос — префикс, от трёх символов — подстрока
+     * и опечатки по триграммам (pg_trgm), ранжирование по схожести. Без pg_trgm — только префикс
+     * и подстрока. Запрос короче min-length не выполняется
+     */
     @Transactional(readOnly = true)
     @Cacheable(value = "search", key = "'users_' + #username + '_' + #page + '_' + #size")
-    public PageResponse<ProfileResponse> searchUsers(String username, int page, int size) {
-        String searchUsername = (username != null && !username.trim().isEmpty()) ? username.trim() : "";
+    public PageResponse<UserSearchResponse> searchUsers(String username, int page, int size) {
+        String query = username != null ? username.trim().toLowerCase(Locale.ROOT) : "";
+        int pageSize = paginationService.createPageable(page, size).getPageSize();
+        int pageNo = Math.max(page, 0);
+        if (query.length() < userSearchMinLength) {
+            return new PageResponse<>(new ArrayList<>(), pageNo, pageSize, 0, 0, true);
+        }
+
+        String prefix = escapeLike(query) + "%";
+        boolean trigram = trigramAvailable;
+        String where;
+        List<Object> whereArgs = new ArrayList<>();
+        if (query.length() >= TRIGRAM_LENGTH && trigram) {
+            where = "lower(u.username) LIKE ? OR lower(u.username) % ?";
+            whereArgs.add("%" + prefix);
+            whereArgs.add(query);
+        } else if (query.length() >= TRIGRAM_LENGTH) {
+            where = "lower(u.username) LIKE ?";
+            whereArgs.add("%" + prefix);
+        } else {
+            // из строки короче трёх символов триграммы не извлекаются: только префикс по btree
+            where = "lower(u.username) LIKE ?";
+            whereArgs.add(prefix);
+        }
 
-        Pageable pageable = paginationService.createPageable(page, size);
-        Page<User> usersPage = userRepository.findByUsernameContainingIgnoreCase(searchUsername, pageable);
+        List<Object> args = new ArrayList<>();
+        if (trigram) {
+            args.add(query);
+        }
+        args.addAll(whereArgs);
+        Collections.addAll(args, query, prefix, pageSize, pageNo * pageSize);
+        List<UserSearchResponse> content = jdbcTemplate.query(
+                "SELECT u.id, u.username, u.firstName, u.profileImageUrl, " +
+                (trigram ? "similarity(lower(u.username), ?)" : "0") + " AS score " +
+                "FROM users u WHERE " + where + " " +
+                "ORDER BY lower(u.username) = ? DESC, lower(u.username) LIKE ? DESC, score DESC, u.username " +
+                "LIMIT ? OFFSET ?",
+                (rs, rowNum) -> new UserSearchResponse(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        rs.getString(4), rs.getDouble(5)),
+                args.toArray());
+        Long total = jdbcTemplate.queryForObject("SELECT count(*) FROM users u WHERE " + where,
+                Long.class, whereArgs.toArray());
+        long totalElements = total != null ? total : 0;
+        int totalPages = (int) ((totalElements + pageSize - 1) / pageSize);
+        return new PageResponse<>(content, pageNo, pageSize, totalElements, totalPages, pageNo >= totalPages - 1);
+    }
 
-        return paginationService.createPageResponse(usersPage, user -> userStructMapper.toProfileDto(user));
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,395 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.SuggestResponse;
+import com.example.server.UsPinterest.event.SuggestTermsAddedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Подсказки поиска по префиксу: теги, имена пользователей, категории и места.
+ * Словарь каждого типа — отсортированный массив ключей (значение целиком и каждое его слово
+ * после первого) с весом популярности; для префиксов из одного-двух символов лучшие совпадения
+ * посчитаны заранее, длинные префиксы ищутся двоичным поиском по короткому диапазону.
+ * Новые значения попадают в небольшой журнал поверх словаря и переходят в словарь
+ * при периодическом перестроении, которое заодно обновляет веса.
+ */
+@Service
+public class SearchSuggestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchSuggestService.class);
+
+    public static final int MAX_LIMIT = 20;
+    private static final int SHORT_PREFIX = 2;
+    private static final int MAX_PREFIX = 100;
+    // сколько свежих значений журнала просматривается на запрос
+    private static final int RECENT_SCAN = 100;
+
+    private static final Map<SuggestTermsAddedEvent.Type, String> SOURCES = Map.of(
+            // вес тега — число пинов с ним, пользователя — число подписчиков, места — число отметок
+            SuggestTermsAddedEvent.Type.TAG,
+            "SELECT t.name, count(pt.pin_id) AS weight FROM tags t LEFT JOIN pin_tags pt ON pt.tag_id = t.id " +
+            "GROUP BY t.id, t.name ORDER BY weight DESC LIMIT ?",
+            SuggestTermsAddedEvent.Type.USER,
+            "SELECT u.username, count(f.follower_id) AS weight FROM users u LEFT JOIN follows f ON f.following_id = u.id " +
+            "GROUP BY u.id, u.username ORDER BY weight DESC LIMIT ?",
+            SuggestTermsAddedEvent.Type.CATEGORY,
+            "SELECT c.name, 0 FROM categories c LIMIT ?",
+            SuggestTermsAddedEvent.Type.PLACE,
+            "SELECT l.nameplace, count(*) AS weight FROM locations l WHERE l.nameplace IS NOT NULL AND l.nameplace <> '' " +
+            "GROUP BY l.nameplace ORDER BY weight DESC LIMIT ?");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Executor executor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private volatile Map<SuggestTermsAddedEvent.Type, Dictionary> dictionaries = emptyDictionaries();
+    private volatile Recent recent = new Recent();
+    // журнал, снятый на время перестроения: его значения ещё могут не попасть в новый словарь
+    private volatile Recent rebuilding;
+
+    @Value("${app.search.suggest.max-entries:200000}")
+    private int maxEntries;
+
+    public SearchSuggestService(@Qualifier("maintenanceDataSource") DataSource maintenanceDataSource,
+                                MeterRegistry meterRegistry,
+                                @Qualifier("searchIndexExecutor") Executor executor) {
+        this.jdbcTemplate = new JdbcTemplate(maintenanceDataSource);
+        this.meterRegistry = meterRegistry;
+        this.executor = executor;
+    }
+
+    public SuggestResponse suggest(String query, int limit) {
+        String prefix = normalize(query);
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        if (prefix.isEmpty() || prefix.length() > MAX_PREFIX) {
+            return new SuggestResponse(List.of(), List.of(), List.of(), List.of());
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        SuggestResponse response = new SuggestResponse(
+                top(SuggestTermsAddedEvent.Type.TAG, prefix, k),
+                top(SuggestTermsAddedEvent.Type.USER, prefix, k),
+                top(SuggestTermsAddedEvent.Type.CATEGORY, prefix, k),
+                top(SuggestTermsAddedEvent.Type.PLACE, prefix, k));
+        sample.stop(meterRegistry.timer("search.suggest.duration"));
+        return response;
+    }
+
+    /**
+     * Лучшие совпадения одного типа; используется и общим поиском
+     */
+    public List<String> top(SuggestTermsAddedEvent.Type type, String query, int limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Integer> found = new LinkedHashMap<>();
+        dictionaries.get(type).collect(prefix, limit, found);
+        recent.collect(type, prefix, found);
+        Recent previous = rebuilding;
+        if (previous != null) {
+            previous.collect(type, prefix, found);
+        }
+        if (found.size() <= 1) {
+            return new ArrayList<>(found.keySet());
+        }
+        return found.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTermsAdded(SuggestTermsAddedEvent event) {
+        Recent current = recent;
+        for (String value : event.getValues()) {
+            current.add(event.getType(), value);
+        }
+    }
+
+    /**
+     * Планировщик только ставит перестроение в searchIndexExecutor: чтение словарей не занимает его поток
+     */
+    @Scheduled(fixedDelayString = "${app.search.suggest.rebuild-interval-ms:600000}")
+    public void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildScheduled.set(false);
+            logger.warn("Перестроение подсказок поиска не запланировано: очередь заполнена");
+        }
+    }
+
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        // значения, добавленные во время чтения, пойдут в новый журнал и переживут замену словаря
+        rebuilding = recent;
+        recent = new Recent();
+        Map<SuggestTermsAddedEvent.Type, Dictionary> built = new EnumMap<>(SuggestTermsAddedEvent.Type.class);
+        try {
+            for (Map.Entry<SuggestTermsAddedEvent.Type, String> source : SOURCES.entrySet()) {
+                List<Suggestion> items = jdbcTemplate.query(source.getValue(),
+                        (rs, rowNum) -> new Suggestion(rs.getString(1), rs.getInt(2)), maxEntries);
+                built.put(source.getKey(), Dictionary.build(items));
+            }
+        } catch (DataAccessException e) {
+            // прежний словарь остаётся, журнал возвращается на место
+            logger.warn("Не удалось перестроить подсказки поиска: {}", e.getMessage());
+            Recent kept = rebuilding;
+            rebuilding = null;
+            kept.values.forEach((type, map) -> map.forEach((key, value) -> recent.add(type, value)));
+            return;
+        }
+        dictionaries = built;
+        rebuilding = null;
+        logger.debug("Подсказки поиска перестроены за {} мс", System.currentTimeMillis() - started);
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private static Map<SuggestTermsAddedEvent.Type, Dictionary> emptyDictionaries() {
+        Map<SuggestTermsAddedEvent.Type, Dictionary> empty = new EnumMap<>(SuggestTermsAddedEvent.Type.class);
+        for (SuggestTermsAddedEvent.Type type : SuggestTermsAddedEvent.Type.values()) {
+            empty.put(type, Dictionary.build(List.of()));
+        }
+        return empty;
+    }
+
+    record Suggestion(String value, int weight) {
+    }
+
+    /**
+     * Значения, появившиеся после последнего перестроения словаря (вес 0)
+     */
+    private static final class Recent {
+
+        final Map<SuggestTermsAddedEvent.Type, ConcurrentSkipListMap<String, String>> values =
+                new EnumMap<>(SuggestTermsAddedEvent.Type.class);
+
+        Recent() {
+            for (SuggestTermsAddedEvent.Type type : SuggestTermsAddedEvent.Type.values()) {
+                values.put(type, new ConcurrentSkipListMap<>());
+            }
+        }
+
+        void add(SuggestTermsAddedEvent.Type type, String value) {
+            if (value == null || value.isBlank()) {
+                return;
+            }
+            for (String key : Dictionary.keysOf(normalize(value))) {
+                values.get(type).put(key, value.trim());
+            }
+        }
+
+        void collect(SuggestTermsAddedEvent.Type type, String prefix, Map<String, Integer> found) {
+            int scanned = 0;
+            for (String value : values.get(type).subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                found.putIfAbsent(value, 0);
+                if (++scanned >= RECENT_SCAN) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Неизменяемый словарь одного типа
+     */
+    static final class Dictionary {
+
+        private final String[] keys;
+        private final int[] entryOfKey;
+        private final String[] values;
+        private final int[] weights;
+        private final Map<String, int[]> shortPrefixTop;
+
+        private Dictionary(String[] keys, int[] entryOfKey, String[] values, int[] weights, Map<String, int[]> shortPrefixTop) {
+            this.keys = keys;
+            this.entryOfKey = entryOfKey;
+            this.values = values;
+            this.weights = weights;
+            this.shortPrefixTop = shortPrefixTop;
+        }
+
+        static Dictionary build(List<Suggestion> items) {
+            Map<String, Integer> entryByKey = new HashMap<>();
+            List<String> values = new ArrayList<>();
+            List<Integer> weights = new ArrayList<>();
+            for (Suggestion item : items) {
+                String normalized = normalize(item.value());
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                Integer existing = entryByKey.get(normalized);
+                if (existing != null) {
+                    weights.set(existing, Math.max(weights.get(existing), item.weight()));
+                    continue;
+                }
+                entryByKey.put(normalized, values.size());
+                values.add(item.value().trim());
+                weights.add(item.weight());
+            }
+
+            List<String> keyList = new ArrayList<>();
+            List<Integer> entryList = new ArrayList<>();
+            for (int entry = 0; entry < values.size(); entry++) {
+                for (String key : keysOf(normalize(values.get(entry)))) {
+                    keyList.add(key);
+                    entryList.add(entry);
+                }
+            }
+            Integer[] order = new Integer[keyList.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(keyList::get));
+            String[] keys = new String[order.length];
+            int[] entryOfKey = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = keyList.get(order[i]);
+                entryOfKey[i] = entryList.get(order[i]);
+            }
+            int[] weightArray = weights.stream().mapToInt(Integer::intValue).toArray();
+
+            // лучшие значения для каждого префикса из одного-двух символов: длинные диапазоны не сканируются
+            Map<String, int[]> shortPrefixTop = new HashMap<>();
+            for (int length = 1; length <= SHORT_PREFIX; length++) {
+                int start = 0;
+                while (start < keys.length) {
+                    if (keys[start].length() < length) {
+                        start++;
+                        continue;
+                    }
+                    String prefix = keys[start].substring(0, length);
+                    int end = start;
+                    while (end < keys.length && keys[end].startsWith(prefix)) {
+                        end++;
+                    }
+                    shortPrefixTop.put(prefix, best(entryOfKey, start, end, weightArray));
+                    start = end;
+                }
+            }
+            return new Dictionary(keys, entryOfKey, values.toArray(new String[0]), weightArray, shortPrefixTop);
+        }
+
+        /**
+         * Ключи значения: строка целиком и хвосты, начинающиеся с каждого следующего слова
+         */
+        static List<String> keysOf(String normalized) {
+            List<String> keys = new ArrayList<>();
+            if (normalized.isEmpty()) {
+                return keys;
+            }
+            keys.add(normalized);
+            for (int i = 1; i < normalized.length(); i++) {
+                if (Character.isWhitespace(normalized.charAt(i - 1)) && !Character.isWhitespace(normalized.charAt(i))) {
+                    keys.add(normalized.substring(i));
+                }
+            }
+            return keys;
+        }
+
+        void collect(String prefix, int limit, Map<String, Integer> found) {
+            if (prefix.length() <= SHORT_PREFIX) {
+                int[] top = shortPrefixTop.get(prefix);
+                if (top != null) {
+                    for (int i = 0; i < top.length && i < limit; i++) {
+                        found.putIfAbsent(values[top[i]], weights[top[i]]);
+                    }
+                }
+                return;
+            }
+            int start = lowerBound(prefix);
+            int end = start;
+            while (end < keys.length && keys[end].startsWith(prefix)) {
+                end++;
+            }
+            for (int entry : best(entryOfKey, start, end, weights)) {
+                if (found.size() >= limit) {
+                    break;
+                }
+                found.putIfAbsent(values[entry], weights[entry]);
+            }
+        }
+
+        private int lowerBound(String prefix) {
+            int lo = 0;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * До MAX_LIMIT различных значений диапазона ключей [start, end) по убыванию веса
+         */
+        private static int[] best(int[] entryOfKey, int start, int end, int[] weights) {
+            int[] top = new int[Math.min(MAX_LIMIT, end - start)];
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                int entry = entryOfKey[i];
+                boolean duplicate = false;
+                for (int j = 0; j < size; j++) {
+                    if (top[j] == entry) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (duplicate || (size == top.length && weights[top[size - 1]] >= weights[entry])) {
+                    continue;
+                }
+                // вставка в упорядоченный по весу массив, последний вытесняется
+                int pos = size < top.length ? size++ : size - 1;
+                while (pos > 0 && weights[top[pos - 1]] < weights[entry]) {
+                    top[pos] = top[pos - 1];
+                    pos--;
+                }
+                top[pos] = entry;
+            }
+            return size == top.length ? top : Arrays.copyOf(top, size);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.config.CacheSerialization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * L2-кэш, общий для всех узлов: нежурналируемая таблица cache_entries в Postgres.
+ * Промах L1 стоит одного чтения по первичному ключу вместо полной сборки снимка;
+ * ошибки L2 не ломают запрос и считаются промахом.
+ * Сброс оставляет на месте записи надгробие (пустой payload) на tombstone-seconds: запись узла,
+ * прочитавшего БД до коммита изменения, не перекрывает его и не живёт в L2 весь TTL.
+ */
+@Service
+public class SharedCacheStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedCacheStore.class);
+
+    // Живое надгробие не перезаписывается: значение могло быть загружено до сброса
+    private static final String UPSERT =
+            "INSERT INTO cache_entries (cache_name, cache_key, payload, expires_at) VALUES (?, ?, ?, now() + make_interval(secs => ?)) " +
+            "ON CONFLICT (cache_name, cache_key) DO UPDATE SET payload = EXCLUDED.payload, expires_at = EXCLUDED.expires_at " +
+            "WHERE octet_length(cache_entries.payload) > 0 OR cache_entries.expires_at <= now()";
+
+    private static final String TOMBSTONE =
+            "INSERT INTO cache_entries (cache_name, cache_key, payload, expires_at) VALUES (?, ?, ?, now() + make_interval(secs => ?)) " +
+            "ON CONFLICT (cache_name, cache_key) DO UPDATE SET payload = EXCLUDED.payload, expires_at = EXCLUDED.expires_at";
+
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.cache.l2.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cache.l2.caches:pins}")
+    private Set<String> caches;
+
+    @Value("${app.cache.l2.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    @Value("${app.cache.l2.tombstone-seconds:60}")
+    private long tombstoneSeconds;
+
+    public SharedCacheStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean supports(String cacheName) {
+        return enabled && caches.contains(cacheName);
+    }
+
+    public Object get(String cacheName, String key) {
+        try {
+            List<byte[]> rows = jdbcTemplate.query(
+                    "SELECT payload FROM cache_entries WHERE cache_name = ? AND cache_key = ? AND expires_at > now() "
+                            + "AND octet_length(payload) > 0",
+                    (rs, rowNum) -> rs.getBytes(1), cacheName, key);
+            return rows.isEmpty() ? null : deserialize(rows.get(0));
+        } catch (RuntimeException | IOException | ClassNotFoundException e) {
+            logger.debug("L2 {}[{}] недоступен: {}", cacheName, key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Пакетное чтение: ключ -> значение для найденных записей
+     */
+    public Map<String, Object> getAll(String cacheName, List<String> keys) {
+        Map<String, Object> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        try {
+            String placeholders = String.join(",", Collections.nCopies(keys.size(), "?"));
+            List<Object> args = new ArrayList<>(keys.size() + 1);
+            args.add(cacheName);
+            args.addAll(keys);
+            jdbcTemplate.query("SELECT cache_key, payload FROM cache_entries WHERE cache_name = ? AND cache_key IN ("
+                    + placeholders + ") AND expires_at > now() AND octet_length(payload) > 0", rs -> {
+                try {
+                    result.put(rs.getString(1), deserialize(rs.getBytes(2)));
+                } catch (IOException | ClassNotFoundException e) {
+                    logger.debug("L2 {}: несовместимая запись {}", cacheName, rs.getString(1));
+                }
+            }, args.toArray());
+        } catch (RuntimeException e) {
+            logger.debug("L2 {} недоступен: {}", cacheName, e.getMessage());
+        }
+        return result;
+    }
+
+    public void put(String cacheName, String key, Object value) {
+        putAll(cacheName, Map.of(key, value));
+    }
+
+    public void putAll(String cacheName, Map<String, Object> entries) {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        try {
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                if (entry.getValue() instanceof Serializable) {
+                    rows.add(new Object[]{cacheName, entry.getKey(), serialize(entry.getValue()), ttlSeconds});
+                }
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT, rows);
+            }
+        } catch (RuntimeException | IOException e) {
+            logger.debug("Не удалось записать L2 {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    public void evict(String cacheName, String key) {
+        try {
+            jdbcTemplate.update(TOMBSTONE, cacheName, key, NO_PAYLOAD, tombstoneSeconds);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось удалить L2 {}[{}]: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    public void clear(String cacheName) {
+        try {
+            jdbcTemplate.update("DELETE FROM cache_entries WHERE cache_name = ?", cacheName);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось очистить L2 {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.l2.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int removed = jdbcTemplate.update("DELETE FROM cache_entries WHERE expires_at <= now()");
+            if (removed > 0) {
+                logger.debug("L2: удалено истёкших записей {}", removed);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Очистка L2 не удалась: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Таблицу видят все узлы: читаем только разрешённые классы значений кэшей
+    private static Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = CacheSerialization.objectInput(new ByteArrayInputStream(payload))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.config.ClusterCache;
+import com.example.server.UsPinterest.dto.PinResponse;
+import com.example.server.UsPinterest.dto.PinSnapshot;
+import com.example.server.UsPinterest.dto.UserSummary;
+import com.example.server.UsPinterest.repository.PinRepository;
+import com.example.server.UsPinterest.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш неизменяемых снимков вместо JPA-сущностей: карточки пинов и сводки пользователей
+ * строятся из проекций один раз и после помещения в кэш не обращаются к Hibernate.
+ * В кэше "pins" лежат PinSnapshot по id, в кэше "users" — UserSummary по id и по имени пользователя.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class SnapshotCacheService {
+
+    public static final String USERS_CACHE = "users";
+
+    private final CacheManager cacheManager;
+
+    private final PinRepository pinRepository;
+
+    private final UserRepository userRepository;
+
+    private final PinEnrichmentService pinEnrichmentService;
+
+    private final CacheLoadCoalescer cacheLoadCoalescer;
+
+    private final CachePersistenceService cachePersistenceService;
+
+    /**
+     * Промах по одной карточке загружается single-flight: популярный пин после истечения читается из БД один раз
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<PinSnapshot> getPinCard(Long pinId) {
+        PinSnapshot cached = pinsCache().get(pinId, PinSnapshot.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        List<PinSnapshot> loaded = cacheLoadCoalescer.load(PinCacheInvalidator.PINS_CACHE, pinId,
+                () -> getPinCards(Collections.singletonList(pinId)));
+        return loaded.stream().findFirst();
+    }
+
+    /**
+     * Карточки в порядке pinIds; отсутствующие в кэше догружаются одним запросом
+     */
+    public List<PinSnapshot> getPinCards(List<Long> pinIds) {
+        Cache cache = pinsCache();
+        Map<Long, PinSnapshot> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        // L1 + один пакетный запрос к общему L2 вместо чтения по ключу
+        Map<Object, Object> present = cache instanceof ClusterCache cluster
+                ? cluster.getAllPresent(pinIds)
+                : Collections.emptyMap();
+        for (Long pinId : pinIds) {
+            Object cached = cache instanceof ClusterCache ? present.get(pinId) : cache.get(pinId, PinSnapshot.class);
+            if (cached instanceof PinSnapshot snapshot) {
+                found.put(pinId, snapshot);
+            } else {
+                missing.add(pinId);
+            }
+        }
+        // Восстановленные с диска карточки сверяются при первом чтении
+        for (Long stale : cachePersistenceService.revalidatePins(found.values())) {
+            found.remove(stale);
+            missing.add(stale);
+        }
+        if (!missing.isEmpty()) {
+            Map<Object, Object> loaded = new HashMap<>();
+            for (PinResponse dto : pinEnrichmentService.enrichCards(pinRepository.findCardsByIds(missing), null)) {
+                PinSnapshot snapshot = PinSnapshot.of(dto);
+                loaded.put(snapshot.getId(), snapshot);
+                found.put(snapshot.getId(), snapshot);
+            }
+            if (cache instanceof ClusterCache cluster) {
+                cluster.putAll(loaded);
+            } else {
+                loaded.forEach(cache::put);
+            }
+        }
+        return pinIds.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    public Optional<UserSummary> getUserSummary(Long userId) {
+        UserSummary cached = usersCache().get(userId, UserSummary.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<UserSummary> loaded = userRepository.findSummaryById(userId);
+        loaded.ifPresent(this::putUser);
+        return loaded;
+    }
+
+    public Optional<UserSummary> getUserSummary(String username) {
+        UserSummary cached = usersCache().get(username, UserSummary.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<UserSummary> loaded = userRepository.findSummaryByUsername(username);
+        loaded.ifPresent(this::putUser);
+        return loaded;
+    }
+
+    public void evictUser(Long userId, String username) {
+        Cache cache = usersCache();
+        cache.evict(userId);
+        if (username != null) {
+            cache.evict(username);
+        }
+    }
+
+    private void putUser(UserSummary summary) {
+        Cache cache = usersCache();
+        cache.put(summary.getId(), summary);
+        cache.put(summary.getUsername(), summary);
+    }
+
+    private Cache pinsCache() {
+        return cacheManager.getCache(PinCacheInvalidator.PINS_CACHE);
+    }
+
+    private Cache usersCache() {
+        return cacheManager.getCache(USERS_CACHE);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.event.SuggestTermsAddedEvent;
+import com.example.server.UsPinterest.model.Tag;
+import com.example.server.UsPinterest.model.User;
+import com.example.server.UsPinterest.repository.TagRepository;
+import com.example.server.UsPinterest.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Хэштеги и упоминания в тексте пина или комментария. Шаблоны компилируются один раз;
+ * все теги текста разрешаются одним IN-запросом, недостающие создаются одним
+ * INSERT ... ON CONFLICT DO NOTHING, упоминания — одним запросом пользователей.
+ */
+@Service
+public class TextEntityExtractor {
+
+    private static final Pattern HASHTAG = Pattern.compile("#(\\w+)");
+    private static final Pattern MENTION = Pattern.compile("@(\\w+)");
+
+    // длина колонки tags.name
+    private static final int MAX_TAG_LENGTH = 100;
+
+    private final TagRepository tagRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public TextEntityExtractor(TagRepository tagRepository, UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                               ApplicationEventPublisher eventPublisher) {
+        this.tagRepository = tagRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public Set<String> hashtags(String text) {
+        return matches(HASHTAG, text);
+    }
+
+    public Set<String> mentions(String text) {
+        return matches(MENTION, text);
+    }
+
+    /**
+     * Теги по именам без учёта регистра, отсутствующие создаются. Вызывается внутри транзакции
+     */
+    public Set<Tag> resolveTags(Collection<String> names) {
+        Map<String, String> missing = new LinkedHashMap<>();
+        if (names != null) {
+            for (String name : names) {
+                String trimmed = name != null ? name.trim() : "";
+                if (!trimmed.isEmpty() && trimmed.length() <= MAX_TAG_LENGTH) {
+                    missing.putIfAbsent(trimmed.toLowerCase(Locale.ROOT), trimmed);
+                }
+            }
+        }
+        Set<Tag> tags = new HashSet<>();
+        if (missing.isEmpty()) {
+            return tags;
+        }
+        Set<String> lowerNames = new HashSet<>(missing.keySet());
+        for (Tag tag : tagRepository.findByLowerNameIn(lowerNames)) {
+            tags.add(tag);
+            missing.remove(tag.getName().toLowerCase(Locale.ROOT));
+        }
+        if (!missing.isEmpty()) {
+            // параллельный запрос мог создать тот же тег: конфликт пропускается, тег читается повторно
+            jdbcTemplate.update("INSERT INTO tags (name) VALUES "
+                    + String.join(", ", Collections.nCopies(missing.size(), "(?)"))
+                    + " ON CONFLICT (name) DO NOTHING", missing.values().toArray());
+            tags.addAll(tagRepository.findByLowerNameIn(missing.keySet()));
+            eventPublisher.publishEvent(new SuggestTermsAddedEvent(SuggestTermsAddedEvent.Type.TAG,
+                    new ArrayList<>(missing.values())));
+        }
+        return tags;
+    }
+
+    public Set<Tag> resolveHashtags(String text) {
+        return resolveTags(hashtags(text));
+    }
+
+    /**
+     * Упомянутые пользователи, существующие в системе
+     */
+    public Set<User> resolveMentions(String text) {
+        Set<String> usernames = mentions(text);
+        return usernames.isEmpty() ? new HashSet<>() : new HashSet<>(userRepository.findByUsernameIn(usernames));
+    }
+
+    private static Set<String> matches(Pattern pattern, String text) {
+        Set<String> found = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return found;
+        }
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            found.add(matcher.group(1));
+        }
+        return found;
+    }
+}
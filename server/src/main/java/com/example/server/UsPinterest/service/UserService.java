@@ -2,18 +2,23 @@ package com.example.server.UsPinterest.service;
 
 import com.example.server.UsPinterest.dto.RegisterRequest;
 import com.example.server.UsPinterest.dto.EditProfileRequest;
+import com.example.server.UsPinterest.dto.UserSummary;
 import com.example.server.UsPinterest.entity.Like;
+import com.example.server.UsPinterest.event.SuggestTermsAddedEvent;
 import com.example.server.UsPinterest.model.Post;
 import com.example.server.UsPinterest.model.User;
 import com.example.server.UsPinterest.repository.LikeRepository;
 import com.example.server.UsPinterest.repository.UserRepository;
 import com.example.server.UsPinterest.repository.VerificationTokenRepository;
 import com.example.server.UsPinterest.security.JwtTokenUtil;
+import com.example.server.UsPinterest.security.UserPrincipal;
 import com.example.server.UsPinterest.exception.ResourceNotFoundException;
 import com.example.server.UsPinterest.service.FileStorageService;
 import com.example.server.UsPinterest.model.VerificationToken;
 import com.example.server.UsPinterest.repository.PinRepository;
+import com.example.server.UsPinterest.repository.PostRepository;
 import com.example.server.UsPinterest.model.Pin;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import com.example.server.UsPinterest.service.PinCrudService;
 import com.example.server.UsPinterest.repository.RefreshTokenRepository;
@@ -26,8 +31,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -51,15 +56,18 @@ public class UserService {
     private final VerificationTokenRepository verificationTokenRepository;
     private final RefreshTokenRepository refreshTokenRepository;
     private final PinRepository pinRepository;
+    private final PostRepository postRepository;
     @Lazy
     private final PinCrudService pinCrudService;
     private final FollowRepository followRepository;
     private final NotificationRepository notificationRepository;
+    private final SnapshotCacheService snapshotCacheService;
+    private final EngagementCounterService engagementCounterService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     @Transactional
-    @CacheEvict(value = "users", allEntries = true)
     public User registerUser(RegisterRequest request) {
         if (userRepository.findByUsername(request.getUsername()).isPresent()) {
             throw new RuntimeException("Пользователь с таким именем уже существует");
@@ -75,7 +83,10 @@ public class UserService {
         newUser.setFirstName(request.getFirstName());
         newUser.setBirthDate(request.getBirthDate());
 
-        return userRepository.save(newUser);
+        User saved = userRepository.save(newUser);
+        eventPublisher.publishEvent(new SuggestTermsAddedEvent(SuggestTermsAddedEvent.Type.USER,
+                List.of(saved.getUsername())));
+        return saved;
     }
 
     public String loginUser(String username, String password) {
@@ -100,17 +111,25 @@ public class UserService {
         return jwtTokenUtil.generateToken(userDetails);
     }
 
-    @Cacheable(value = "users", key = "#username")
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
 
-    @Cacheable(value = "users", key = "#id")
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
-    @Cacheable(value = "users", key = "#id")
+    /**
+     * Сводка пользователя из кэша снимков; сущность в кэш не попадает
+     */
+    public Optional<UserSummary> findSummaryByUsername(String username) {
+        return snapshotCacheService.getUserSummary(username);
+    }
+
+    public Optional<UserSummary> findSummaryById(Long id) {
+        return snapshotCacheService.getUserSummary(id);
+    }
+
     public User getUserById(Long id) {
         return userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден с id: " + id));
@@ -152,7 +171,10 @@ public class UserService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", key = "#userId")
+    @Caching(evict = {
+        @CacheEvict(value = "users", key = "#userId"),
+        @CacheEvict(value = "users", key = "#result.username")
+    })
     public User updateProfileImage(Long userId, MultipartFile file) throws IOException {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден"));
@@ -172,6 +194,10 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    /**
+     * Текущий пользователь по id из UserPrincipal: JwtAuthenticationFilter уже прочитал его строку,
+     * поэтому возвращается ссылка без запроса; поля кроме id загрузятся при первом обращении
+     */
     public User getCurrentUser() {
         try {
             org.springframework.security.core.Authentication auth =
@@ -181,6 +207,9 @@ public class UserService {
                 return null;
             }
 
+            if (auth.getPrincipal() instanceof UserPrincipal principal && principal.getId() != null) {
+                return userRepository.getReferenceById(principal.getId());
+            }
             UserDetails userDetails = (UserDetails) auth.getPrincipal();
             return findByUsername(userDetails.getUsername()).orElse(null);
         } catch (Exception e) {
@@ -200,30 +229,38 @@ public class UserService {
     }
 
     @Transactional
-    @CacheEvict(value = {"posts", "pins"}, allEntries = true)
     public void addLikeToPost(User user, Post post) {
         if (!hasUserLikedPost(user.getId(), post.getId())) {
             Like like = new Like();
             like.setUser(user);
             like.setPost(post);
             likeRepository.save(like);
+            engagementCounterService.addPostLikes(post.getId(), user.getId(), 1);
         }
     }
 
     @Transactional
-    @CacheEvict(value = {"posts", "pins"}, allEntries = true)
     public void removeLikeFromPost(User user, Post post) {
-        likeRepository.deleteByUserIdAndPostId(user.getId(), post.getId());
+        long removed = likeRepository.deleteByUserIdAndPostId(user.getId(), post.getId());
+        if (removed > 0) {
+            engagementCounterService.addPostLikes(post.getId(), user.getId(), -removed);
+        }
     }
 
+    /**
+     * Сохранённый счётчик поста плюс ещё не записанная дельта, без COUNT(*) по лайкам
+     */
     @Transactional(readOnly = true)
-    @Cacheable(value = "posts", key = "'likes_' + #postId")
     public int getLikesCountForPost(Long postId) {
-        return likeRepository.countByPostId(postId);
+        Integer persisted = postRepository.findLikesCountById(postId).orElse(0);
+        return engagementCounterService.postLikes(postId, persisted);
     }
 
     @Transactional
-    @CacheEvict(value = "users", key = "#userId")
+    @Caching(evict = {
+        @CacheEvict(value = "users", key = "#userId"),
+        @CacheEvict(value = "users", key = "#result.username")
+    })
     public User editProfile(Long userId, EditProfileRequest request) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new com.example.server.UsPinterest.exception.ResourceNotFoundException("Пользователь не найден с id: " + userId));
@@ -265,6 +302,7 @@ public class UserService {
     public void deleteUser(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Пользователь не найден с id: " + userId));
+        snapshotCacheService.evictUser(userId, user.getUsername());
         followRepository.deleteByFollowerId(userId);
         followRepository.deleteByFollowingId(userId);
         notificationRepository.deleteByRecipient(user);
@@ -286,7 +324,6 @@ public class UserService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", key = "#userId")
     public void changePassword(Long userId, String oldPassword, String newPassword) {
         User user = getUserById(userId);
         if (!passwordEncoder.matches(oldPassword, user.getPassword())) {
@@ -16,7 +16,7 @@ public class HateoasUtil {
         response.addUpdateLink("/api/pins/detail/" + id);
         response.addDeleteLink("/api/pins/detail/" + id);
         response.addLink("comments", "/api/pins/detail/" + id + "/comments", "GET");
-        response.addLink("likes", "/api/pins/detail/" + id + "/likes", "GET");
+        response.addLink("likes", "/api/pins/" + id + "/likes", "GET");
         return response;
     }
 
@@ -0,0 +1,6 @@
+-- Лайки постов читаются из posts.likes_count (плюс дельта в памяти), а прежний код этот столбец
+-- почти не обновлял. Разовый пересчёт по таблице likes
+UPDATE posts SET likes_count = (SELECT count(*) FROM likes WHERE likes.post_id = posts.id);
+
+-- Общий L2 мог сохранить посты со старыми счётчиками
+DELETE FROM cache_entries WHERE cache_name = 'posts';
@@ -0,0 +1,21 @@
+-- Один лайк пользователя на пин: уникальный индекс нужен для INSERT ... ON CONFLICT групповой записи лайков.
+-- Запись лайков на время миграции блокируется, чтобы новые дубли не появились между удалением и индексом
+LOCK TABLE likes IN SHARE ROW EXCLUSIVE MODE;
+
+CREATE TEMPORARY TABLE dedupe_likes_pins ON COMMIT DROP AS
+SELECT DISTINCT a.pin_id FROM likes a JOIN likes b
+    ON a.pin_id = b.pin_id AND a.user_id = b.user_id AND a.id > b.id
+WHERE a.pin_id IS NOT NULL;
+
+DELETE FROM likes a USING likes b
+WHERE a.pin_id IS NOT NULL AND a.pin_id = b.pin_id AND a.user_id = b.user_id AND a.id > b.id;
+
+-- Счётчики затронутых пинов пересчитываются по оставшимся строкам
+UPDATE pins SET likes_count = (SELECT count(*) FROM likes WHERE likes.pin_id = pins.id)
+WHERE pins.id IN (SELECT pin_id FROM dedupe_likes_pins);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_likes_user_pin ON likes (user_id, pin_id) WHERE pin_id IS NOT NULL;
+
+-- Общий L2 мог сохранить карточки со старыми счётчиками. Снимок кэшей на диске сверяется
+-- со счётчиками при восстановлении, а набор лайкнутых пинов пользователя от дублей не меняется
+DELETE FROM cache_entries WHERE cache_name IN ('pins', 'extended_pins');
@@ -6,6 +6,8 @@ CREATE INDEX IF NOT EXISTS idx_users_email ON users (email);
 CREATE INDEX IF NOT EXISTS idx_pins_user_id ON pins (user_id);
 CREATE INDEX IF NOT EXISTS idx_pins_board_id ON pins (board_id);
 CREATE INDEX IF NOT EXISTS idx_pins_created_at ON pins (created_at);
+-- Время последней правки пина (ставится приложением), по нему сверяются восстановленные снимки кэшей
+ALTER TABLE pins ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP;
 
 -- Индексы для таблицы лайков
 CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes (user_id);
@@ -22,7 +24,30 @@ CREATE INDEX IF NOT EXISTS idx_boards_user_id ON boards (user_id);
 
 -- Индексы для поиска
 CREATE INDEX IF NOT EXISTS idx_pins_description ON pins (description);
+-- Полнотекстовый вектор пина (заголовок, теги, место, описание), заполняется приложением
+ALTER TABLE pins ADD COLUMN IF NOT EXISTS search_vector tsvector;
+CREATE INDEX IF NOT EXISTS idx_pins_search_vector ON pins USING GIN (search_vector);
+-- Поиск пользователей: префикс коротких запросов по btree, подстрока и опечатки по триграммам
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_users_username_lower_prefix ON users (lower(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING GIN (lower(username) gin_trgm_ops);
 
 -- Индексы для уведомлений
 CREATE INDEX IF NOT EXISTS idx_notifications_recipient_id ON notifications (recipient_id);
-CREATE INDEX IF NOT EXISTS idx_notifications_pin_id ON notifications (pin_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_notifications_pin_id ON notifications (pin_id);
+-- Общий L2-кэш узлов (нежурналируемая таблица: содержимое восстановимо)
+CREATE UNLOGGED TABLE IF NOT EXISTS cache_entries (cache_name VARCHAR(64) NOT NULL, cache_key VARCHAR(512) NOT NULL, payload BYTEA NOT NULL, expires_at TIMESTAMP NOT NULL, PRIMARY KEY (cache_name, cache_key));
+CREATE INDEX IF NOT EXISTS idx_cache_entries_expires_at ON cache_entries (expires_at);
+
+-- Уникальный лайк пользователя на пин (uq_likes_user_pin) создаётся разовой миграцией
+-- db/data-migration/D2 вместе с удалением накопившихся дублей
+
+-- Keyset-страницы лайкнувших и превью комментариев пина (по убыванию id)
+CREATE INDEX IF NOT EXISTS idx_likes_pin_id_id ON likes (pin_id, id);
+CREATE INDEX IF NOT EXISTS idx_comments_pin_id_id ON comments (pin_id, id);
+
+-- Пакетное разрешение тегов без учёта регистра (lower(name) IN (...))
+CREATE INDEX IF NOT EXISTS idx_tags_lower_name ON tags (lower(name));
+
+-- Позиция журнала счётчиков, до которой дельты записаны в БД (у каждого узла свой журнал)
+CREATE TABLE IF NOT EXISTS engagement_journal_checkpoints (journal_id VARCHAR(64) PRIMARY KEY, flushed_segment BIGINT NOT NULL, flushed_offset INTEGER NOT NULL, updated_at TIMESTAMP NOT NULL);
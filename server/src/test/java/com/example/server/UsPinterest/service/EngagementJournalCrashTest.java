@@ -0,0 +1,112 @@
+package com.example.server.UsPinterest.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Падение процесса посреди записи: отдельная JVM пишет журнал без остановки и убивается
+ * через kill -9, после чего журнал проигрывается с начала. Каждое подтверждённое писателем
+ * событие должно восстановиться, записи идут без пропусков, итоги по пинам совпадают с записанными.
+ */
+class EngagementJournalCrashTest {
+
+    // несколько сотен записей на сегмент: убийство приходится на середину одного из многих сегментов
+    private static final int SEGMENT_BYTES = EngagementJournal.RECORD_BYTES * 500;
+    private static final int PINS = 37;
+    private static final long KILL_AFTER = 50_000;
+    private static final int ACK_EVERY = 1_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void killedWriterLosesNoAcknowledgedEvents() throws Exception {
+        Process writer = startWriter();
+        long acknowledged = 0;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(writer.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while (acknowledged < KILL_AFTER && (line = out.readLine()) != null) {
+                acknowledged = Long.parseLong(line.trim());
+            }
+            kill(writer);
+        }
+        assertThat(acknowledged).as("писатель не дошёл до точки убийства").isGreaterThanOrEqualTo(KILL_AFTER);
+
+        long[] totals = new long[PINS];
+        List<Long> sequence = new ArrayList<>();
+        EngagementJournal journal = new EngagementJournal(true, dir.toString(), SEGMENT_BYTES);
+        journal.replay(EngagementJournal.Position.START, event -> {
+            assertThat(event.type()).isEqualTo(EngagementJournal.Type.PIN_LIKES);
+            totals[(int) event.targetId()] += event.delta();
+            sequence.add(event.userId());
+        });
+        journal.close();
+
+        // userId писателя — порядковый номер события: восстановлен непрерывный префикс
+        assertThat(sequence).hasSizeGreaterThanOrEqualTo((int) acknowledged);
+        for (int i = 0; i < sequence.size(); i++) {
+            assertThat(sequence.get(i)).isEqualTo(i);
+        }
+        long[] expected = new long[PINS];
+        for (long seq = 0; seq < sequence.size(); seq++) {
+            expected[(int) (seq % PINS)] += delta(seq);
+        }
+        assertThat(totals).isEqualTo(expected);
+    }
+
+    private Process startWriter() throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Writer.class.getName(), dir.toString(), String.valueOf(SEGMENT_BYTES))
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static void kill(Process process) throws Exception {
+        Process kill = new ProcessBuilder("kill", "-9", String.valueOf(process.pid())).start();
+        if (kill.waitFor(10, TimeUnit.SECONDS) && kill.exitValue() == 0) {
+            process.waitFor(10, TimeUnit.SECONDS);
+        } else {
+            // нет утилиты kill: destroyForcibly на Unix посылает тот же SIGKILL
+            process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+        assertThat(process.isAlive()).isFalse();
+    }
+
+    private static int delta(long seq) {
+        return seq % 5 == 4 ? -1 : 1;
+    }
+
+    /**
+     * Писатель: дописывает события без остановки и после каждых ACK_EVERY печатает число записанных
+     */
+    public static final class Writer {
+
+        public static void main(String[] args) {
+            EngagementJournal journal = new EngagementJournal(true, args[0], Integer.parseInt(args[1]));
+            PrintStream out = System.out;
+            Runnable noop = () -> { };
+            for (long seq = 0; ; seq++) {
+                journal.append(EngagementJournal.Type.PIN_LIKES, seq % PINS, seq, delta(seq), noop);
+                if ((seq + 1) % ACK_EVERY == 0) {
+                    out.println(seq + 1);
+                    out.flush();
+                }
+            }
+        }
+    }
+}
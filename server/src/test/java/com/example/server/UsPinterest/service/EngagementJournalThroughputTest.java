@@ -0,0 +1,58 @@
+package com.example.server.UsPinterest.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пропускная способность журнала на одно ядро: запись под общей блокировкой, поэтому
+ * один писатель и есть предел узла. Порог намеренно низкий — ловит регрессии порядка величины
+ * (например, системный вызов на событие), результат прогона пишется в лог.
+ */
+class EngagementJournalThroughputTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EngagementJournalThroughputTest.class);
+
+    private static final int WARMUP_EVENTS = 200_000;
+    private static final int EVENTS = 2_000_000;
+    private static final int ROUNDS = 3;
+    private static final long MIN_EVENTS_PER_SECOND = 200_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendsAtLeastMinimumEventsPerSecondOnOneCore() {
+        EngagementJournal journal = new EngagementJournal(true, dir.toString(), 8 << 20);
+        AtomicLong applied = new AtomicLong();
+        Runnable apply = applied::incrementAndGet;
+        try {
+            append(journal, WARMUP_EVENTS, apply);
+            double best = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                append(journal, EVENTS, apply);
+                journal.sync();
+                double perSecond = EVENTS / ((System.nanoTime() - start) / 1e9);
+                logger.info("Журнал: раунд {}, {} событий/с", round, String.format("%,.0f", perSecond));
+                best = Math.max(best, perSecond);
+            }
+            assertThat(applied.get()).isEqualTo(WARMUP_EVENTS + (long) EVENTS * ROUNDS);
+            assertThat(best).isGreaterThanOrEqualTo(MIN_EVENTS_PER_SECOND);
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static void append(EngagementJournal journal, int events, Runnable apply) {
+        for (int i = 0; i < events; i++) {
+            journal.append(EngagementJournal.Type.PIN_LIKES, i & 1023, i, 1, apply);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.dto.PinResponse;
+import com.example.server.UsPinterest.dto.mapper.PinStructMapperImpl_;
+import com.example.server.UsPinterest.entity.Like;
+import com.example.server.UsPinterest.model.Location;
+import com.example.server.UsPinterest.model.Picture;
+import com.example.server.UsPinterest.model.Pin;
+import com.example.server.UsPinterest.model.Tag;
+import com.example.server.UsPinterest.model.User;
+import com.example.server.UsPinterest.repository.PinRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Число SQL-запросов на обогащение страницы пинов не зависит от её размера
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({PinEnrichmentService.class, PinStructMapperImpl_.class, LikedPinIndex.class,
+        PinEnrichmentServiceStatementCountTest.CacheConfig.class})
+class PinEnrichmentServiceStatementCountTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    @TestConfiguration
+    static class CacheConfig {
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(LikedPinIndex.CACHE);
+        }
+    }
+
+    @Autowired
+    private PinEnrichmentService pinEnrichmentService;
+
+    @Autowired
+    private PinRepository pinRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockitoBean
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @MockitoBean
+    private FileStorageService fileStorageService;
+
+    @MockitoBean
+    private EngagementCounterService engagementCounterService;
+
+    private User viewer;
+
+    private final List<Long> pinIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(fileStorageService.updateImageUrl(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(engagementCounterService.pinLikes(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+
+        viewer = persistUser("viewer");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            // у каждого пина свой автор, картинка, локация и теги: ничего не переиспользуется из сессии
+            User author = persistUser("author" + i);
+            Pin pin = new Pin("/images/pin" + i + ".jpg", "описание " + i);
+            pin.setTitle("Пин " + i);
+            pin.setUser(author);
+            pin.getTags().add(new Tag("tag" + i));
+            pin.getTags().add(new Tag("common" + i));
+            entityManager.persist(pin);
+
+            Picture picture = new Picture();
+            picture.setPin(pin);
+            picture.setImageUrl("/images/pin" + i + "_1.jpg");
+            picture.setImageUrl1("/images/pin" + i + "_1.jpg");
+            entityManager.persist(picture);
+
+            Location location = new Location();
+            location.setPin(pin);
+            location.setLatitude(55.75 + i);
+            location.setLongitude(37.61 + i);
+            location.setNameplace("Место " + i);
+            entityManager.persist(location);
+
+            if (i % 2 == 0) {
+                Like like = new Like();
+                like.setPin(pin);
+                like.setUser(viewer);
+                entityManager.persist(like);
+            }
+            pinIds.add(pin.getId());
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void cardPageIssuesSameNumberOfStatementsForOneAndTwentyPins() {
+        long single = countStatements(() -> pinEnrichmentService.enrichCards(
+                pinRepository.findCardsByIds(pinIds.subList(0, 1)), viewer));
+        long full = countStatements(() -> pinEnrichmentService.enrichCards(
+                pinRepository.findCardsByIds(pinIds), viewer));
+
+        assertThat(single).isPositive();
+        assertThat(full).isEqualTo(single);
+    }
+
+    @Test
+    void entityPageEnrichmentIssuesSameNumberOfStatementsForOneAndTwentyPins() {
+        long single = countEnrichment(pinIds.subList(0, 1));
+        long full = countEnrichment(pinIds);
+
+        assertThat(single).isPositive();
+        assertThat(full).isEqualTo(single);
+    }
+
+    @Test
+    void enrichedPageCarriesBatchLoadedFields() {
+        cacheManager.getCache(LikedPinIndex.CACHE).clear();
+        entityManager.clear();
+        List<PinResponse> page = pinEnrichmentService.enrichCards(pinRepository.findCardsByIds(pinIds), viewer);
+
+        assertThat(page).hasSize(PAGE_SIZE);
+        for (PinResponse dto : page) {
+            int i = pinIds.indexOf(dto.getId());
+            assertThat(dto.getTags()).containsExactlyInAnyOrder("tag" + i, "common" + i);
+            assertThat(dto.getPlaceName()).isEqualTo("Место " + i);
+            assertThat(dto.getImageUrl()).isEqualTo("/images/pin" + i + "_1.jpg");
+            assertThat(dto.getIsLikedByCurrentUser()).isEqualTo(i % 2 == 0);
+        }
+    }
+
+    /**
+     * Пины уже загружены: считаются только запросы самого обогащения
+     */
+    private long countEnrichment(List<Long> ids) {
+        entityManager.clear();
+        List<Pin> pins = pinRepository.findAllById(ids);
+        return countStatements(() -> pinEnrichmentService.enrich(pins, viewer));
+    }
+
+    private long countStatements(Supplier<List<PinResponse>> page) {
+        // холодный кэш лайков: загрузка индекса зрителя тоже попадает в счёт
+        cacheManager.getCache(LikedPinIndex.CACHE).clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<PinResponse> result = page.get();
+        assertThat(result).isNotEmpty();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User persistUser(String username) {
+        User user = new User(username, username + "@example.com", "secret");
+        user.setRegistrationDate(LocalDateTime.now());
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.server.UsPinterest.service;
+
+import com.example.server.UsPinterest.model.Location;
+import com.example.server.UsPinterest.model.Pin;
+import com.example.server.UsPinterest.model.Tag;
+import com.example.server.UsPinterest.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Построение индекса из настоящих строк pins: схема создаётся из сущностей с той же стратегией имён,
+ * что и в приложении, а H2 в режиме PostgreSQL приводит имена без кавычек к нижнему регистру, как Postgres
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pin_text_index;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PinTextIndexBuildTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @MockitoBean
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private PinTextIndex index;
+
+    private Long sunsetId;
+
+    @BeforeEach
+    void setUp() {
+        User author = new User("author", "author@example.com", "secret");
+        author.setRegistrationDate(LocalDateTime.now());
+        entityManager.persist(author);
+
+        sunsetId = persistPin(author, "Закат над морем", "оранжевое небо", "пейзаж", "Сочи");
+        persistPin(author, "Рецепт пиццы", "тесто и сыр", "еда", "Неаполь");
+        entityManager.flush();
+
+        // построение выполняется прямо в вызывающем потоке
+        index = new PinTextIndex(jdbcTemplate, dataSource, Runnable::run, cacheInvalidationBus, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "chunkSize", 5000);
+        ReflectionTestUtils.setField(index, "likesWeight", 0.3);
+        ReflectionTestUtils.setField(index, "recencyWeight", 1.0);
+        ReflectionTestUtils.setField(index, "recencyHalfLifeDays", 30.0);
+    }
+
+    @Test
+    void rebuildReadsPinsAndFindsThemByTitleTagAndPlace() {
+        index.start();
+
+        assertThat(index.isReady()).as("индекс не построился из строк pins").isTrue();
+        assertThat(ids(index.search("закат", null, null, null, 0, 10))).containsExactly(sunsetId);
+        assertThat(ids(index.search("сочи", null, null, null, 0, 10))).containsExactly(sunsetId);
+        assertThat(ids(index.search("море", List.of("пейзаж"), null, null, 0, 10))).containsExactly(sunsetId);
+        assertThat(ids(index.search("море", List.of("еда"), null, null, 0, 10))).isEmpty();
+    }
+
+    @Test
+    void consistencyCheckReadsTheSameRows() {
+        index.start();
+        index.checkConsistency();
+
+        assertThat(ids(index.search("пиццы", null, null, null, 0, 10))).hasSize(1);
+    }
+
+    private Long persistPin(User author, String title, String description, String tag, String place) {
+        Pin pin = new Pin("/images/" + tag + ".jpg", description);
+        pin.setTitle(title);
+        pin.setUser(author);
+        pin.setCreatedAt(LocalDateTime.now());
+        pin.getTags().add(new Tag(tag));
+        entityManager.persist(pin);
+
+        Location location = new Location();
+        location.setPin(pin);
+        location.setLatitude(43.6);
+        location.setLongitude(39.7);
+        location.setNameplace(place);
+        entityManager.persist(location);
+        return pin.getId();
+    }
+
+    private static List<Long> ids(PinTextIndex.Result result) {
+        assertThat(result).isNotNull();
+        return result.hits().stream().map(PinSearchIndex.Hit::id).toList();
+    }
+}